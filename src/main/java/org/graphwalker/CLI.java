@@ -31,9 +31,15 @@ import java.io.PrintStream;
 import java.net.InetAddress;
 import java.util.Iterator;
 import java.util.Map.Entry;
+import java.util.Random;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.xml.ws.Endpoint;
 
@@ -53,7 +59,9 @@ import org.graphwalker.analyze.Analyze;
 import org.graphwalker.conditions.AlternativeCondition;
 import org.graphwalker.exceptions.GeneratorException;
 import org.graphwalker.exceptions.StopConditionException;
+import org.graphwalker.graph.Graph;
 import org.graphwalker.io.PrintHTMLTestSequence;
+import org.graphwalker.machines.SharedCoverage;
 import org.jdom2.JDOMException;
 
 /**
@@ -439,6 +447,7 @@ public class CLI {
     opt.addOption("a", "statistics", false, "Prints the statistics of the test, at the end of the run.");
     opt.addOption("x", "extended", false, "Use an extended finite state machine to handle the model.");
     opt.addOption("j", false, "Enable JavaScript engine");
+    opt.addOption("n", false, "Enable the native expression engine for guards and actions");
     opt.addOption(OptionBuilder
         .isRequired()
         .withArgName("stop-condition")
@@ -468,8 +477,21 @@ public class CLI {
     opt.addOption("c", "class_name", true, "Optional class name to use for test execution.");
     opt.addOption("t", "report-template", true, "Optional report template to use. (Also requires option -r) (To be better documented)");
     opt.addOption("r", "report-output", true, "Optional report filename to save report to. (Also requires option -t)  (To be better documented)");
+    opt.addOption(OptionBuilder
+        .withLongOpt("progress-sample")
+        .withArgName("milliseconds")
+        .withDescription(
+            "Records the progress of the test for the report at most once every <milliseconds>, instead of at every step. "
+                + "(Also requires options -t and -r)").hasArg().create());
     opt.addOption("w", "weighted", false, "Use weighted values if they exist in the model, and the generator is RANDOM.");
     opt.addOption("d", "dry-run", false, "Will execute a dry-run of the model. Dialog will pop up for every edge and vertex.");
+    opt.addOption(OptionBuilder
+        .withLongOpt("walkers")
+        .withArgName("n")
+        .withDescription(
+            "Runs <n> walkers in parallel, each one with an instance of its own of the class given by -c, for instance "
+                + "one per system under test. The walkers share their coverage, and prefer what none of them has covered yet. "
+                + "Can not be combined with the options -a, -o, -t, -r or -d.").hasArg().create());
   }
 
   /**
@@ -480,6 +502,7 @@ public class CLI {
     opt.addOption("a", false, "Prints the statistics of the test, at the end of the run.");
     opt.addOption("x", false, "Use an extended finite state machine to handle the model.");
     opt.addOption("j", false, "Enable JavaScript engine");
+    opt.addOption("n", false, "Enable the native expression engine for guards and actions");
     opt.addOption(OptionBuilder
         .isRequired()
         .withArgName("stop-condition")
@@ -508,7 +531,28 @@ public class CLI {
                 + "mbt.properties, and only, if at least INFO level is set in " + "that same file.").hasArg().create("o"));
     opt.addOption("t", "report-template", true, "Optional report template to use. (Also requires option -r) (To be better documented)");
     opt.addOption("r", "report-output", true, "Optional report filename to save report to. (Also requires option -t)  (To be better documented)");
+    opt.addOption(OptionBuilder
+        .withLongOpt("progress-sample")
+        .withArgName("milliseconds")
+        .withDescription(
+            "Records the progress of the test for the report at most once every <milliseconds>, instead of at every step. "
+                + "(Also requires options -t and -r)").hasArg().create());
     opt.addOption("w", "weighted", false, "Use weighted values if they exist in the model, and the generator is RANDOM.");
+    opt.addOption(OptionBuilder
+        .withLongOpt("suites")
+        .withArgName("n")
+        .withDescription(
+            "Generates <n> test sequences in parallel, each one written to a file of its own, see --suite-output. "
+                + "Can not be combined with the options -a, -o, -t or -r.").hasArg().create());
+    opt.addOption(OptionBuilder
+        .withLongOpt("master-seed")
+        .withArgName("seed")
+        .withDescription(
+            "Makes the generation reproducible. The random choices of each test sequence are seeded with a seed split "
+                + "from <seed>, so the same seed and model always gives the same test sequences.").hasArg().create());
+    opt.addOption(OptionBuilder.withLongOpt("suite-output").withArgName("prefix")
+        .withDescription("The prefix of the files the test sequences are written to, when using --suites. Default is 'suite-'.").hasArg()
+        .create());
   }
 
   /**
@@ -518,6 +562,7 @@ public class CLI {
   private void buildManualCLI() {
     opt.addOption("x", false, "Use an extended finite state machine to handle the model.");
     opt.addOption("j", false, "Enable JavaScript engine");
+    opt.addOption("n", false, "Enable the native expression engine for guards and actions");
     opt.addOption(OptionBuilder
         .isRequired()
         .withArgName("stop-condition")
@@ -632,34 +677,24 @@ public class CLI {
         || helpNeeded("offline", !cl.hasOption("s"), "A stop condition must be supplied, See option -s")
         || helpNeeded("offline", cl.hasOption("t") && !cl.hasOption("r"), "A report output file must be set, See -t, when using a report template")
         || helpNeeded("offline", !cl.hasOption("t") && cl.hasOption("r"), "A report template must be set, See -r, when using a report output file")
-        || helpNeeded("offline", !cl.hasOption("g"), "Missing the generator, See option -g")) return;
+        || helpNeeded("offline", !cl.hasOption("g"), "Missing the generator, See option -g")
+        || helpNeeded("offline", cl.hasOption("suites") && (cl.hasOption("a") || cl.hasOption("o") || cl.hasOption("t") || cl.hasOption("r")),
+            "The options -a, -o, -t and -r can not be used together with --suites")) return;
 
     getMbt().readGraph(cl.getOptionValue("f"));
-    getMbt().enableJsScriptEngine(cl.hasOption("j"));
-    getMbt().enableExtended(cl.hasOption("x"));
-    getMbt().setWeighted(cl.hasOption("w"));
 
-    /*
-     * Set the stop-conditions(s)
-     */
-    AlternativeCondition alternativeCondition = new AlternativeCondition();
-    String[] stopConditions = cl.getOptionValue("s").split("\\|");
-    for (String stopCondition : stopConditions) {
-      String[] sc = stopCondition.trim().split(":");
-      alternativeCondition.add(Util.getCondition(null, Keywords.getStopCondition(sc[0].trim()) // Stop
-                                                                                               // condition
-          , (sc.length == 1 ? "" : sc[1].trim()))); // Optional condition
-                                                    // parameter
+    if (cl.hasOption("suites")) {
+      writeSuites(cl, getMbt().getGraph());
+      return;
     }
 
-    /*
-     * Set the generators(s)
-     */
-    String[] generators = cl.getOptionValue("g").split("\\|");
-    for (String genrator : generators) {
-      getMbt().setGenerator(Keywords.getGenerator(genrator.trim()));
+    setupGeneration(getMbt(), cl);
+    if (cl.hasOption("master-seed")) {
+      getMbt().getGenerator().setRandom(new Random(Util.splitSeed(Long.parseLong(cl.getOptionValue("master-seed")), 0)));
+    }
+    if (cl.hasOption("progress-sample")) {
+      getMbt().getStatisticsManager().setSampleInterval(Long.parseLong(cl.getOptionValue("progress-sample")));
     }
-    getMbt().getGenerator().setStopCondition(alternativeCondition);
 
     if (cl.hasOption("o")) {
       long seconds = Integer.valueOf(cl.getOptionValue("o")).longValue();
@@ -704,10 +739,90 @@ public class CLI {
     if (cl.hasOption("t") && cl.hasOption("r")) {
       getMbt().getStatisticsManager().setReportTemplate(new FileInputStream(new File(cl.getOptionValue('t'))));
       getMbt().getStatisticsManager().writeFullReport(cl.getOptionValue('r'));
+      getMbt().getStatisticsManager().close();
     }
 
   }
 
+  /**
+   * Sets up the machine, the generator(s) and the stop condition(s) of an offline or online run, as
+   * given by the command line. The model must already be read.
+   */
+  private static void setupGeneration(ModelBasedTesting mbt, CommandLine cl) throws StopConditionException, GeneratorException {
+    mbt.enableJsScriptEngine(cl.hasOption("j"));
+    mbt.enableNativeScriptEngine(cl.hasOption("n"));
+    mbt.enableExtended(cl.hasOption("x"));
+    mbt.setWeighted(cl.hasOption("w"));
+
+    /*
+     * Set the stop-conditions(s)
+     */
+    AlternativeCondition alternativeCondition = new AlternativeCondition();
+    String[] stopConditions = cl.getOptionValue("s").split("\\|");
+    for (String stopCondition : stopConditions) {
+      String[] sc = stopCondition.trim().split(":");
+      alternativeCondition.add(Util.getCondition(null, Keywords.getStopCondition(sc[0].trim()) // Stop
+                                                                                               // condition
+          , (sc.length == 1 ? "" : sc[1].trim()))); // Optional condition
+                                                    // parameter
+    }
+
+    /*
+     * Set the generators(s)
+     */
+    String[] generators = cl.getOptionValue("g").split("\\|");
+    for (String genrator : generators) {
+      mbt.setGenerator(Keywords.getGenerator(genrator.trim()));
+    }
+    mbt.getGenerator().setStopCondition(alternativeCondition);
+  }
+
+  /**
+   * Generates the test sequences asked for by --suites, in parallel. Each sequence is generated by a
+   * machine of its own, walking the same model, and is written to a file of its own.
+   */
+  private void writeSuites(final CommandLine cl, final Graph graph) throws InterruptedException {
+    int suites = Integer.parseInt(cl.getOptionValue("suites"));
+    Util.AbortIf(suites < 1, "The number of suites must be at least 1, not: " + suites);
+    long masterSeed = cl.hasOption("master-seed") ? Long.parseLong(cl.getOptionValue("master-seed")) : System.nanoTime();
+    String prefix = cl.getOptionValue("suite-output", "suite-");
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(suites, Runtime.getRuntime().availableProcessors()));
+    Vector<Future<?>> futures = new Vector<Future<?>>();
+    for (int i = 0; i < suites; i++) {
+      final long seed = Util.splitSeed(masterSeed, i);
+      final File file = new File(prefix + i + ".txt");
+      System.out.println("Suite " + i + ": " + file + ", seed: " + seed);
+      futures.add(executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          ModelBasedTesting suite = new ModelBasedTesting();
+          suite.setGraph(graph);
+          setupGeneration(suite, cl);
+          suite.getGenerator().setRandom(new Random(seed));
+          PrintStream out = new PrintStream(file);
+          try {
+            suite.writePath(out);
+          } finally {
+            out.close();
+            suite.stop();
+          }
+          return null;
+        }
+      }));
+    }
+    executor.shutdown();
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (ExecutionException e) {
+      throw new RuntimeException("Could not generate the test suites: " + e.getCause().getMessage(), e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   /**
    * Run the manual command
    * 
@@ -727,6 +842,7 @@ public class CLI {
     getMbt().setManualTestSequence(true);
     getMbt().readGraph(cl.getOptionValue("f"));
     getMbt().enableJsScriptEngine(cl.hasOption("j"));
+    getMbt().enableNativeScriptEngine(cl.hasOption("n"));
     getMbt().enableExtended(cl.hasOption("x"));
     getMbt().setWeighted(cl.hasOption("w"));
 
@@ -775,34 +891,22 @@ public class CLI {
         || helpNeeded("online", !cl.hasOption("s"), "A stop condition must be supplied, See option -s")
         || helpNeeded("online", cl.hasOption("t") && !cl.hasOption("r"), "A report output file must be set, See -t, when using a report template")
         || helpNeeded("online", !cl.hasOption("t") && cl.hasOption("r"), "A report template must be set, See -r, when using a report output file")
-        || helpNeeded("online", !cl.hasOption("g"), "Missing the generator, See option -g")) return;
+        || helpNeeded("online", !cl.hasOption("g"), "Missing the generator, See option -g")
+        || helpNeeded("online", cl.hasOption("walkers") && !cl.hasOption("c"), "A class name must be set, See -c, when using --walkers")
+        || helpNeeded("online", cl.hasOption("walkers") && (cl.hasOption("a") || cl.hasOption("o") || cl.hasOption("t") || cl.hasOption("r") || cl.hasOption("d")),
+            "The options -a, -o, -t, -r and -d can not be used together with --walkers")) return;
 
     getMbt().readGraph(cl.getOptionValue("f"));
-    getMbt().enableJsScriptEngine(cl.hasOption("j"));
-    getMbt().enableExtended(cl.hasOption("x"));
-    getMbt().setWeighted(cl.hasOption("w"));
 
-    /*
-     * Set the stop-conditions(s)
-     */
-    AlternativeCondition alternativeCondition = new AlternativeCondition();
-    String[] stopConditions = cl.getOptionValue("s").split("\\|");
-    for (String stopCondition : stopConditions) {
-      String[] sc = stopCondition.trim().split(":");
-      alternativeCondition.add(Util.getCondition(null, Keywords.getStopCondition(sc[0].trim()) // Stop
-                                                                                               // condition
-          , (sc.length == 1 ? "" : sc[1].trim()))); // Optional condition
-                                                    // parameter
+    if (cl.hasOption("walkers")) {
+      executeWalkers(cl, getMbt().getGraph());
+      return;
     }
 
-    /*
-     * Set the generators(s)
-     */
-    String[] genrators = cl.getOptionValue("g").split("\\|");
-    for (String genrator : genrators) {
-      getMbt().setGenerator(Keywords.getGenerator(genrator.trim()));
+    setupGeneration(getMbt(), cl);
+    if (cl.hasOption("progress-sample")) {
+      getMbt().getStatisticsManager().setSampleInterval(Long.parseLong(cl.getOptionValue("progress-sample")));
     }
-    getMbt().getGenerator().setStopCondition(alternativeCondition);
 
     /**
      * Set dry-run
@@ -858,10 +962,53 @@ public class CLI {
     if (cl.hasOption("t") && cl.hasOption("r")) {
       getMbt().getStatisticsManager().setReportTemplate(new FileInputStream(new File(cl.getOptionValue('t'))));
       getMbt().getStatisticsManager().writeFullReport(cl.getOptionValue('r'));
+      getMbt().getStatisticsManager().close();
     }
 
   }
 
+  /**
+   * Runs the walkers asked for by --walkers, in parallel. Each walker has a machine, and an instance of
+   * the test class, of its own. The machines share their coverage, and the stop condition(s) are
+   * evaluated against the shared coverage.
+   */
+  private void executeWalkers(final CommandLine cl, final Graph graph) throws InterruptedException {
+    int walkers = Integer.parseInt(cl.getOptionValue("walkers"));
+    Util.AbortIf(walkers < 1, "The number of walkers must be at least 1, not: " + walkers);
+    final SharedCoverage sharedCoverage = new SharedCoverage(graph);
+
+    ExecutorService executor = Executors.newFixedThreadPool(walkers);
+    Vector<Future<?>> futures = new Vector<Future<?>>();
+    for (int i = 0; i < walkers; i++) {
+      futures.add(executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          ModelBasedTesting walker = new ModelBasedTesting();
+          walker.setGraph(graph);
+          setupGeneration(walker, cl);
+          walker.getMachine().setSharedCoverage(sharedCoverage);
+          try {
+            walker.executePath(cl.getOptionValue("c"));
+          } finally {
+            walker.stop();
+          }
+          return null;
+        }
+      }));
+    }
+    executor.shutdown();
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (ExecutionException e) {
+      throw new RuntimeException("A walker failed: " + e.getCause().getMessage(), e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    logger.info("Covered edges: " + sharedCoverage.getNumOfCoveredEdges() + ", covered vertices: " + sharedCoverage.getNumOfCoveredVertices());
+  }
+
   private void writeStatisticsVerbose(PrintStream out) {
     out.println(getMbt().getStatisticsVerbose());
   }
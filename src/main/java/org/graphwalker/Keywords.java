@@ -253,6 +253,8 @@ public class Keywords {
 
   public static final int GENERATOR_ALL_PATH_PERMUTATIONS = 2008;
 
+  public static final int GENERATOR_CHINESE_POSTMAN = 2009;
+
   /**
    * Holds the pre-defined key words
    */
@@ -438,6 +440,7 @@ public class Keywords {
     Keywords.generators.add(new Generator("REQUIREMENTS", "REQUIREMENTS", Keywords.GENERATOR_REQUIREMENTS, false));
     Keywords.generators.add(new Generator("SHORTEST_NON_OPTIMIZED", "SHORTEST_NON_OPTIMIZED", Keywords.GENERATOR_SHORTEST_NON_OPTIMIZED, true));
     Keywords.generators.add(new Generator("ALL_PATH_PERMUTATIONS", "ALL_PATH_PERMUTATIONS", Keywords.GENERATOR_ALL_PATH_PERMUTATIONS, true));
+    Keywords.generators.add(new Generator("CHINESE_POSTMAN", "CHINESE_POSTMAN", Keywords.GENERATOR_CHINESE_POSTMAN, true));
   }
 
   static public Vector<Generator> getGenerators() {
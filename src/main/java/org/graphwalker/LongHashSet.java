@@ -0,0 +1,135 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker;
+
+/**
+ * A set of primitive longs, using open addressing with linear probing. Unlike a
+ * HashSet&lt;Long&gt;, adding a key does not allocate.
+ */
+public class LongHashSet {
+
+  private long[] keys;
+  private boolean[] used;
+  private boolean hasZero = false;
+  private int size = 0;
+  private int mask;
+
+  public LongHashSet() {
+    this(16);
+  }
+
+  public LongHashSet(int expectedSize) {
+    int capacity = 16;
+    while (capacity < 2 * expectedSize) {
+      capacity <<= 1;
+    }
+    allocate(capacity);
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    used = new boolean[capacity];
+    mask = capacity - 1;
+  }
+
+  /**
+   * @return true if the key was not already in the set
+   */
+  public boolean add(long key) {
+    if (key == 0) {
+      if (hasZero) {
+        return false;
+      }
+      hasZero = true;
+      size++;
+      return true;
+    }
+    int slot = find(key);
+    if (used[slot]) {
+      return false;
+    }
+    used[slot] = true;
+    keys[slot] = key;
+    if (++size > keys.length / 2) {
+      grow();
+    }
+    return true;
+  }
+
+  public boolean contains(long key) {
+    if (key == 0) {
+      return hasZero;
+    }
+    return used[find(key)];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Adds all keys of the other set to this one.
+   */
+  public void addAll(LongHashSet other) {
+    if (other.hasZero) {
+      add(0);
+    }
+    for (int i = 0; i < other.keys.length; i++) {
+      if (other.used[i]) {
+        add(other.keys[i]);
+      }
+    }
+  }
+
+  public void clear() {
+    allocate(16);
+    hasZero = false;
+    size = 0;
+  }
+
+  private int find(long key) {
+    int slot = (int) Util.mix(key) & mask;
+    while (used[slot] && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void grow() {
+    long[] oldKeys = keys;
+    boolean[] oldUsed = used;
+    allocate(keys.length * 2);
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldUsed[i]) {
+        int slot = find(oldKeys[i]);
+        used[slot] = true;
+        keys[slot] = oldKeys[i];
+      }
+    }
+  }
+}
@@ -49,6 +49,7 @@ import org.graphwalker.generators.PathGenerator;
 import org.graphwalker.graph.AbstractElement;
 import org.graphwalker.graph.Edge;
 import org.graphwalker.graph.Graph;
+import org.graphwalker.graph.GraphSnapshot;
 import org.graphwalker.graph.Vertex;
 import org.graphwalker.io.AbstractModelHandler;
 import org.graphwalker.io.GraphML;
@@ -78,6 +79,7 @@ public class ModelBasedTesting extends Observable {
   private boolean runRandomGeneratorOnce = false;
   private boolean dryRun = false;
   private boolean useJsScriptEngine = false;
+  private boolean useNativeScriptEngine = false;
   private String javaExecutorClass = null;
   private volatile Thread stopFlag = null;
   private volatile boolean finishedFlag = false;
@@ -136,6 +138,7 @@ public class ModelBasedTesting extends Observable {
     runRandomGeneratorOnce = false;
     dryRun = false;
     useJsScriptEngine = false;
+    useNativeScriptEngine = false;
     javaExecutorClass = null;
     stopFlag = null;
     finishedFlag = false;
@@ -163,7 +166,7 @@ public class ModelBasedTesting extends Observable {
 
   private void setupStatisticsManager() {
     if (this.statisticsManager == null) {
-      this.statisticsManager = new StatisticsManager();
+      this.statisticsManager = new StatisticsManager(false);
     }
     this.statisticsManager.addStatisicsCounter("Vertex Coverage", new VertexCoverageStatistics(getGraph()));
     this.statisticsManager.addStatisicsCounter("Edge Coverage", new EdgeCoverageStatistics(getGraph()));
@@ -178,7 +181,7 @@ public class ModelBasedTesting extends Observable {
    */
   public StatisticsManager getStatisticsManager() {
     if (this.statisticsManager == null) {
-      this.statisticsManager = new StatisticsManager();
+      this.statisticsManager = new StatisticsManager(false);
       if (this.machine != null) {
         setupStatisticsManager();
       }
@@ -360,9 +363,13 @@ public class ModelBasedTesting extends Observable {
       useJsScriptEngine = false;
   }
 
+  protected void enableNativeScriptEngine(boolean enableNative) {
+    useNativeScriptEngine = enableNative;
+  }
+
   public void enableExtended(boolean extended) {
     if (extended) {
-      setMachine(new ExtendedFiniteStateMachine(useJsScriptEngine));
+      setMachine(new ExtendedFiniteStateMachine(useJsScriptEngine, useNativeScriptEngine));
       if (!getStartupScript().equals("")) {
         logger.debug("Will now try to run script: " + getStartupScript());
         ((ExtendedFiniteStateMachine) getMachine()).eval(getStartupScript());
@@ -787,6 +794,7 @@ public class ModelBasedTesting extends Observable {
       } catch (IllegalAccessException e) {
         throw new RuntimeException("Cannot access execution instance: " + e.getMessage(), e);
       }
+      resolveMethods(clsClass);
       while (hasNextStep()) {
         if (future == null || future.isDone()) {
           String[] stepPair = getNextStep();
@@ -861,8 +869,28 @@ public class ModelBasedTesting extends Observable {
     }
   }
 
-  private void executeMethod(Class<?> clsClass, Object objInstance, String strMethod, boolean isEdge) throws IllegalArgumentException,
-      SecurityException, IllegalAccessException {
+  /**
+   * The method to call when an element is reached, resolved once from the step the element gives.
+   */
+  private static class MethodCall {
+    private String step;
+    private Method method;
+    private Object[] args;
+    private boolean hasParameter;
+    private NoSuchMethodException missing;
+  }
+
+  private static final Object[] NO_ARGS = new Object[0];
+
+  /* The resolved methods of the edges and vertices of the model, by their ordinals */
+  private MethodCall[] edgeCalls;
+  private MethodCall[] vertexCalls;
+  private GraphSnapshot callSnapshot;
+
+  /**
+   * Strips the data and guard parts from a step, leaving the method name and its parameter.
+   */
+  private static String stripStep(String strMethod) {
     if (strMethod.contains("/")) {
       strMethod = strMethod.substring(0, strMethod.indexOf('/'));
     }
@@ -870,55 +898,112 @@ public class ModelBasedTesting extends Observable {
     if (strMethod.contains("[")) {
       strMethod = strMethod.substring(0, strMethod.indexOf('['));
     }
+    return strMethod;
+  }
 
-    if (strMethod.contains(" ")) {
-      String s1 = strMethod.substring(0, strMethod.indexOf(' '));
-      String s2 = strMethod.substring(strMethod.indexOf(' ') + 1);
-      Class<?>[] paramTypes = {String.class};
-      Object[] paramValues = {s2};
+  private static MethodCall resolveMethod(Class<?> clsClass, String step) {
+    MethodCall call = new MethodCall();
+    call.step = step;
+    call.hasParameter = step.contains(" ");
+    call.args = NO_ARGS;
+    try {
+      if (call.hasParameter) {
+        call.method = clsClass.getMethod(step.substring(0, step.indexOf(' ')), new Class<?>[] {String.class});
+        call.args = new Object[] {step.substring(step.indexOf(' ') + 1)};
+      } else {
+        call.method = clsClass.getMethod(step);
+      }
+    } catch (NoSuchMethodException e) {
+      call.missing = e;
+    }
+    return call;
+  }
 
-      try {
-        clsClass.getMethod(s1, paramTypes).invoke(objInstance, paramValues);
-      } catch (InvocationTargetException e) {
-        if (isEdge) {
-          logger.error("InvocationTargetException for: " + getMachine().getLastEdge());
-        } else {
-          logger.error("InvocationTargetException for: " + getMachine().getCurrentVertex());
+  /**
+   * Resolves the methods of all edges and vertices of the model before the execution starts, and
+   * logs the ones missing in the class. A missing method only fails the test when its element is
+   * reached.
+   */
+  private void resolveMethods(Class<?> clsClass) {
+    callSnapshot = getMachine().getModel().getSnapshot();
+    edgeCalls = new MethodCall[callSnapshot.getEdgeCount()];
+    vertexCalls = new MethodCall[callSnapshot.getVertexCount()];
+    for (int i = 0; i < edgeCalls.length; i++) {
+      String step = stripStep(getMachine().getEdgeName(callSnapshot.getEdge(i)));
+      if (!step.isEmpty()) {
+        edgeCalls[i] = resolveMethod(clsClass, step);
+        if (edgeCalls[i].missing != null) {
+          logger.warn("Method: " + step + ", of edge: " + callSnapshot.getEdge(i) + ", is missing in class: " + clsClass);
         }
-        throw new RuntimeException("InvocationTargetException.", e);
-      } catch (NoSuchMethodException e) {
-        logger.error("In model: " + getGraph());
-        if (isEdge) {
-          logger.error("NoSuchMethodException for: " + getMachine().getLastEdge());
-        } else {
-          logger.error("NoSuchMethodException for: " + getMachine().getCurrentVertex());
+      }
+    }
+    for (int i = 0; i < vertexCalls.length; i++) {
+      Vertex vertex = callSnapshot.getVertex(i);
+      if (!Keywords.START_NODE.equals(vertex.getLabelKey())) {
+        vertexCalls[i] = resolveMethod(clsClass, stripStep(vertex.getLabelKey()));
+        if (vertexCalls[i].missing != null) {
+          logger.warn("Method: " + vertexCalls[i].step + ", of vertex: " + vertex + ", is missing in class: " + clsClass);
         }
-        throw new RuntimeException("NoSuchMethodException.", e);
       }
+    }
+  }
+
+  /**
+   * @return the method resolved for the element, or null if the step does not match it, which
+   *         happens if a generator gives steps of its own
+   */
+  private MethodCall getMethodCall(String strMethod, boolean isEdge) {
+    MethodCall call = null;
+    if (isEdge) {
+      int index = callSnapshot.indexOf(getMachine().getLastEdge());
+      if (index != -1) call = edgeCalls[index];
     } else {
+      int index = callSnapshot.indexOf(getMachine().getCurrentVertex());
+      if (index != -1) call = vertexCalls[index];
+    }
+    if (call == null || !strMethod.startsWith(call.step)) {
+      return null;
+    }
+    int length = call.step.length();
+    if (strMethod.length() != length && strMethod.charAt(length) != '/' && strMethod.charAt(length) != '[') {
+      return null;
+    }
+    return call;
+  }
+
+  private void executeMethod(Class<?> clsClass, Object objInstance, String strMethod, boolean isEdge) throws IllegalArgumentException,
+      SecurityException, IllegalAccessException {
+    MethodCall call = getMethodCall(strMethod, isEdge);
+    if (call == null) {
+      strMethod = stripStep(strMethod);
       if (isEdge && strMethod.isEmpty()) {
         return;
       }
-      try {
-        Method m = clsClass.getMethod(strMethod, null);
-        m.invoke(objInstance, null);
-      } catch (InvocationTargetException e) {
-        if (isEdge) {
-          logger.error("InvocationTargetException for: " + getMachine().getLastEdge() + " : " + e.getCause().getMessage());
-        } else {
-          logger.error("InvocationTargetException for: " + getMachine().getCurrentVertex() + " : " + e.getCause().getMessage());
-        }
-        Util.logStackTraceToError(e);
-        throw new RuntimeException("InvocationTargetException.", e.getCause());
-      } catch (NoSuchMethodException e) {
-        logger.error("In model: " + getGraph());
-        if (isEdge) {
-          logger.error("Method: " + getMachine().getLastEdge() + ", is missing in class: " + clsClass);
-        } else {
-          logger.error("Method: " + getMachine().getCurrentVertex() + ", is missing in class: " + clsClass);
-        }
-        throw new RuntimeException("NoSuchMethodException.", e);
+      call = resolveMethod(clsClass, strMethod);
+    }
+
+    Object element = isEdge ? getMachine().getLastEdge() : getMachine().getCurrentVertex();
+    try {
+      if (call.missing != null) {
+        throw call.missing;
+      }
+      call.method.invoke(objInstance, call.args);
+    } catch (InvocationTargetException e) {
+      if (call.hasParameter) {
+        logger.error("InvocationTargetException for: " + element);
+        throw new RuntimeException("InvocationTargetException.", e);
       }
+      logger.error("InvocationTargetException for: " + element + " : " + e.getCause().getMessage());
+      Util.logStackTraceToError(e);
+      throw new RuntimeException("InvocationTargetException.", e.getCause());
+    } catch (NoSuchMethodException e) {
+      logger.error("In model: " + getGraph());
+      if (call.hasParameter) {
+        logger.error("NoSuchMethodException for: " + element);
+      } else {
+        logger.error("Method: " + element + ", is missing in class: " + clsClass);
+      }
+      throw new RuntimeException("NoSuchMethodException.", e);
     }
   }
 
@@ -944,7 +1029,7 @@ public class ModelBasedTesting extends Observable {
       return manualInstructions;
     }
     ExtendedFiniteStateMachine efsm = (ExtendedFiniteStateMachine) getMachine();
-    if (!(efsm.isJsEnabled() || efsm.isBeanShellEnabled())) {
+    if (!(efsm.isJsEnabled() || efsm.isBeanShellEnabled() || efsm.isNativeEnabled())) {
       return manualInstructions;
     }
 
@@ -1077,7 +1162,7 @@ public class ModelBasedTesting extends Observable {
 
   public AbstractElement setAsVisited(Integer index) {
     AbstractElement e = getMachine().findElement(index);
-    e.setVisitedKey(e.getVisitedKey() + 1);
+    getMachine().setAsVisited(e);
     return e;
   }
 
@@ -1087,7 +1172,7 @@ public class ModelBasedTesting extends Observable {
 
   public AbstractElement decrementVisited(Integer index) {
     AbstractElement e = getMachine().findElement(index);
-    if (e.getVisitedKey() > 0) e.setVisitedKey(e.getVisitedKey() - 1);
+    if (getMachine().getVisits(e) > 0) getMachine().setAsUnvisited(e);
     return e;
   }
 
@@ -1095,10 +1180,17 @@ public class ModelBasedTesting extends Observable {
     getMachine().setAllUnvisited();
   }
 
+  /**
+   * Stops the execution, and closes the progress of the statistics. The progress of a report is kept
+   * until the report has been written, and is then closed by the writer of the report.
+   */
   public synchronized void stop() {
     logger.debug("Will stop the excution of the model: " + getGraph());
     finishedFlag = true;
     stopFlag = null;
+    if (statisticsManager != null && !statisticsManager.hasReportTemplate()) {
+      statisticsManager.close();
+    }
     notifyAll();
   }
 
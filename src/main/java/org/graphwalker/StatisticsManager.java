@@ -23,20 +23,31 @@
 
 package org.graphwalker;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.Map;
 import java.util.Set;
+import java.util.Vector;
 
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.TransformerFactoryConfigurationError;
+import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
@@ -46,9 +57,19 @@ import org.graphwalker.statistics.Statistics;
 import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.output.XMLOutputter;
-import org.jdom2.transform.JDOMSource;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.XMLFilterImpl;
 
 /**
+ * Keeps the statistics counters of a test, and the progress of the counters over the test.<br>
+ * The progress is appended, as compact binary records, to a temporary file, so that the memory used
+ * stays the same however long the test runs. The reports are rendered by streaming the records, as
+ * SAX events, through the report template. The file is only created while the progress is recorded,
+ * and is deleted by {@link #close()}.
+ * 
  * @author Johan Tejle
  * 
  */
@@ -56,28 +77,141 @@ public class StatisticsManager {
 
   static private Logger log = Util.setupLogger(StatisticsManager.class);
   private Hashtable<String, Statistics> counters;
-  private Document progress;
   private Transformer styleTemplate;
 
+  /* The names of the counters in the progress records, by their index in the records */
+  private Vector<String> counterNames = new Vector<String>();
+  private Hashtable<String, Integer> counterIndexes = new Hashtable<String, Integer>();
+
+  private File progressFile = null;
+  private DataOutputStream progress = null;
+  private long sampleInterval = 0;
+  private long lastSample = 0;
+  private boolean unsampledProgress = false;
+  private boolean recordingProgress;
+
   /**
 	 * 
 	 */
   public StatisticsManager() {
+    this(true);
+  }
+
+  /**
+   * @param recordingProgress whether the progress of the counters is recorded, or only their current
+   *        state is kept
+   */
+  public StatisticsManager(boolean recordingProgress) {
     this.counters = new Hashtable<String, Statistics>();
-    this.progress = new Document(new Element("Statistics"));
+    this.recordingProgress = recordingProgress;
   }
 
-  public void addStatisicsCounter(String name, Statistics statisicsCounter) {
+  public synchronized void addStatisicsCounter(String name, Statistics statisicsCounter) {
     counters.put(name, statisicsCounter);
   }
 
-  public void addProgress(AbstractElement element) {
+  /**
+   * Only records the progress at most once every interval. The progress of the last step is always
+   * part of the reports.
+   * 
+   * @param milliseconds the interval, or 0 to record the progress of every step
+   */
+  public synchronized void setSampleInterval(long milliseconds) {
+    this.sampleInterval = milliseconds;
+  }
+
+  /**
+   * Starts or stops recording the progress. When started, the current state of any counters is
+   * recorded first.
+   */
+  public synchronized void setRecordingProgress(boolean recordingProgress) {
+    boolean started = recordingProgress && !this.recordingProgress;
+    this.recordingProgress = recordingProgress;
+    if (started && !counters.isEmpty()) {
+      recordProgress();
+    }
+  }
+
+  public synchronized boolean isRecordingProgress() {
+    return recordingProgress;
+  }
+
+  public synchronized void addProgress(AbstractElement element) {
     for (Enumeration<String> e = counters.keys(); e.hasMoreElements();) {
       String key = e.nextElement();
       Statistics stats = counters.get(key);
       stats.addProgress(element);
     }
-    this.progress.getRootElement().addContent(getCurrentStatistic().detachRootElement());
+
+    if (!recordingProgress) {
+      unsampledProgress = true;
+      return;
+    }
+    if (sampleInterval > 0) {
+      long now = System.currentTimeMillis();
+      if (now - lastSample < sampleInterval) {
+        unsampledProgress = true;
+        return;
+      }
+      lastSample = now;
+    }
+    recordProgress();
+  }
+
+  private void recordProgress() {
+    unsampledProgress = false;
+    try {
+      writeRecord();
+    } catch (IOException e) {
+      throw new RuntimeException("Could not write the progress to '" + progressFile + "'", e);
+    }
+  }
+
+  /**
+   * Closes and deletes the progress file. The counters are kept, and the progress is recorded in a new
+   * file should it be added to again.
+   */
+  public synchronized void close() {
+    if (progress != null) {
+      try {
+        progress.close();
+      } catch (IOException e) {
+        log.warn("Could not close the progress file '" + progressFile + "'", e);
+      }
+      progress = null;
+    }
+    if (progressFile != null) {
+      if (!progressFile.delete()) {
+        log.warn("Could not delete the progress file '" + progressFile + "'");
+      }
+      progressFile = null;
+    }
+    unsampledProgress = true;
+  }
+
+  private void writeRecord() throws IOException {
+    if (progress == null) {
+      progressFile = File.createTempFile("graphwalker-progress", ".bin");
+      progress = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(progressFile)));
+    }
+    progress.writeInt(counters.size());
+    for (Enumeration<String> e = counters.keys(); e.hasMoreElements();) {
+      String key = e.nextElement();
+      int[] stats = getStatistic(key);
+      progress.writeInt(getCounterIndex(key));
+      progress.writeInt(stats[0]);
+      progress.writeInt(stats[1]);
+    }
+  }
+
+  private int getCounterIndex(String name) {
+    Integer index = counterIndexes.get(name);
+    if (index == null) {
+      index = counterNames.size();
+      counterNames.add(name);
+      counterIndexes.put(name, index);
+    }
+    return index;
   }
 
   private int[] getStatistic(String key) {
@@ -85,17 +219,43 @@ public class StatisticsManager {
     return new int[] {stats.getCurrent(), stats.getMax()};
   }
 
-  public String getCurrentStatisticXml() {
+  public synchronized String getCurrentStatisticXml() {
     XMLOutputter outputter = new XMLOutputter();
     return outputter.outputString(getCurrentStatistic());
   }
 
-  public String getFullProgressXml() {
+  /**
+   * Builds the whole progress as a document, so unlike the reports it needs memory in proportion to
+   * the length of the test.
+   */
+  public synchronized String getFullProgressXml() {
+    final Element root = new Element("Statistics");
+    readProgress(new ProgressHandler() {
+      private Element statistic;
+
+      @Override
+      public void startStatistic() {
+        statistic = new Element("Statistic");
+        root.addContent(statistic);
+      }
+
+      @Override
+      public void data(String type, int value, int max) {
+        Element child = new Element("Data");
+        child.setAttribute("type", type);
+        child.setAttribute("value", "" + value);
+        child.setAttribute("max", "" + max);
+        statistic.addContent(child);
+      }
+
+      @Override
+      public void endStatistic() {}
+    });
     XMLOutputter outputter = new XMLOutputter();
-    return outputter.outputString(this.progress);
+    return outputter.outputString(new Document(root));
   }
 
-  public Document getCurrentStatistic() {
+  public synchronized Document getCurrentStatistic() {
     Element root = new Element("Statistic");
     Document doc = new Document(root);
     for (Enumeration<String> e = counters.keys(); e.hasMoreElements();) {
@@ -111,10 +271,14 @@ public class StatisticsManager {
     return doc;
   }
 
-  public void setReportTemplate(InputStream inputStream) {
+  /**
+   * Sets the template of the reports, and starts recording the progress for them.
+   */
+  public synchronized void setReportTemplate(InputStream inputStream) {
     log.info("Setting template to '" + inputStream + "'");
     try {
       styleTemplate = TransformerFactory.newInstance().newTemplates(new StreamSource(inputStream)).newTransformer();
+      setRecordingProgress(true);
     } catch (TransformerConfigurationException e) {
       throw new RuntimeException("A serious configuration exception detected in '" + inputStream + "' while creating report template.", e);
     } catch (TransformerFactoryConfigurationError e) {
@@ -130,10 +294,14 @@ public class StatisticsManager {
     }
   }
 
-  public void writeFullReport(PrintStream out) {
+  public synchronized boolean hasReportTemplate() {
+    return styleTemplate != null;
+  }
+
+  public synchronized void writeFullReport(PrintStream out) {
     log.info("Writing full report");
     try {
-      styleTemplate.transform(new JDOMSource((Document) this.progress.clone()), new StreamResult(out));
+      styleTemplate.transform(new SAXSource(new ProgressReader(), new InputSource()), new StreamResult(out));
       // out.close();
     } catch (TransformerException e) {
       throw new RuntimeException("Could not create report", e);
@@ -146,4 +314,145 @@ public class StatisticsManager {
   public Set<String> getCounterNames() {
     return new HashSet<String>(counters.keySet());
   }
+
+  /**
+   * @return copies of the counters, by name, which later progress does not change
+   */
+  public synchronized Map<String, Statistics> snapshotCounters() {
+    Hashtable<String, Statistics> snapshot = new Hashtable<String, Statistics>();
+    for (Map.Entry<String, Statistics> entry : counters.entrySet()) {
+      snapshot.put(entry.getKey(), entry.getValue().snapshot());
+    }
+    return snapshot;
+  }
+
+  /**
+   * Merges counters of other runs of the same model, such as the snapshots of several parallel
+   * walkers, into the counters of this manager with the same names. Counters this manager does not
+   * have are added as copies. The progress history is not merged.
+   */
+  public synchronized void mergeCounters(Map<String, Statistics> others) {
+    for (Map.Entry<String, Statistics> entry : others.entrySet()) {
+      Statistics counter = counters.get(entry.getKey());
+      if (counter == null) {
+        addStatisicsCounter(entry.getKey(), entry.getValue().snapshot());
+      } else {
+        counter.merge(entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Reads the progress records, in the order they were written. If the progress of the last step was
+   * not sampled, it is read last.
+   */
+  private void readProgress(ProgressHandler handler) {
+    try {
+      if (progress != null) {
+        progress.flush();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(progressFile)));
+        try {
+          while (true) {
+            int size;
+            try {
+              size = in.readInt();
+            } catch (EOFException e) {
+              break;
+            }
+            handler.startStatistic();
+            for (int i = 0; i < size; i++) {
+              String type = counterNames.get(in.readInt());
+              int value = in.readInt();
+              handler.data(type, value, in.readInt());
+            }
+            handler.endStatistic();
+          }
+        } finally {
+          in.close();
+        }
+      }
+      if (unsampledProgress) {
+        handler.startStatistic();
+        for (Enumeration<String> e = counters.keys(); e.hasMoreElements();) {
+          String key = e.nextElement();
+          int[] stats = getStatistic(key);
+          handler.data(key, stats[0], stats[1]);
+        }
+        handler.endStatistic();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Could not read the progress from '" + progressFile + "'", e);
+    }
+  }
+
+  private interface ProgressHandler {
+    void startStatistic();
+
+    void data(String type, int value, int max);
+
+    void endStatistic();
+  }
+
+  /**
+   * Feeds the progress records to the report template as the SAX events of the document
+   * <code>&lt;Statistics&gt;&lt;Statistic&gt;&lt;Data type="" value="" max=""/&gt;...</code>
+   */
+  private class ProgressReader extends XMLFilterImpl {
+
+    @Override
+    public void parse(InputSource input) throws SAXException {
+      final ContentHandler handler = getContentHandler();
+      final AttributesImpl attributes = new AttributesImpl();
+      handler.startDocument();
+      handler.startElement("", "Statistics", "Statistics", attributes);
+      try {
+        readProgress(new ProgressHandler() {
+          @Override
+          public void startStatistic() {
+            try {
+              handler.startElement("", "Statistic", "Statistic", attributes);
+            } catch (SAXException e) {
+              throw new RuntimeException(e);
+            }
+          }
+
+          @Override
+          public void data(String type, int value, int max) {
+            AttributesImpl data = new AttributesImpl();
+            data.addAttribute("", "type", "type", "CDATA", type);
+            data.addAttribute("", "value", "value", "CDATA", "" + value);
+            data.addAttribute("", "max", "max", "CDATA", "" + max);
+            try {
+              handler.startElement("", "Data", "Data", data);
+              handler.endElement("", "Data", "Data");
+            } catch (SAXException e) {
+              throw new RuntimeException(e);
+            }
+          }
+
+          @Override
+          public void endStatistic() {
+            try {
+              handler.endElement("", "Statistic", "Statistic");
+            } catch (SAXException e) {
+              throw new RuntimeException(e);
+            }
+          }
+        });
+      } catch (RuntimeException e) {
+        if (e.getCause() instanceof SAXException) throw (SAXException) e.getCause();
+        throw e;
+      }
+      handler.endElement("", "Statistics", "Statistics");
+      handler.endDocument();
+    }
+
+    @Override
+    public void setFeature(String name, boolean value) {}
+
+    @Override
+    public boolean getFeature(String name) {
+      return false;
+    }
+  }
 }
@@ -34,13 +34,16 @@ import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.StringWriter;
+import java.lang.reflect.Array;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.SocketException;
 import java.net.URL;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.Vector;
@@ -65,6 +68,7 @@ import org.graphwalker.exceptions.GeneratorException;
 import org.graphwalker.exceptions.StopConditionException;
 import org.graphwalker.generators.A_StarPathGenerator;
 import org.graphwalker.generators.AllPathPermutationsGenerator;
+import org.graphwalker.generators.ChinesePostmanPathGenerator;
 import org.graphwalker.generators.CodeGenerator;
 import org.graphwalker.generators.CombinedPathGenerator;
 import org.graphwalker.generators.ListGenerator;
@@ -148,6 +152,102 @@ public class Util {
     }
   }
 
+  /**
+   * Mixes the bits of a value, using the finalizer of the SplitMix64 generator. Values that differ
+   * in a single bit give unrelated results.
+   */
+  public static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+  /**
+   * @return the 64 bit fingerprint of a named variable and its value
+   * @see #hash64(Object)
+   */
+  public static long getFingerprint(String name, Object value) {
+    return mix(hash64(name) * 0x9e3779b97f4a7c15L + hash64(value));
+  }
+
+  /**
+   * Hashes a value into 64 bits from its content, so that unequal values that share a 32 bit
+   * hashCode, like "Aa" and "BB", still differ. Numbers are hashed by value, so 2 and 2.0 hash the
+   * same. Arrays, lists, sets and maps are hashed from their elements, nested a few levels deep.
+   * Other objects fall back on their hashCode.
+   */
+  public static long hash64(Object value) {
+    return hash64(value, 4);
+  }
+
+  private static long hash64(Object value, int depth) {
+    if (value == null) {
+      return 0;
+    }
+    if (value instanceof CharSequence) {
+      CharSequence chars = (CharSequence) value;
+      long hash = 0xcbf29ce484222325L;
+      for (int i = 0; i < chars.length(); i++) {
+        hash = (hash ^ chars.charAt(i)) * 0x100000001b3L;
+      }
+      return mix(hash);
+    }
+    if (value instanceof Double || value instanceof Float) {
+      double d = ((Number) value).doubleValue();
+      return mix(d == (long) d ? (long) d : Double.doubleToLongBits(d));
+    }
+    if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+      return mix(((Number) value).longValue());
+    }
+    if (value instanceof Character) {
+      return mix(0x3c6ef372fe94f82bL + (Character) value);
+    }
+    if (value instanceof Boolean) {
+      return mix((Boolean) value ? 0xa54ff53a5f1d36f1L : 0x510e527fade682d1L);
+    }
+    if (depth > 0) {
+      if (value.getClass().isArray()) {
+        long hash = 0x243f6a8885a308d3L;
+        for (int i = 0; i < Array.getLength(value); i++) {
+          hash = mix(hash + hash64(Array.get(value, i), depth - 1));
+        }
+        return hash;
+      }
+      if (value instanceof Map) {
+        long hash = 0x13198a2e03707344L;
+        for (Object o : ((Map<?, ?>) value).entrySet()) {
+          Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+          hash += mix(hash64(entry.getKey(), depth - 1) * 0x9e3779b97f4a7c15L + hash64(entry.getValue(), depth - 1));
+        }
+        return hash;
+      }
+      if (value instanceof Set) {
+        long hash = 0xa4093822299f31d0L;
+        for (Object element : (Set<?>) value) {
+          hash += hash64(element, depth - 1);
+        }
+        return hash;
+      }
+      if (value instanceof Iterable) {
+        long hash = 0x082efa98ec4e6c89L;
+        for (Object element : (Iterable<?>) value) {
+          hash = mix(hash + hash64(element, depth - 1));
+        }
+        return hash;
+      }
+    }
+    return mix(value.hashCode());
+  }
+
+  /**
+   * Splits a master seed into the seed of the index:th of several independent random sequences, the
+   * way the SplitMix64 generator steps its state. The same master seed and index always gives the
+   * same seed.
+   */
+  public static long splitSeed(long masterSeed, int index) {
+    return mix(masterSeed + (index + 1) * 0x9e3779b97f4a7c15L);
+  }
+
   public static Logger setupLogger(@SuppressWarnings("rawtypes") final Class classParam) {
     Logger logger = Logger.getLogger(classParam);
     if (new File("graphwalker.properties").canRead()) {
@@ -308,6 +408,10 @@ public class Util {
         generator = new NonOptimizedShortestPath();
         break;
 
+      case Keywords.GENERATOR_CHINESE_POSTMAN:
+        generator = new ChinesePostmanPathGenerator();
+        break;
+
       default:
         throw new GeneratorException("Unsupported generator selected.");
     }
@@ -454,9 +558,15 @@ public class Util {
     if (root.getAttributeValue("SCRIPT_ENGINE") != null && root.getAttributeValue("SCRIPT_ENGINE").equalsIgnoreCase("js")) {
       Util.logger.debug("Enabling JavaScript engine");
       mbt.enableJsScriptEngine(true);
+      mbt.enableNativeScriptEngine(false);
+    } else if (root.getAttributeValue("SCRIPT_ENGINE") != null && root.getAttributeValue("SCRIPT_ENGINE").equalsIgnoreCase("native")) {
+      Util.logger.debug("Enabling native expression engine");
+      mbt.enableJsScriptEngine(false);
+      mbt.enableNativeScriptEngine(true);
     } else {
       Util.logger.debug("Using BeanShell script engine, if EFSM is enabled.");
       mbt.enableJsScriptEngine(false);
+      mbt.enableNativeScriptEngine(false);
     }
 
     if (root.getAttributeValue("EXTENDED") != null && root.getAttributeValue("EXTENDED").equalsIgnoreCase("true")) {
@@ -597,6 +707,7 @@ public class Util {
         }
         if (reportName != null && reportTemplate != null) {
           mbt.getStatisticsManager().writeFullReport(reportName);
+          mbt.getStatisticsManager().close();
         }
       }
     }
@@ -639,9 +750,15 @@ public class Util {
     if (root.getAttributeValue("SCRIPT_ENGINE") != null && root.getAttributeValue("SCRIPT_ENGINE").equalsIgnoreCase("js")) {
       Util.logger.debug("Enabling JavaScript engine");
       mbt.enableJsScriptEngine(true);
+      mbt.enableNativeScriptEngine(false);
+    } else if (root.getAttributeValue("SCRIPT_ENGINE") != null && root.getAttributeValue("SCRIPT_ENGINE").equalsIgnoreCase("native")) {
+      Util.logger.debug("Enabling native expression engine");
+      mbt.enableJsScriptEngine(false);
+      mbt.enableNativeScriptEngine(true);
     } else {
       Util.logger.debug("Using BeanShell script engine, if EFSM is enabled.");
       mbt.enableJsScriptEngine(false);
+      mbt.enableNativeScriptEngine(false);
     }
 
     if (root.getAttributeValue("EXTENDED") != null && root.getAttributeValue("EXTENDED").equalsIgnoreCase("true")) {
@@ -783,6 +900,7 @@ public class Util {
         }
         if (reportName != null && reportTemplate != null) {
           mbt.getStatisticsManager().writeFullReport(reportName);
+          mbt.getStatisticsManager().close();
         }
       }
     }
@@ -109,7 +109,7 @@ public class WebRenderer extends BaseWebSocketHandler implements Observer {
       node = new JSONObject();
       node.put("id", ((AbstractElement) arg).getIdKey());
       node.put("state", getState((AbstractElement) arg));
-      node.put("visited", ((AbstractElement) arg).getVisitedKey());
+      node.put("visited", mbts.get(modelHandler.getCurrentRunningModel()).getMachine().getVisits((AbstractElement) arg));
 
       nodes = new ArrayList<JSONObject>();
       nodes.add(node);
@@ -248,10 +248,11 @@ public class WebRenderer extends BaseWebSocketHandler implements Observer {
   }
 
   private String getState(AbstractElement n) {
-    logger.debug("getState AbstractElement n: " + n + ", n.getVisitedKey(): " + n.getVisitedKey() + ", mbt: "
+    int visits = mbts.get(modelHandler.getCurrentRunningModel()).getMachine().getVisits(n);
+    logger.debug("getState AbstractElement n: " + n + ", visits: " + visits + ", mbt: "
         + ObjectUtils.identityToString(mbts.get(modelHandler.getCurrentRunningModel()).getCurrentAbstractElement()));
     String state = "";
-    if (n.getVisitedKey() == 0) {
+    if (visits == 0) {
       state = "unvisited";
     } else {
       state = "visited";
@@ -1,44 +1,69 @@
 package org.graphwalker.analyze;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.graphwalker.Keywords;
 import org.graphwalker.ModelBasedTesting;
-import org.graphwalker.graph.Edge;
-import org.graphwalker.graph.Graph;
+import org.graphwalker.graph.DistanceOracle;
+import org.graphwalker.graph.GraphSnapshot;
 import org.graphwalker.graph.Vertex;
 
-import edu.uci.ics.jung.algorithms.shortestpath.DijkstraShortestPath;
-
 public class Analyze {
 
   /**
-   * Look for vertices that are not reachable from any other vertex in the graph.
+   * Look for vertices that are not reachable from any other vertex in the graph. The vertices are
+   * searched backwards from in parallel, one task per vertex.
    * 
    * @param mbt
    */
   public static String unreachableVertices(ModelBasedTesting mbt) {
-    StringBuffer str = new StringBuffer();
-    Graph graph = mbt.getMachine().getModel();
-    for (Vertex source : mbt.getMachine().getModel().getVertices()) {
-      if (source.getLabelKey().equalsIgnoreCase(Keywords.START_NODE)) {
-        continue;
-      }
-      for (Vertex target : mbt.getMachine().getModel().getVertices()) {
-        if (target.getLabelKey().equalsIgnoreCase(Keywords.START_NODE)) {
-          continue;
-        }
-        if (target == source) {
-          continue;
-        }
-        List<Edge> dijkstraShortestPath = new DijkstraShortestPath<Vertex, Edge>(graph).getPath(source, target);
-        if (dijkstraShortestPath.size() > 0) {
+    final GraphSnapshot snapshot = mbt.getMachine().getModel().getSnapshot();
+    final DistanceOracle oracle = snapshot.getDistanceOracle();
+
+    ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    try {
+      List<Future<String>> results = new ArrayList<Future<String>>();
+      for (int i = 0; i < snapshot.getVertexCount(); i++) {
+        if (snapshot.getVertex(i).getLabelKey().equalsIgnoreCase(Keywords.START_NODE)) {
           continue;
         }
-        str.append("There is no way to reach: " + target + ", from: " + source + "\n");
+        final int target = i;
+        results.add(executor.submit(new Callable<String>() {
+          @Override
+          public String call() {
+            StringBuilder str = new StringBuilder();
+            int[] distances = oracle.getDistancesTo(target);
+            for (int source = 0; source < distances.length; source++) {
+              Vertex vertex = snapshot.getVertex(source);
+              if (distances[source] != -1 || vertex.getLabelKey().equalsIgnoreCase(Keywords.START_NODE)) {
+                continue;
+              }
+              str.append("There is no way to reach: " + snapshot.getVertex(target) + ", from: " + vertex + "\n");
+            }
+            return str.toString();
+          }
+        }));
+      }
+
+      StringBuffer str = new StringBuffer();
+      for (Future<String> result : results) {
+        str.append(result.get());
       }
+      return str.toString();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("The analysis was interrupted", e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException("The analysis failed", e.getCause());
+    } finally {
+      executor.shutdownNow();
     }
-    return str.toString();
   }
 
 }
@@ -32,12 +32,28 @@ public class AlternativeCondition extends StopCondition {
 
   private Vector<StopCondition> conditions;
 
+  private long fulfilledVersion = -1;
+  private boolean fulfilled;
+
+  /**
+   * The result is cached for as long as the version of the machine is the same, unless any of the
+   * conditions can not be cached.
+   */
   @Override
   public boolean isFulfilled() {
+    long version = (machine == null ? -1 : machine.getVersion());
+    if (version != -1 && version == fulfilledVersion && isCacheable()) {
+      return fulfilled;
+    }
+    fulfilled = false;
     for (StopCondition condition : conditions) {
-      if (condition.isFulfilled()) return true;
+      if (condition.isFulfilled()) {
+        fulfilled = true;
+        break;
+      }
     }
-    return false;
+    fulfilledVersion = version;
+    return fulfilled;
   }
 
   public AlternativeCondition() {
@@ -46,16 +62,26 @@ public class AlternativeCondition extends StopCondition {
 
   public void add(StopCondition condition) {
     this.conditions.add(condition);
+    this.fulfilledVersion = -1;
   }
 
   @Override
   public void setMachine(FiniteStateMachine machine) {
     super.setMachine(machine);
+    this.fulfilledVersion = -1;
     for (StopCondition condition : conditions) {
       condition.setMachine(machine);
     }
   }
 
+  @Override
+  public boolean isCacheable() {
+    for (StopCondition condition : conditions) {
+      if (!condition.isCacheable()) return false;
+    }
+    return true;
+  }
+
   @Override
   public double getFulfilment() {
     double retur = 0;
@@ -68,6 +94,23 @@ public class AlternativeCondition extends StopCondition {
     return retur;
   }
 
+  /**
+   * Any of the conditions can be fulfilled, so the distance is only known if it is known for all
+   * of them.
+   */
+  @Override
+  public int getRemainingDistance() {
+    int retur = UNREACHABLE;
+    for (StopCondition condition : conditions) {
+      int distance = condition.getRemainingDistance();
+      if (distance == -1) {
+        return -1;
+      }
+      retur = Math.min(retur, distance);
+    }
+    return retur;
+  }
+
   @Override
   public String toString() {
     StringBuilder stringBuilder = new StringBuilder("(");
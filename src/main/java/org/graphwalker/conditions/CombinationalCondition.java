@@ -32,14 +32,28 @@ public class CombinationalCondition extends StopCondition {
 
   private Vector<StopCondition> conditions;
 
+  private long fulfilledVersion = -1;
+  private boolean fulfilled;
+
+  /**
+   * The result is cached for as long as the version of the machine is the same, unless any of the
+   * conditions can not be cached.
+   */
   @Override
   public boolean isFulfilled() {
+    long version = (machine == null ? -1 : machine.getVersion());
+    if (version != -1 && version == fulfilledVersion && isCacheable()) {
+      return fulfilled;
+    }
+    fulfilled = true;
     for (StopCondition condition : conditions) {
       if (!condition.isFulfilled()) {
-        return false;
+        fulfilled = false;
+        break;
       }
     }
-    return true;
+    fulfilledVersion = version;
+    return fulfilled;
   }
 
   public CombinationalCondition() {
@@ -48,16 +62,26 @@ public class CombinationalCondition extends StopCondition {
 
   public void add(StopCondition condition) {
     this.conditions.add(condition);
+    this.fulfilledVersion = -1;
   }
 
   @Override
   public void setMachine(FiniteStateMachine machine) {
     super.setMachine(machine);
+    this.fulfilledVersion = -1;
     for (StopCondition condition : conditions) {
       condition.setMachine(machine);
     }
   }
 
+  @Override
+  public boolean isCacheable() {
+    for (StopCondition condition : conditions) {
+      if (!condition.isCacheable()) return false;
+    }
+    return true;
+  }
+
   @Override
   public double getFulfilment() {
     double retur = 0;
@@ -67,6 +91,18 @@ public class CombinationalCondition extends StopCondition {
     return retur / conditions.size();
   }
 
+  /**
+   * All conditions have to be fulfilled, so the longest known distance is a bound for all of them.
+   */
+  @Override
+  public int getRemainingDistance() {
+    int retur = -1;
+    for (StopCondition condition : conditions) {
+      retur = Math.max(retur, condition.getRemainingDistance());
+    }
+    return retur;
+  }
+
   @Override
   public String toString() {
     StringBuilder stringBuilder = new StringBuilder("(");
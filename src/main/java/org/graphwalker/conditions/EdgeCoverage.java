@@ -44,7 +44,7 @@ public class EdgeCoverage extends StopCondition {
   @Override
   public boolean isFulfilled() {
     double edges = machine.getAllEdges().size();
-    double covered = machine.getNumOfCoveredEdges();
+    double covered = machine.getNumOfGloballyCoveredEdges();
     logger.debug("Edges/covered (limit): " + edges + "/" + covered + " (" + limit + ")");
     return (covered / edges) >= limit;
   }
@@ -52,10 +52,28 @@ public class EdgeCoverage extends StopCondition {
   @Override
   public double getFulfilment() {
     double edges = machine.getAllEdges().size();
-    double covered = machine.getNumOfCoveredEdges();
+    double covered = machine.getNumOfGloballyCoveredEdges();
     return (covered / edges) / limit;
   }
 
+  @Override
+  public int getRemainingDistance() {
+    int remaining = getRemainingCount(limit, machine.getAllEdges().size(), machine.getNumOfGloballyCoveredEdges());
+    if (remaining == 0) {
+      return 0;
+    }
+    int distance = machine.getDistanceToUncoveredEdge();
+    return (distance == Integer.MAX_VALUE ? UNREACHABLE : Math.max(remaining, distance));
+  }
+
+  /**
+   * The edges covered by the machines sharing coverage with this one change without the machine knowing.
+   */
+  @Override
+  public boolean isCacheable() {
+    return machine == null || machine.getSharedCoverage() == null;
+  }
+
   @Override
   public String toString() {
     return "EC>=" + (int) (100 * limit);
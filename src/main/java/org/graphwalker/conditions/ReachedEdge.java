@@ -23,15 +23,18 @@
 
 package org.graphwalker.conditions;
 
-import java.util.ArrayList;
-
 import org.graphwalker.graph.Edge;
+import org.graphwalker.graph.GraphSnapshot;
 import org.graphwalker.machines.FiniteStateMachine;
 
 public class ReachedEdge extends StopCondition {
 
-  private ArrayList<Edge> allEdges;
+  // The distance of the edges that can not reach the end edge
+  private static final int NO_PATH = 99999;
+
+  private GraphSnapshot snapshot;
   private Edge endEdge;
+  private int[] vertexDistance;
   private int[] proximity;
   private int maxDistance;
   private String edgeName;
@@ -50,8 +53,8 @@ public class ReachedEdge extends StopCondition {
     if (this.endEdge == null) {
       throw new RuntimeException("Vertex '" + edgeName + "' not found in model");
     }
-    this.proximity = getFloydWarshall();
-    this.maxDistance = max(this.proximity);
+    this.snapshot = null;
+    getSnapshot();
   }
 
   public ReachedEdge(String edgeName) {
@@ -61,56 +64,60 @@ public class ReachedEdge extends StopCondition {
 
   @Override
   public double getFulfilment() {
+    GraphSnapshot snapshot = getSnapshot();
     int distance = this.maxDistance;
     if (getMachine().getLastEdge() != null) {
-      distance = proximity[allEdges.indexOf(getMachine().getLastEdge())];
+      distance = proximity[snapshot.indexOf(getMachine().getLastEdge())];
     }
     return (1) - ((double) distance / (double) maxDistance);
   }
 
-  private int max(int[] t) {
-    int maximum = t[0];
-    for (int i = 1; i < t.length; i++) {
-      if (t[i] > maximum) {
-        maximum = t[i];
-      }
+  @Override
+  public int getRemainingDistance() {
+    GraphSnapshot snapshot = getSnapshot();
+    if (getMachine().getLastEdge() == endEdge) {
+      return 0;
     }
-    return maximum;
+    int distance = vertexDistance[snapshot.indexOf(getMachine().getCurrentVertex())];
+    return (distance == -1 ? UNREACHABLE : distance + 1);
   }
 
-  private int[][] getFloydWarshallMatrix() {
-    allEdges = new ArrayList<Edge>(getMachine().getAllEdges());
-    int n = allEdges.size();
-    int[][] retur = new int[n][n];
-    for (int i = 0; i < n; i++) {
-      for (int j = 0; j < n; j++) {
-        int x = 99999;
-        if (i == j) {
-          x = 0;
-        } else if (getMachine().getModel().isSource(getMachine().getModel().getDest(allEdges.get(j)), allEdges.get(i))) {
-          x = 1;
+  /**
+   * Returns the snapshot of the model. The distances to the end edge are indexed by the ordinals of
+   * the snapshot, so they are found again, by a backwards breadth first search from the source of
+   * the end edge, if the model has been modified.
+   */
+  private GraphSnapshot getSnapshot() {
+    GraphSnapshot current = getMachine().getModel().getSnapshot();
+    if (current != snapshot) {
+      int end = current.indexOf(endEdge);
+      if (end == -1) {
+        throw new RuntimeException("edge no longer in Graph!");
+      }
+      vertexDistance = current.getDistanceOracle().getDistancesTo(current.getSource(end));
+      proximity = new int[current.getEdgeCount()];
+      for (int i = 0; i < proximity.length; i++) {
+        int distance = vertexDistance[current.getDest(i)];
+        if (i == end) {
+          proximity[i] = 0;
+        } else {
+          proximity[i] = (distance == -1 ? NO_PATH : distance + 1);
         }
-        retur[i][j] = x;
       }
+      maxDistance = max(proximity);
+      snapshot = current;
     }
-    return retur;
+    return current;
   }
 
-  private int[] getFloydWarshall() {
-    int path[][] = getFloydWarshallMatrix();
-    int n = path.length;
-    for (int k = 0; k < n; k++) {
-      for (int i = 0; i < n; i++) {
-        for (int j = 0; j < n; j++) {
-          path[i][j] = Math.min(path[i][j], path[i][k] + path[k][j]);
-        }
+  private int max(int[] t) {
+    int maximum = t[0];
+    for (int i = 1; i < t.length; i++) {
+      if (t[i] > maximum) {
+        maximum = t[i];
       }
     }
-    int startIndex = allEdges.indexOf(endEdge);
-    if (startIndex >= 0) {
-      return path[startIndex];
-    }
-    throw new RuntimeException("edge no longer in Graph!");
+    return maximum;
   }
 
   @Override
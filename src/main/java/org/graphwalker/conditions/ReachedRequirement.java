@@ -24,13 +24,49 @@
 package org.graphwalker.conditions;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashSet;
 
+import org.graphwalker.graph.AbstractElement;
+import org.graphwalker.graph.Edge;
+import org.graphwalker.graph.GraphSnapshot;
+import org.graphwalker.graph.Requirements;
+import org.graphwalker.graph.Vertex;
+import org.graphwalker.machines.CoverageListener;
+import org.graphwalker.machines.FiniteStateMachine;
+
 public class ReachedRequirement extends StopCondition {
 
   private Collection<String> requirements;
 
+  /* The requirement ids the sets below are indexed by */
+  private Requirements ids = null;
+  /* The ids of the requirements, and of those of them that are covered */
+  private BitSet tracked = new BitSet();
+  private BitSet coveredTracked = new BitSet();
+
+  /* The number of the requirements covered, or -1 if they need to be counted again */
+  private int covered = -1;
+
+  private final CoverageListener listener = new CoverageListener() {
+    // Only the first visit of an element, or the last one taken back, can change what is covered
+    @Override
+    public void visited(AbstractElement element, int visits) {
+      if (visits == 1) update(element);
+    }
+
+    @Override
+    public void unvisited(AbstractElement element, int visits) {
+      if (visits == 0) update(element);
+    }
+
+    @Override
+    public void reset() {
+      covered = -1;
+    }
+  };
+
   public ReachedRequirement(String requirements) {
     String[] list = requirements.split(",");
     for (int i = 0; i < list.length; i++) {
@@ -39,16 +75,78 @@ public class ReachedRequirement extends StopCondition {
     this.requirements = new HashSet<String>(Arrays.asList(list));
   }
 
+  @Override
+  public void setMachine(FiniteStateMachine machine) {
+    if (this.machine != null) {
+      this.machine.removeCoverageListener(listener);
+    }
+    super.setMachine(machine);
+    if (machine != null) {
+      machine.addCoverageListener(listener);
+    }
+    covered = -1;
+  }
+
   @Override
   public boolean isFulfilled() {
-    return machine.getCoveredRequirements().containsAll(requirements);
+    return getNumOfCovered() == requirements.size();
   }
 
   @Override
   public double getFulfilment() {
-    Collection<String> covered = machine.getCoveredRequirements();
-    covered.retainAll(requirements);
-    return covered.size() / (double) requirements.size();
+    return getNumOfCovered() / (double) requirements.size();
+  }
+
+  private int getNumOfCovered() {
+    if (covered == -1 || ids != machine.getModel().getSnapshot().getRequirements()) {
+      ids = machine.getModel().getSnapshot().getRequirements();
+      tracked.clear();
+      coveredTracked.clear();
+      covered = 0;
+      for (String requirement : requirements) {
+        int id = ids.getId(requirement);
+        if (id != -1) {
+          tracked.set(id);
+          if (machine.isRequirementCovered(id)) {
+            coveredTracked.set(id);
+            covered++;
+          }
+        }
+      }
+    }
+    return covered;
+  }
+
+  /**
+   * Updates the count with the requirements of the element, when its visits may have changed
+   * whether they are covered.
+   */
+  private void update(AbstractElement element) {
+    if (covered == -1) {
+      return;
+    }
+    GraphSnapshot snapshot = machine.getModel().getSnapshot();
+    if (ids != snapshot.getRequirements()) {
+      covered = -1;
+      return;
+    }
+    int[] tags;
+    if (element instanceof Edge) {
+      tags = ids.getEdgeRequirements(snapshot.indexOf((Edge) element));
+    } else if (element instanceof Vertex) {
+      tags = ids.getVertexRequirements(snapshot.indexOf((Vertex) element));
+    } else {
+      return;
+    }
+    for (int tag : tags) {
+      if (tracked.get(tag)) {
+        boolean now = machine.isRequirementCovered(tag);
+        if (now != coveredTracked.get(tag)) {
+          coveredTracked.set(tag, now);
+          covered += (now ? 1 : -1);
+        }
+      }
+    }
   }
 
   @Override
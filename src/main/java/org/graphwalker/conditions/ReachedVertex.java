@@ -23,12 +23,12 @@
 
 package org.graphwalker.conditions;
 
-import java.util.ArrayList;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.log4j.Logger;
+import org.graphwalker.LongHashSet;
 import org.graphwalker.Util;
+import org.graphwalker.graph.GraphSnapshot;
 import org.graphwalker.graph.Vertex;
 import org.graphwalker.machines.ExtendedFiniteStateMachine;
 import org.graphwalker.machines.FiniteStateMachine;
@@ -36,12 +36,25 @@ import org.graphwalker.machines.FiniteStateMachine;
 public class ReachedVertex extends StopCondition {
 
   private static Logger logger = Util.setupLogger(ReachedVertex.class);
-  private ArrayList<Vertex> allVertices;
+
+  // The distance of the vertices that can not reach the end vertex
+  private static final int NO_PATH = 99999;
+
+  private GraphSnapshot snapshot;
   private Vertex endVertex;
   private int[] proximity;
   private int maxDistance;
   private String vertexName;
-  private String subState;
+  private Pattern subState;
+
+  /*
+   * The fingerprints of the data that did, and did not, match the sub state. A* backtracks to the
+   * same data over and over, so the data string is only built and matched the first time the data
+   * is seen. The results are forgotten once there are too many of them.
+   */
+  private static final int MATCH_CAPACITY = 1 << 16;
+  private LongHashSet matchedData = new LongHashSet();
+  private LongHashSet unmatchedData = new LongHashSet();
 
   @Override
   public boolean isFulfilled() {
@@ -57,31 +70,38 @@ public class ReachedVertex extends StopCondition {
     if (this.endVertex == null) {
       throw new RuntimeException("Vertex '" + vertexName + "' not found in model");
     }
-    this.proximity = getFloydWarshall();
-    this.maxDistance = max(this.proximity);
+    this.matchedData.clear();
+    this.unmatchedData.clear();
+    this.snapshot = null;
+    getSnapshot();
   }
 
   public ReachedVertex(String vertexName) {
     String[] vertex = vertexName.split("/", 2);
     this.vertexName = vertex[0];
-    this.subState = (vertex.length > 1 ? vertex[1] : "");
+    this.subState = Pattern.compile(vertex.length > 1 ? vertex[1] : "");
   }
 
   @Override
   public double getFulfilment() {
     logger.debug("Machine: " + getMachine());
-    int distance = proximity[allVertices.indexOf(getMachine().getCurrentVertex())];
+    int distance = proximity[getSnapshot().indexOf(getMachine().getCurrentVertex())];
     if (getMachine() instanceof ExtendedFiniteStateMachine) {
-      String currentVertex = getMachine().getCurrentVertexName();
-      String currentSubState = "";
-      if (vertexName.equals(Vertex.getLabel(currentVertex))) {
-        if (currentVertex.contains("/")) {
-          currentSubState = currentVertex.split("/", 2)[1];
-          Pattern actionPattern = Pattern.compile(this.subState);
-          Matcher actionMatcher = actionPattern.matcher(currentSubState);
-          if (actionMatcher.find()) {
+      if (vertexName.equals(getMachine().getCurrentVertex().getLabelKey()) && getMachine().hasInternalVariables()) {
+        long fingerprint = getMachine().getDataFingerprint();
+        if (matchedData.contains(fingerprint)) {
+          return 1;
+        }
+        if (!unmatchedData.contains(fingerprint)) {
+          if (matchedData.size() + unmatchedData.size() >= MATCH_CAPACITY) {
+            matchedData.clear();
+            unmatchedData.clear();
+          }
+          if (subState.matcher(getMachine().getCurrentDataString()).find()) {
+            matchedData.add(fingerprint);
             return 1;
           }
+          unmatchedData.add(fingerprint);
         }
       }
       return 0;
@@ -90,49 +110,54 @@ public class ReachedVertex extends StopCondition {
     return (1) - ((double) distance / (double) maxDistance);
   }
 
-  private int max(int[] t) {
-    int maximum = t[0];
-    for (int i = 1; i < t.length; i++) {
-      if (t[i] > maximum) {
-        maximum = t[i];
-      }
+  /**
+   * For an extended machine, the data may not match when the vertex is reached, so at the vertex
+   * the distance is at least one step, unless the condition is fulfilled.
+   */
+  @Override
+  public int getRemainingDistance() {
+    int distance = proximity[getSnapshot().indexOf(getMachine().getCurrentVertex())];
+    if (distance == NO_PATH) {
+      return UNREACHABLE;
     }
-    return maximum;
+    if (getMachine() instanceof ExtendedFiniteStateMachine) {
+      return (isFulfilled() ? 0 : Math.max(1, distance));
+    }
+    return distance;
   }
 
-  private int[][] getFloydWarshallMatrix() {
-    allVertices = new ArrayList<Vertex>(getMachine().getAllVertices());
-    int n = allVertices.size();
-    int[][] retur = new int[n][n];
-    for (int i = 0; i < n; i++) {
-      for (int j = 0; j < n; j++) {
-        int x = 99999;
-        if (i == j) {
-          x = 0;
-        } else if (getMachine().getModel().isPredecessor(allVertices.get(i), allVertices.get(j))) {
-          x = 1;
+  /**
+   * Returns the snapshot of the model. The distances to the end vertex are indexed by the ordinals
+   * of the snapshot, so they are found again, by a backwards breadth first search, if the model has
+   * been modified.
+   */
+  private GraphSnapshot getSnapshot() {
+    GraphSnapshot current = getMachine().getModel().getSnapshot();
+    if (current != snapshot) {
+      int end = current.indexOf(endVertex);
+      if (end == -1) {
+        throw new RuntimeException("vertex no longer in Graph!");
+      }
+      proximity = current.getDistanceOracle().getDistancesTo(end).clone();
+      for (int i = 0; i < proximity.length; i++) {
+        if (proximity[i] == -1) {
+          proximity[i] = NO_PATH;
         }
-        retur[i][j] = x;
       }
+      maxDistance = max(proximity);
+      snapshot = current;
     }
-    return retur;
+    return current;
   }
 
-  private int[] getFloydWarshall() {
-    int path[][] = getFloydWarshallMatrix();
-    int n = path.length;
-    for (int k = 0; k < n; k++) {
-      for (int i = 0; i < n; i++) {
-        for (int j = 0; j < n; j++) {
-          path[i][j] = Math.min(path[i][j], path[i][k] + path[k][j]);
-        }
+  private int max(int[] t) {
+    int maximum = t[0];
+    for (int i = 1; i < t.length; i++) {
+      if (t[i] > maximum) {
+        maximum = t[i];
       }
     }
-    int startIndex = allVertices.indexOf(endVertex);
-    if (startIndex >= 0) {
-      return path[startIndex];
-    }
-    throw new RuntimeException("vertex no longer in Graph!");
+    return maximum;
   }
 
   @Override
@@ -40,20 +40,31 @@ public class RequirementCoverage extends StopCondition {
 
   @Override
   public boolean isFulfilled() {
-    int stats[] = machine.getStatistics();
-    double requirements = stats[5];
-    double covered = stats[6];
+    double requirements = machine.getNumOfRequirements();
+    double covered = machine.getNumOfCoveredRequirements();
     return (covered / requirements) >= limit;
   }
 
   @Override
   public double getFulfilment() {
-    int stats[] = machine.getStatistics();
-    double requirements = stats[5];
-    double covered = stats[6];
+    double requirements = machine.getNumOfRequirements();
+    double covered = machine.getNumOfCoveredRequirements();
     return (covered / requirements) / limit;
   }
 
+  /**
+   * One edge can cover several requirements, so only the distance to the nearest uncovered
+   * requirement is counted.
+   */
+  @Override
+  public int getRemainingDistance() {
+    if (getRemainingCount(limit, machine.getNumOfRequirements(), machine.getNumOfCoveredRequirements()) == 0) {
+      return 0;
+    }
+    int distance = machine.getDistanceToUncoveredRequirement();
+    return (distance == Integer.MAX_VALUE ? UNREACHABLE : distance);
+  }
+
   @Override
   public String toString() {
     return "RC>=" + (int) (100 * limit);
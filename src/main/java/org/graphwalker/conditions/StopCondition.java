@@ -26,6 +26,12 @@ package org.graphwalker.conditions;
 import org.graphwalker.machines.FiniteStateMachine;
 
 public abstract class StopCondition {
+
+  /**
+   * The remaining distance of a condition which can not be fulfilled from the current vertex.
+   */
+  public static final int UNREACHABLE = Integer.MAX_VALUE;
+
   protected FiniteStateMachine machine;
 
   public FiniteStateMachine getMachine() {
@@ -45,4 +51,30 @@ public abstract class StopCondition {
    * @return the condition fulfilment
    */
   public abstract double getFulfilment();
+
+  /**
+   * @return true if the result of the condition only changes when the state of the machine does, so
+   *         that it can be cached for as long as {@link FiniteStateMachine#getVersion()} is the same
+   */
+  public boolean isCacheable() {
+    return true;
+  }
+
+  /**
+   * A lower bound of the number of edges left to walk before the condition is fulfilled, used as
+   * the heuristic of the A* search.
+   * 
+   * @return the remaining distance, {@link #UNREACHABLE}, or -1 if the condition can not tell
+   */
+  public int getRemainingDistance() {
+    return -1;
+  }
+
+  /**
+   * @return the number of elements left to cover before the covered part of all elements reaches
+   *         the limit
+   */
+  static int getRemainingCount(double limit, int all, int covered) {
+    return Math.max(0, (int) Math.ceil(limit * all - 1e-9) - covered);
+  }
 }
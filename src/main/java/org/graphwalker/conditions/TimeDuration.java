@@ -49,6 +49,11 @@ public class TimeDuration extends StopCondition {
     return (System.currentTimeMillis() - this.start_time) / this.duration;
   }
 
+  @Override
+  public boolean isCacheable() {
+    return false;
+  }
+
   @Override
   public String toString() {
     return "DURATION=" + (duration / 1000) + "s";
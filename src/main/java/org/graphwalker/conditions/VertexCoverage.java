@@ -43,17 +43,35 @@ public class VertexCoverage extends StopCondition {
   @Override
   public boolean isFulfilled() {
     double vertices = machine.getAllVertices().size();
-    double covered = machine.getNumOfCoveredVertices();
+    double covered = machine.getNumOfGloballyCoveredVertices();
     return (covered / vertices) >= limit;
   }
 
   @Override
   public double getFulfilment() {
     double vertices = machine.getAllVertices().size();
-    double covered = machine.getNumOfCoveredVertices();
+    double covered = machine.getNumOfGloballyCoveredVertices();
     return (covered / vertices) / limit;
   }
 
+  @Override
+  public int getRemainingDistance() {
+    int remaining = getRemainingCount(limit, machine.getAllVertices().size(), machine.getNumOfGloballyCoveredVertices());
+    if (remaining == 0) {
+      return 0;
+    }
+    int distance = machine.getDistanceToUncoveredVertex();
+    return (distance == Integer.MAX_VALUE ? UNREACHABLE : Math.max(remaining, distance));
+  }
+
+  /**
+   * The vertices covered by the machines sharing coverage with this one change without the machine knowing.
+   */
+  @Override
+  public boolean isCacheable() {
+    return machine == null || machine.getSharedCoverage() == null;
+  }
+
   @Override
   public String toString() {
     return "SC>=" + (int) (100 * limit);
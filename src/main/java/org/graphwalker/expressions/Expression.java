@@ -0,0 +1,313 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.expressions;
+
+import org.graphwalker.exceptions.ExpressionException;
+
+/**
+ * A node of the syntax tree of the native expression language. The type of most nodes is known
+ * when they are compiled. Variables, and assignments of values of unknown type, only know their
+ * type when evaluated, and check it then.
+ */
+abstract class Expression {
+
+  /**
+   * @return the value, with booleans as 0 or 1
+   */
+  abstract int eval(Variables variables) throws ExpressionException;
+
+  /**
+   * @return the type of the node, or UNDEFINED if it is only known when evaluated
+   */
+  abstract byte getType();
+
+  /**
+   * @return the type of the value last returned by {@link #eval(Variables)}
+   */
+  byte getType(Variables variables) {
+    return getType();
+  }
+
+  int evalInt(Variables variables) throws ExpressionException {
+    return eval(variables);
+  }
+
+  boolean evalBoolean(Variables variables) throws ExpressionException {
+    return eval(variables) != 0;
+  }
+
+  static String getTypeName(byte type) {
+    return (type == Variables.INT ? "int" : type == Variables.BOOLEAN ? "boolean" : "undefined");
+  }
+
+  static class Literal extends Expression {
+    private final byte type;
+    private final int value;
+
+    Literal(byte type, int value) {
+      this.type = type;
+      this.value = value;
+    }
+
+    @Override
+    int eval(Variables variables) {
+      return value;
+    }
+
+    @Override
+    byte getType() {
+      return type;
+    }
+  }
+
+  static class Variable extends Expression {
+    final String name;
+    final int slot;
+
+    Variable(String name, int slot) {
+      this.name = name;
+      this.slot = slot;
+    }
+
+    @Override
+    int eval(Variables variables) throws ExpressionException {
+      if (variables.types[slot] == Variables.UNDEFINED) {
+        throw new ExpressionException("Variable '" + name + "' is not defined");
+      }
+      return variables.values[slot];
+    }
+
+    @Override
+    byte getType() {
+      return Variables.UNDEFINED;
+    }
+
+    @Override
+    byte getType(Variables variables) {
+      return variables.types[slot];
+    }
+
+    @Override
+    int evalInt(Variables variables) throws ExpressionException {
+      if (variables.types[slot] != Variables.INT) {
+        throw new ExpressionException("Variable '" + name + "' is " + getTypeName(variables.types[slot]) + ", but an int is expected");
+      }
+      return variables.values[slot];
+    }
+
+    @Override
+    boolean evalBoolean(Variables variables) throws ExpressionException {
+      if (variables.types[slot] != Variables.BOOLEAN) {
+        throw new ExpressionException("Variable '" + name + "' is " + getTypeName(variables.types[slot]) + ", but a boolean is expected");
+      }
+      return variables.values[slot] != 0;
+    }
+  }
+
+  /**
+   * Assignments, declarations and compound assignments. The value is null for ++ and --.
+   */
+  static class Assignment extends Expression {
+    static final int ASSIGN = 0;
+    static final int ADD = 1;
+    static final int SUBTRACT = 2;
+    static final int MULTIPLY = 3;
+    static final int DIVIDE = 4;
+    static final int REMAINDER = 5;
+    static final int PRE_INCREMENT = 6;
+    static final int PRE_DECREMENT = 7;
+    static final int POST_INCREMENT = 8;
+    static final int POST_DECREMENT = 9;
+
+    private final Variable variable;
+    private final int operator;
+    private final Expression value;
+    private final byte declaredType;
+
+    Assignment(Variable variable, int operator, Expression value, byte declaredType) {
+      this.variable = variable;
+      this.operator = operator;
+      this.value = value;
+      this.declaredType = declaredType;
+    }
+
+    @Override
+    int eval(Variables variables) throws ExpressionException {
+      int slot = variable.slot;
+      if (operator == ASSIGN) {
+        int result = value.eval(variables);
+        byte type = value.getType(variables);
+        byte expected = (declaredType != Variables.UNDEFINED ? declaredType : variables.types[slot]);
+        if (expected != Variables.UNDEFINED && expected != type) {
+          throw new ExpressionException("Can not assign " + getTypeName(type) + " to " + getTypeName(expected) + " variable '" + variable.name
+              + "'");
+        }
+        variables.set(slot, type, result);
+        return result;
+      }
+
+      int old = variable.evalInt(variables);
+      int result;
+      switch (operator) {
+        case PRE_INCREMENT:
+        case POST_INCREMENT:
+          result = old + 1;
+          break;
+        case PRE_DECREMENT:
+        case POST_DECREMENT:
+          result = old - 1;
+          break;
+        default:
+          result = Operation.arithmetic(operator, old, value.evalInt(variables));
+      }
+      variables.set(slot, Variables.INT, result);
+      return (operator == POST_INCREMENT || operator == POST_DECREMENT ? old : result);
+    }
+
+    @Override
+    byte getType() {
+      if (declaredType != Variables.UNDEFINED) {
+        return declaredType;
+      }
+      return (operator == ASSIGN ? value.getType() : Variables.INT);
+    }
+
+    @Override
+    byte getType(Variables variables) {
+      return variables.types[variable.slot];
+    }
+
+    @Override
+    int evalInt(Variables variables) throws ExpressionException {
+      int result = eval(variables);
+      if (getType(variables) != Variables.INT) {
+        throw new ExpressionException("Assignment of '" + variable.name + "' is not an int");
+      }
+      return result;
+    }
+
+    @Override
+    boolean evalBoolean(Variables variables) throws ExpressionException {
+      int result = eval(variables);
+      if (getType(variables) != Variables.BOOLEAN) {
+        throw new ExpressionException("Assignment of '" + variable.name + "' is not a boolean");
+      }
+      return result != 0;
+    }
+  }
+
+  /**
+   * Unary and binary operators. The right operand is null for unary operators.
+   */
+  static class Operation extends Expression {
+    static final int NOT = 10;
+    static final int NEGATE = 11;
+    static final int AND = 12;
+    static final int OR = 13;
+    static final int EQUAL = 14;
+    static final int NOT_EQUAL = 15;
+    static final int LESS = 16;
+    static final int LESS_OR_EQUAL = 17;
+    static final int GREATER = 18;
+    static final int GREATER_OR_EQUAL = 19;
+
+    private final int operator;
+    private final Expression left;
+    private final Expression right;
+
+    Operation(int operator, Expression left, Expression right) {
+      this.operator = operator;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    int eval(Variables variables) throws ExpressionException {
+      switch (operator) {
+        case NOT:
+          return (left.evalBoolean(variables) ? 0 : 1);
+        case NEGATE:
+          return -left.evalInt(variables);
+        case AND:
+          return (left.evalBoolean(variables) && right.evalBoolean(variables) ? 1 : 0);
+        case OR:
+          return (left.evalBoolean(variables) || right.evalBoolean(variables) ? 1 : 0);
+        case EQUAL:
+        case NOT_EQUAL:
+          int a = left.eval(variables);
+          byte leftType = left.getType(variables);
+          int b = right.eval(variables);
+          byte rightType = right.getType(variables);
+          if (leftType != rightType) {
+            throw new ExpressionException("Can not compare " + getTypeName(leftType) + " with " + getTypeName(rightType));
+          }
+          return ((a == b) == (operator == EQUAL) ? 1 : 0);
+        case LESS:
+          return (left.evalInt(variables) < right.evalInt(variables) ? 1 : 0);
+        case LESS_OR_EQUAL:
+          return (left.evalInt(variables) <= right.evalInt(variables) ? 1 : 0);
+        case GREATER:
+          return (left.evalInt(variables) > right.evalInt(variables) ? 1 : 0);
+        case GREATER_OR_EQUAL:
+          return (left.evalInt(variables) >= right.evalInt(variables) ? 1 : 0);
+        default:
+          return arithmetic(operator, left.evalInt(variables), right.evalInt(variables));
+      }
+    }
+
+    @Override
+    byte getType() {
+      switch (operator) {
+        case Assignment.ADD:
+        case Assignment.SUBTRACT:
+        case Assignment.MULTIPLY:
+        case Assignment.DIVIDE:
+        case Assignment.REMAINDER:
+        case NEGATE:
+          return Variables.INT;
+        default:
+          return Variables.BOOLEAN;
+      }
+    }
+
+    static int arithmetic(int operator, int a, int b) throws ExpressionException {
+      switch (operator) {
+        case Assignment.ADD:
+          return a + b;
+        case Assignment.SUBTRACT:
+          return a - b;
+        case Assignment.MULTIPLY:
+          return a * b;
+        case Assignment.DIVIDE:
+          if (b == 0) throw new ExpressionException("Division by zero");
+          return a / b;
+        case Assignment.REMAINDER:
+          if (b == 0) throw new ExpressionException("Division by zero");
+          return a % b;
+        default:
+          throw new IllegalArgumentException("Not an arithmetic operator: " + operator);
+      }
+    }
+  }
+}
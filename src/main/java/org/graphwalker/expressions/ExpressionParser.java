@@ -0,0 +1,337 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.expressions;
+
+import java.util.ArrayList;
+
+import org.graphwalker.exceptions.ExpressionException;
+
+/**
+ * Recursive descent parser of the native expression language, see {@link Script}.
+ */
+class ExpressionParser {
+
+  private static final String[] OPERATORS = { "++", "--", "+=", "-=", "*=", "/=", "%=", "==", "!=", "<=", ">=", "&&", "||", "=", "<", ">", "+",
+      "-", "*", "/", "%", "!", "(", ")", ";", "," };
+
+  private final String source;
+  private final Variables variables;
+  private final ArrayList<String> tokens = new ArrayList<String>();
+  private final ArrayList<Integer> positions = new ArrayList<Integer>();
+  private int next = 0;
+
+  ExpressionParser(String source, Variables variables) {
+    this.source = source;
+    this.variables = variables;
+  }
+
+  Script parse() throws ExpressionException {
+    tokenize();
+    ArrayList<Expression> statements = new ArrayList<Expression>();
+    while (peek() != null) {
+      if (accept(";")) {
+        continue;
+      }
+      if (peek().equals("int") || peek().equals("boolean")) {
+        declaration(statements);
+      } else {
+        statements.add(expression());
+      }
+      if (peek() != null) {
+        expect(";");
+      }
+    }
+    return new Script(source, variables, statements.toArray(new Expression[statements.size()]));
+  }
+
+  private void declaration(ArrayList<Expression> statements) throws ExpressionException {
+    byte type = (next().equals("int") ? Variables.INT : Variables.BOOLEAN);
+    do {
+      Expression.Variable variable = variable(next());
+      Expression value;
+      if (accept("=")) {
+        value = expression();
+        if (value.getType() != Variables.UNDEFINED && value.getType() != type) {
+          throw error("Can not assign " + Expression.getTypeName(value.getType()) + " to " + Expression.getTypeName(type) + " variable '"
+              + variable.name + "'");
+        }
+      } else {
+        value = new Expression.Literal(type, 0);
+      }
+      statements.add(new Expression.Assignment(variable, Expression.Assignment.ASSIGN, value, type));
+    } while (accept(","));
+  }
+
+  private Expression expression() throws ExpressionException {
+    int start = next;
+    Expression left = or();
+    int operator = assignmentOperator(peek());
+    if (operator == -1) {
+      return left;
+    }
+    if (!(left instanceof Expression.Variable)) {
+      next = start;
+      throw error("Can only assign to a variable");
+    }
+    next();
+    Expression value = expression();
+    if (operator != Expression.Assignment.ASSIGN) {
+      checkType(value, Variables.INT);
+    }
+    return new Expression.Assignment((Expression.Variable) left, operator, value, Variables.UNDEFINED);
+  }
+
+  private Expression or() throws ExpressionException {
+    Expression left = and();
+    while (accept("||")) {
+      left = logical(Expression.Operation.OR, left, and());
+    }
+    return left;
+  }
+
+  private Expression and() throws ExpressionException {
+    Expression left = equality();
+    while (accept("&&")) {
+      left = logical(Expression.Operation.AND, left, equality());
+    }
+    return left;
+  }
+
+  private Expression equality() throws ExpressionException {
+    Expression left = relational();
+    while (peek() != null && (peek().equals("==") || peek().equals("!="))) {
+      int operator = (next().equals("==") ? Expression.Operation.EQUAL : Expression.Operation.NOT_EQUAL);
+      Expression right = relational();
+      if (left.getType() != Variables.UNDEFINED && right.getType() != Variables.UNDEFINED && left.getType() != right.getType()) {
+        throw error("Can not compare " + Expression.getTypeName(left.getType()) + " with " + Expression.getTypeName(right.getType()));
+      }
+      left = new Expression.Operation(operator, left, right);
+    }
+    return left;
+  }
+
+  private Expression relational() throws ExpressionException {
+    Expression left = additive();
+    while (true) {
+      int operator;
+      if (accept("<")) {
+        operator = Expression.Operation.LESS;
+      } else if (accept("<=")) {
+        operator = Expression.Operation.LESS_OR_EQUAL;
+      } else if (accept(">")) {
+        operator = Expression.Operation.GREATER;
+      } else if (accept(">=")) {
+        operator = Expression.Operation.GREATER_OR_EQUAL;
+      } else {
+        return left;
+      }
+      left = arithmetic(operator, left, additive());
+    }
+  }
+
+  private Expression additive() throws ExpressionException {
+    Expression left = multiplicative();
+    while (true) {
+      if (accept("+")) {
+        left = arithmetic(Expression.Assignment.ADD, left, multiplicative());
+      } else if (accept("-")) {
+        left = arithmetic(Expression.Assignment.SUBTRACT, left, multiplicative());
+      } else {
+        return left;
+      }
+    }
+  }
+
+  private Expression multiplicative() throws ExpressionException {
+    Expression left = unary();
+    while (true) {
+      if (accept("*")) {
+        left = arithmetic(Expression.Assignment.MULTIPLY, left, unary());
+      } else if (accept("/")) {
+        left = arithmetic(Expression.Assignment.DIVIDE, left, unary());
+      } else if (accept("%")) {
+        left = arithmetic(Expression.Assignment.REMAINDER, left, unary());
+      } else {
+        return left;
+      }
+    }
+  }
+
+  private Expression unary() throws ExpressionException {
+    if (accept("!")) {
+      Expression operand = unary();
+      checkType(operand, Variables.BOOLEAN);
+      return new Expression.Operation(Expression.Operation.NOT, operand, null);
+    }
+    if (accept("-")) {
+      Expression operand = unary();
+      checkType(operand, Variables.INT);
+      return new Expression.Operation(Expression.Operation.NEGATE, operand, null);
+    }
+    if (accept("+")) {
+      Expression operand = unary();
+      checkType(operand, Variables.INT);
+      return operand;
+    }
+    if (accept("++")) {
+      return new Expression.Assignment(variable(next()), Expression.Assignment.PRE_INCREMENT, null, Variables.UNDEFINED);
+    }
+    if (accept("--")) {
+      return new Expression.Assignment(variable(next()), Expression.Assignment.PRE_DECREMENT, null, Variables.UNDEFINED);
+    }
+    Expression primary = primary();
+    if (primary instanceof Expression.Variable) {
+      if (accept("++")) {
+        return new Expression.Assignment((Expression.Variable) primary, Expression.Assignment.POST_INCREMENT, null, Variables.UNDEFINED);
+      }
+      if (accept("--")) {
+        return new Expression.Assignment((Expression.Variable) primary, Expression.Assignment.POST_DECREMENT, null, Variables.UNDEFINED);
+      }
+    }
+    return primary;
+  }
+
+  private Expression primary() throws ExpressionException {
+    String token = next();
+    if (token.equals("(")) {
+      Expression expression = expression();
+      expect(")");
+      return expression;
+    }
+    if (token.equals("true") || token.equals("false")) {
+      return new Expression.Literal(Variables.BOOLEAN, token.equals("true") ? 1 : 0);
+    }
+    if (Character.isDigit(token.charAt(0))) {
+      try {
+        return new Expression.Literal(Variables.INT, Integer.parseInt(token));
+      } catch (NumberFormatException e) {
+        next--;
+        throw error("Not an int: '" + token + "'");
+      }
+    }
+    next--;
+    return variable(next());
+  }
+
+  private Expression.Variable variable(String name) throws ExpressionException {
+    if (!Character.isJavaIdentifierStart(name.charAt(0)) || name.equals("int") || name.equals("boolean") || name.equals("true")
+        || name.equals("false")) {
+      next--;
+      throw error("Expected a variable name, but found '" + name + "'");
+    }
+    return new Expression.Variable(name, variables.getSlot(name));
+  }
+
+  private Expression logical(int operator, Expression left, Expression right) throws ExpressionException {
+    checkType(left, Variables.BOOLEAN);
+    checkType(right, Variables.BOOLEAN);
+    return new Expression.Operation(operator, left, right);
+  }
+
+  private Expression arithmetic(int operator, Expression left, Expression right) throws ExpressionException {
+    checkType(left, Variables.INT);
+    checkType(right, Variables.INT);
+    return new Expression.Operation(operator, left, right);
+  }
+
+  private void checkType(Expression expression, byte type) throws ExpressionException {
+    if (expression.getType() != Variables.UNDEFINED && expression.getType() != type) {
+      throw error("Expected " + Expression.getTypeName(type) + ", but found " + Expression.getTypeName(expression.getType()));
+    }
+  }
+
+  private static int assignmentOperator(String token) {
+    if (token == null) return -1;
+    if (token.equals("=")) return Expression.Assignment.ASSIGN;
+    if (token.equals("+=")) return Expression.Assignment.ADD;
+    if (token.equals("-=")) return Expression.Assignment.SUBTRACT;
+    if (token.equals("*=")) return Expression.Assignment.MULTIPLY;
+    if (token.equals("/=")) return Expression.Assignment.DIVIDE;
+    if (token.equals("%=")) return Expression.Assignment.REMAINDER;
+    return -1;
+  }
+
+  private void tokenize() throws ExpressionException {
+    int i = 0;
+    while (i < source.length()) {
+      char c = source.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+        continue;
+      }
+      int start = i;
+      if (Character.isJavaIdentifierStart(c)) {
+        while (i < source.length() && Character.isJavaIdentifierPart(source.charAt(i))) {
+          i++;
+        }
+      } else if (Character.isDigit(c)) {
+        while (i < source.length() && Character.isDigit(source.charAt(i))) {
+          i++;
+        }
+      } else {
+        for (String operator : OPERATORS) {
+          if (source.startsWith(operator, i)) {
+            i += operator.length();
+            break;
+          }
+        }
+        if (i == start) {
+          throw new ExpressionException("Unexpected character '" + c + "' at position " + (start + 1) + " in: '" + source + "'");
+        }
+      }
+      tokens.add(source.substring(start, i));
+      positions.add(start);
+    }
+  }
+
+  private String peek() {
+    return (next < tokens.size() ? tokens.get(next) : null);
+  }
+
+  private String next() throws ExpressionException {
+    if (next >= tokens.size()) {
+      throw new ExpressionException("Unexpected end of: '" + source + "'");
+    }
+    return tokens.get(next++);
+  }
+
+  private boolean accept(String token) {
+    if (token.equals(peek())) {
+      next++;
+      return true;
+    }
+    return false;
+  }
+
+  private void expect(String token) throws ExpressionException {
+    if (!accept(token)) {
+      throw error("Expected '" + token + "'" + (peek() == null ? " at the end" : ", but found '" + peek() + "'"));
+    }
+  }
+
+  private ExpressionException error(String message) {
+    int position = (next < positions.size() ? positions.get(next) : source.length());
+    return new ExpressionException(message + " at position " + (position + 1) + " in: '" + source + "'");
+  }
+}
@@ -0,0 +1,94 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.expressions;
+
+import org.graphwalker.exceptions.ExpressionException;
+
+/**
+ * A guard or an action in the native expression language, compiled against the variables it is
+ * evaluated on. The language knows int and boolean variables, declared like "int x=0" or just
+ * assigned like "loggedIn=true", and statements separated by ';'. Expressions are made of literals,
+ * variables, parentheses and the operators of Java for these types: = += -= *= /= %= ++ -- ! && ||
+ * == != &lt; &lt;= &gt; &gt;= + - * / %.
+ */
+public class Script {
+
+  private final String source;
+  private final Variables variables;
+  private final Expression[] statements;
+
+  Script(String source, Variables variables, Expression[] statements) {
+    this.source = source;
+    this.variables = variables;
+    this.statements = statements;
+  }
+
+  /**
+   * Compiles the script.
+   * 
+   * @throws ExpressionException if the script is malformed, or mixes up ints and booleans
+   */
+  public static Script compile(String source, Variables variables) throws ExpressionException {
+    return new ExpressionParser(source, variables).parse();
+  }
+
+  /**
+   * Executes the script.
+   * 
+   * @return the value of the last statement as an Integer or a Boolean, or null if the script is
+   *         empty
+   */
+  public Object eval() throws ExpressionException {
+    int value = 0;
+    for (Expression statement : statements) {
+      value = statement.eval(variables);
+    }
+    if (statements.length == 0) {
+      return null;
+    }
+    byte type = statements[statements.length - 1].getType(variables);
+    return (type == Variables.BOOLEAN ? (Object) (value != 0) : (Object) value);
+  }
+
+  /**
+   * Executes the script as a guard.
+   * 
+   * @return the value of the last statement
+   * @throws ExpressionException if the last statement is not a boolean
+   */
+  public boolean evalGuard() throws ExpressionException {
+    if (statements.length == 0) {
+      throw new ExpressionException("The guard '" + source + "' is empty");
+    }
+    for (int i = 0; i < statements.length - 1; i++) {
+      statements[i].eval(variables);
+    }
+    return statements[statements.length - 1].evalBoolean(variables);
+  }
+
+  @Override
+  public String toString() {
+    return source;
+  }
+}
@@ -0,0 +1,189 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.expressions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.graphwalker.Util;
+
+/**
+ * The variables of the native expression language. Each variable name is given a slot the first
+ * time a script using it is compiled, and its value is kept as an int in that slot. Booleans are
+ * stored as 0 and 1, and the type of each slot is kept next to it. A slot that has not been
+ * assigned yet has no type.
+ */
+public class Variables {
+
+  static final byte UNDEFINED = 0;
+  static final byte INT = 1;
+  static final byte BOOLEAN = 2;
+
+  private ArrayList<String> names = new ArrayList<String>();
+  private HashMap<String, Integer> slots = new HashMap<String, Integer>();
+  int[] values = new int[8];
+  byte[] types = new byte[8];
+
+  private long fingerprint = 0;
+  private int version = 0;
+  private int savedVersion = -1;
+  private State saved = null;
+
+  /**
+   * @return the slot of the variable, which is added if it is not known yet
+   */
+  int getSlot(String name) {
+    Integer slot = slots.get(name);
+    if (slot == null) {
+      slot = names.size();
+      names.add(name);
+      slots.put(name, slot);
+      if (slot == values.length) {
+        int[] newValues = new int[values.length * 2];
+        System.arraycopy(values, 0, newValues, 0, values.length);
+        values = newValues;
+        byte[] newTypes = new byte[types.length * 2];
+        System.arraycopy(types, 0, newTypes, 0, types.length);
+        types = newTypes;
+      }
+    }
+    return slot;
+  }
+
+  void set(int slot, byte type, int value) {
+    if (types[slot] != UNDEFINED) {
+      fingerprint -= Util.getFingerprint(names.get(slot), getValue(slot));
+    }
+    types[slot] = type;
+    values[slot] = value;
+    if (type != UNDEFINED) {
+      fingerprint += Util.getFingerprint(names.get(slot), getValue(slot));
+    }
+    version++;
+  }
+
+  /**
+   * @return the sum of the fingerprints of the assigned variables, kept up to date as they are set
+   * @see Util#getFingerprint(String, Object)
+   */
+  public long getFingerprint() {
+    return fingerprint;
+  }
+
+  /**
+   * @return the number of slots, assigned or not
+   */
+  public int size() {
+    return names.size();
+  }
+
+  public String getName(int slot) {
+    return names.get(slot);
+  }
+
+  /**
+   * @return the value of the slot as an Integer or a Boolean, or null if it has not been assigned
+   */
+  public Object getValue(int slot) {
+    switch (types[slot]) {
+      case INT:
+        return values[slot];
+      case BOOLEAN:
+        return values[slot] != 0;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * @return the value of the variable as an Integer or a Boolean, or null if it has not been
+   *         assigned
+   */
+  public Object getValue(String name) {
+    Integer slot = slots.get(name);
+    return (slot == null ? null : getValue(slot));
+  }
+
+  /**
+   * @return true if any variable has been assigned
+   */
+  public boolean hasValues() {
+    for (int i = 0; i < names.size(); i++) {
+      if (types[i] != UNDEFINED) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the current values of all variables. If nothing has been assigned since the last time,
+   *         the same state is returned again.
+   */
+  public State save() {
+    if (saved == null || savedVersion != version) {
+      int n = names.size();
+      int[] savedValues = new int[n];
+      byte[] savedTypes = new byte[n];
+      System.arraycopy(values, 0, savedValues, 0, n);
+      System.arraycopy(types, 0, savedTypes, 0, n);
+      saved = new State(savedValues, savedTypes, fingerprint);
+      savedVersion = version;
+    }
+    return saved;
+  }
+
+  /**
+   * Puts back the values of a saved state. Variables that were given a slot after the state was
+   * saved are left unassigned.
+   */
+  public void restore(State state) {
+    int n = state.values.length;
+    System.arraycopy(state.values, 0, values, 0, n);
+    System.arraycopy(state.types, 0, types, 0, n);
+    for (int i = n; i < names.size(); i++) {
+      types[i] = UNDEFINED;
+      values[i] = 0;
+    }
+    fingerprint = state.fingerprint;
+    version++;
+    saved = state;
+    savedVersion = version;
+  }
+
+  /**
+   * The saved values of the variables. A state is never changed once saved.
+   */
+  public static class State {
+    private final int[] values;
+    private final byte[] types;
+    private final long fingerprint;
+
+    private State(int[] values, byte[] types, long fingerprint) {
+      this.values = values;
+      this.types = types;
+      this.fingerprint = fingerprint;
+    }
+  }
+}
@@ -23,10 +23,18 @@
 
 package org.graphwalker.filters;
 
+import java.util.HashMap;
+
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.ScriptEngine;
 import javax.script.ScriptException;
 
+import org.graphwalker.exceptions.ExpressionException;
+import org.graphwalker.expressions.Script;
+import org.graphwalker.expressions.Variables;
 import org.graphwalker.graph.Edge;
+import org.graphwalker.machines.BeanShellScript;
 
 import bsh.EvalError;
 import bsh.Interpreter;
@@ -39,6 +47,10 @@ public class AccessableEdgeFilter {
 
   private ScriptEngine jsEngine = null;
   private Interpreter beanShellEngine = null;
+  private HashMap<String, CompiledScript> jsGuards = new HashMap<String, CompiledScript>();
+  private HashMap<String, BeanShellScript> beanShellGuards = new HashMap<String, BeanShellScript>();
+  private Variables nativeVariables = null;
+  private HashMap<String, Script> nativeGuards = new HashMap<String, Script>();
 
   public AccessableEdgeFilter(ScriptEngine sciptEngine) {
     this.jsEngine = sciptEngine;
@@ -48,6 +60,10 @@ public class AccessableEdgeFilter {
     this.beanShellEngine = beanShellEngine;
   }
 
+  public AccessableEdgeFilter(Variables nativeVariables) {
+    this.nativeVariables = nativeVariables;
+  }
+
   public boolean acceptEdge(org.graphwalker.graph.Graph graph, Edge edge) {
     if (edge.getGuardKey().isEmpty()) {
       return true;
@@ -55,22 +71,99 @@ public class AccessableEdgeFilter {
 
     if (jsEngine != null) {
       try {
-        return (Boolean) jsEngine.eval(edge.getGuardKey());
+        CompiledScript guard = compileJsGuard(edge);
+        return (Boolean) (guard == null ? jsEngine.eval(edge.getGuardKey()) : guard.eval());
       } catch (ScriptException e) {
         throw new RuntimeException("Malformed Edge guard\n\t" + edge + "\n\tGuard: " + edge.getGuardKey() + "\n\tBeanShell error message: '"
             + e.getMessage() + "'");
       }
     } else if (beanShellEngine != null) {
       try {
-        return (Boolean) beanShellEngine.eval(edge.getGuardKey());
+        return (Boolean) compileBeanShellGuard(edge).eval(beanShellEngine);
       } catch (EvalError e) {
         throw new RuntimeException("Malformed Edge guard\n\t" + edge + "\n\tGuard: " + edge.getGuardKey() + "\n\tBeanShell error message: '"
             + e.getMessage() + "'");
       }
+    } else if (nativeVariables != null) {
+      try {
+        return compileNativeGuard(edge).evalGuard();
+      } catch (ExpressionException e) {
+        throw new RuntimeException("Malformed Edge guard\n\t" + edge + "\n\tGuard: " + edge.getGuardKey() + "\n\tExpression error message: '"
+            + e.getMessage() + "'");
+      }
     }
     return false;
   }
 
+  /**
+   * Compiles the guard of the edge, so that a malformed guard is reported before the edge is
+   * evaluated for the first time. The compiled guard is kept for later evaluations.
+   */
+  public void compileGuard(Edge edge) {
+    if (edge.getGuardKey().isEmpty()) {
+      return;
+    }
+
+    if (jsEngine != null) {
+      try {
+        compileJsGuard(edge);
+      } catch (ScriptException e) {
+        throw new RuntimeException("Malformed Edge guard\n\t" + edge + "\n\tGuard: " + edge.getGuardKey() + "\n\tJava Script error message: '"
+            + e.getMessage() + "'");
+      }
+    } else if (beanShellEngine != null) {
+      try {
+        compileBeanShellGuard(edge);
+      } catch (EvalError e) {
+        throw new RuntimeException("Malformed Edge guard\n\t" + edge + "\n\tGuard: " + edge.getGuardKey() + "\n\tBeanShell error message: '"
+            + e.getMessage() + "'");
+      }
+    } else if (nativeVariables != null) {
+      try {
+        compileNativeGuard(edge);
+      } catch (ExpressionException e) {
+        throw new RuntimeException("Malformed Edge guard\n\t" + edge + "\n\tGuard: " + edge.getGuardKey() + "\n\tExpression error message: '"
+            + e.getMessage() + "'");
+      }
+    }
+  }
+
+  /**
+   * @return the compiled guard, or null if the engine can not compile scripts
+   */
+  private CompiledScript compileJsGuard(Edge edge) throws ScriptException {
+    if (!(jsEngine instanceof Compilable)) {
+      return null;
+    }
+    CompiledScript guard = jsGuards.get(edge.getGuardKey());
+    if (guard == null) {
+      guard = ((Compilable) jsEngine).compile(edge.getGuardKey());
+      jsGuards.put(edge.getGuardKey(), guard);
+    }
+    return guard;
+  }
+
+  /**
+   * @return the parsed BeanShell guard of the edge
+   */
+  public BeanShellScript compileBeanShellGuard(Edge edge) throws EvalError {
+    BeanShellScript guard = beanShellGuards.get(edge.getGuardKey());
+    if (guard == null) {
+      guard = new BeanShellScript(edge.getGuardKey());
+      beanShellGuards.put(edge.getGuardKey(), guard);
+    }
+    return guard;
+  }
+
+  private Script compileNativeGuard(Edge edge) throws ExpressionException {
+    Script guard = nativeGuards.get(edge.getGuardKey());
+    if (guard == null) {
+      guard = Script.compile(edge.getGuardKey(), nativeVariables);
+      nativeGuards.put(edge.getGuardKey(), guard);
+    }
+    return guard;
+  }
+
   public String getName() {
     return "AccessableEdgeFilter";
   }
@@ -27,8 +27,8 @@ import java.util.Comparator;
 import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.Stack;
-import java.util.Vector;
 
+import org.graphwalker.LongHashSet;
 import org.graphwalker.Util;
 import org.graphwalker.conditions.StopCondition;
 import org.graphwalker.exceptions.FoundNoEdgeException;
@@ -45,6 +45,12 @@ public class A_StarPathGenerator extends PathGenerator {
   private Stack<Edge> preCalculatedPath = null;
   private Vertex lastVertex;
 
+  // The search node the machine is at during a search, and the tracked depth of the machine at the
+  // start of the search. A null node is the state the search started from.
+  private WeightedPath position;
+  private int baseDepth;
+  private double maxWeight;
+
   @Override
   public void setMachine(FiniteStateMachine machine) {
     super.setMachine(machine);
@@ -61,20 +67,15 @@ public class A_StarPathGenerator extends PathGenerator {
       boolean oldCalculatingPathValue = getMachine().isCalculatingPath();
       getMachine().setCalculatingPath(true);
 
-      preCalculatedPath = a_star();
-
-      getMachine().setCalculatingPath(oldCalculatingPathValue);
+      try {
+        preCalculatedPath = a_star();
+      } finally {
+        getMachine().setCalculatingPath(oldCalculatingPathValue);
+      }
 
       if (preCalculatedPath == null) {
         throw new RuntimeException("No path found to " + this.getStopCondition());
       }
-
-      // reverse path
-      Stack<Edge> temp = new Stack<Edge>();
-      while (preCalculatedPath.size() > 0) {
-        temp.push(preCalculatedPath.pop());
-      }
-      preCalculatedPath = temp;
     }
 
     Edge edge = preCalculatedPath.pop();
@@ -84,96 +85,142 @@ public class A_StarPathGenerator extends PathGenerator {
     return retur;
   }
 
-  @SuppressWarnings("unchecked")
+  /**
+   * Searches for the shortest path that fulfills the stop condition. The search nodes only hold the
+   * last edge of their path and a pointer to their parent, and the machine is moved between the
+   * nodes by backtracking to their common ancestor and walking down from there, so a node is
+   * expanded by walking each of its out edges once.
+   * 
+   * @return the path, with the first edge to walk on top of the stack
+   */
   private Stack<Edge> a_star() throws InterruptedException {
-    Vector<String> closed = new Vector<String>();
-
-    PriorityQueue<WeightedPath> a_starPath = new PriorityQueue<WeightedPath>(10, new Comparator<WeightedPath>() {
-      @Override
-      public int compare(WeightedPath arg0, WeightedPath arg1) {
-        int retur = Double.compare(arg0.getWeight(), arg1.getWeight());
-        if (retur == 0) retur = arg0.getPath().size() - arg1.getPath().size();
-        return retur;
-      }
-    });
+    LongHashSet closed = new LongHashSet();
+
+    // If the stop condition can tell how far it is from being fulfilled, the nodes are ordered by
+    // the length of their path plus the remaining distance. If not, by the fulfilment of the
+    // condition.
+    Comparator<WeightedPath> comparator;
+    if (getStopCondition().getRemainingDistance() == -1) {
+      comparator = new Comparator<WeightedPath>() {
+        @Override
+        public int compare(WeightedPath arg0, WeightedPath arg1) {
+          int retur = Double.compare(arg0.getWeight(), arg1.getWeight());
+          if (retur == 0) retur = arg0.getDepth() - arg1.getDepth();
+          return retur;
+        }
+      };
+    } else {
+      comparator = new Comparator<WeightedPath>() {
+        @Override
+        public int compare(WeightedPath arg0, WeightedPath arg1) {
+          int retur = (arg0.getDepth() + arg0.getDistance()) - (arg1.getDepth() + arg1.getDistance());
+          if (retur == 0) retur = Double.compare(arg1.getWeight(), arg0.getWeight());
+          if (retur == 0) retur = arg1.getDepth() - arg0.getDepth();
+          return retur;
+        }
+      };
+    }
+    PriorityQueue<WeightedPath> a_starPath = new PriorityQueue<WeightedPath>(10, comparator);
 
-    Set<Edge> availableOutEdges;
+    FiniteStateMachine machine = getMachine();
+    machine.storeVertex();
+    baseDepth = machine.getTrackedDepth();
+    position = null;
+    maxWeight = 0;
     try {
-      availableOutEdges = getMachine().getCurrentOutEdges();
-    } catch (FoundNoEdgeException e) {
-      throw new RuntimeException("No available edges found at " + getMachine().getCurrentVertexName(), e);
-    }
-    for (Edge edge : availableOutEdges) {
-      Stack<Edge> path = new Stack<Edge>();
-      path.push(edge);
-      a_starPath.add(getWeightedPath(path));
-    }
-    double maxWeight = 0;
-    while (a_starPath.size() > 0) {
-      if (Thread.interrupted()) {
-        throw new InterruptedException();
+      Set<Edge> availableOutEdges;
+      try {
+        availableOutEdges = machine.getCurrentOutEdges();
+      } catch (FoundNoEdgeException e) {
+        throw new RuntimeException("No available edges found at " + machine.getCurrentVertexName(), e);
       }
+      addSuccessors(null, availableOutEdges, a_starPath);
 
-      WeightedPath path = a_starPath.poll();
-      if (path.getWeight() > maxWeight) maxWeight = path.getWeight();
-      if (path.getWeight() > 0.99999) // are we done yet?
-        return path.getPath();
-
-      Edge possibleDuplicate = path.getPath().peek();
-
-      // have we been here before?
-      if (closed.contains(possibleDuplicate.hashCode() + "." + path.getSubState().hashCode() + "." + path.getWeight())) continue; // ignore
-                                                                                                                                  // this
-                                                                                                                                  // and
-                                                                                                                                  // move
-                                                                                                                                  // on
-
-      // We don't want to use this edge again as this path is
-      // the fastest, and if we come here again we have used more
-      // steps to get here than we used this time.
-      closed.add(possibleDuplicate.hashCode() + "." + path.getSubState().hashCode() + "." + path.getWeight());
-
-      availableOutEdges = getPathOutEdges(path.getPath());
-      if (availableOutEdges != null && availableOutEdges.size() > 0) {
-        for (Edge edge : availableOutEdges) {
-          Stack<Edge> newStack = (Stack<Edge>) path.getPath().clone();
-          newStack.push(edge);
-          a_starPath.add(getWeightedPath(newStack));
+      while (a_starPath.size() > 0) {
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
         }
+
+        WeightedPath path = a_starPath.poll();
+        if (path.getWeight() > 0.99999) // are we done yet?
+          return path.getPath();
+
+        // have we been here before? If so, ignore this and move on.
+        // We don't want to use this edge again as this path is
+        // the fastest, and if we come here again we have used more
+        // steps to get here than we used this time.
+        long state = Util.mix(Util.mix(path.getEdge().hashCode()) + path.getDataFingerprint());
+        if (!closed.add(Util.mix(state + Double.doubleToLongBits(path.getWeight())))) continue;
+
+        moveTo(path);
+        try {
+          availableOutEdges = machine.getCurrentOutEdges();
+        } catch (FoundNoEdgeException e) {
+          continue;
+        }
+        addSuccessors(path, availableOutEdges, a_starPath);
       }
+      throw new RuntimeException("No path found to satisfy stop condition " + getStopCondition() + ", best path satified only "
+          + (int) (maxWeight * 100) + "% of condition.");
+    } finally {
+      position = null;
+      machine.restoreVertex();
     }
-    throw new RuntimeException("No path found to satisfy stop condition " + getStopCondition() + ", best path satified only "
-        + (int) (maxWeight * 100) + "% of condition.");
   }
 
-  private WeightedPath getWeightedPath(Stack<Edge> path) {
-    double weight = 0;
-    String subState = "";
+  /**
+   * Adds a node for each of the edges out from the parent node. The machine needs to be at the
+   * parent node, and is left there. Nodes from where the stop condition can not be fulfilled are
+   * left out.
+   */
+  private void addSuccessors(WeightedPath parent, Set<Edge> edges, PriorityQueue<WeightedPath> a_starPath) {
+    FiniteStateMachine machine = getMachine();
+    int depth = baseDepth + (parent == null ? 0 : parent.getDepth());
+    for (Edge edge : edges) {
+      machine.walkEdge(edge);
+      double weight = getConditionFulfilment();
+      if (weight > maxWeight) maxWeight = weight;
+      int distance = getStopCondition().getRemainingDistance();
+      if (distance != StopCondition.UNREACHABLE || weight > 0.99999) {
+        a_starPath.add(new WeightedPath(parent, edge, weight, Math.max(0, distance), machine.getDataFingerprint()));
+      }
+      machine.backtrackTo(depth);
+    }
+  }
 
-    getMachine().storeVertex();
-    getMachine().walkPath(path);
-    weight = getConditionFulfilment();
-    String currentState = getMachine().getCurrentVertexName();
-    if (currentState.contains("/")) {
-      subState = currentState.split("/", 2)[1];
+  /**
+   * Moves the machine from the current search node to the target node.
+   */
+  private void moveTo(WeightedPath target) {
+    if (target == position) {
+      return;
+    }
+    Stack<Edge> forward = new Stack<Edge>();
+    WeightedPath from = position;
+    WeightedPath to = target;
+    while (getDepth(to) > getDepth(from)) {
+      forward.push(to.getEdge());
+      to = to.getParent();
+    }
+    while (getDepth(from) > getDepth(to)) {
+      from = from.getParent();
+    }
+    while (from != to) {
+      forward.push(to.getEdge());
+      to = to.getParent();
+      from = from.getParent();
     }
-    getMachine().restoreVertex();
 
-    return new WeightedPath(path, weight, subState);
+    FiniteStateMachine machine = getMachine();
+    machine.backtrackTo(baseDepth + getDepth(to));
+    while (!forward.isEmpty()) {
+      machine.walkEdge(forward.pop());
+    }
+    position = target;
   }
 
-  private Set<Edge> getPathOutEdges(Stack<Edge> path) {
-    Set<Edge> retur = null;
-    getMachine().storeVertex();
-    getMachine().walkPath(path);
-    try {
-      retur = getMachine().getCurrentOutEdges();
-    } catch (FoundNoEdgeException e) {
-      // no edges found? degrade gracefully and return the default value of
-      // null.
-    }
-    getMachine().restoreVertex();
-    return retur;
+  private static int getDepth(WeightedPath path) {
+    return (path == null ? 0 : path.getDepth());
   }
 
   /**
@@ -189,39 +236,62 @@ public class A_StarPathGenerator extends PathGenerator {
     return "A_STAR{" + super.toString() + "}";
   }
 
+  /**
+   * A node of the search. The path of the node is the path of its parent, followed by its edge.
+   */
   private static class WeightedPath {
-    private double weight;
-    private Stack<Edge> path;
-    private String subState;
-
-    public String getSubState() {
-      return subState;
+    private final WeightedPath parent;
+    private final Edge edge;
+    private final int depth;
+    private final double weight;
+    private final int distance;
+    private final long dataFingerprint;
+
+    public WeightedPath(WeightedPath parent, Edge edge, double weight, int distance, long dataFingerprint) {
+      this.parent = parent;
+      this.edge = edge;
+      this.depth = (parent == null ? 1 : parent.depth + 1);
+      this.weight = weight;
+      this.distance = distance;
+      this.dataFingerprint = dataFingerprint;
     }
 
-    public void setSubState(String subState) {
-      this.subState = subState;
+    public WeightedPath getParent() {
+      return parent;
     }
 
-    public Stack<Edge> getPath() {
-      return path;
+    public Edge getEdge() {
+      return edge;
     }
 
-    public void setPath(Stack<Edge> path) {
-      this.path = path;
+    public int getDepth() {
+      return depth;
     }
 
     public double getWeight() {
       return weight;
     }
 
-    public void setWeight(double weight) {
-      this.weight = weight;
+    /**
+     * @return the remaining distance of the stop condition, or 0 if it is not known
+     */
+    public int getDistance() {
+      return distance;
+    }
+
+    public long getDataFingerprint() {
+      return dataFingerprint;
     }
 
-    public WeightedPath(Stack<Edge> path, double weight, String subState) {
-      setPath(path);
-      setWeight(weight);
-      setSubState(subState);
+    /**
+     * @return the edges of the path, with the first edge on top of the stack
+     */
+    public Stack<Edge> getPath() {
+      Stack<Edge> path = new Stack<Edge>();
+      for (WeightedPath node = this; node != null; node = node.parent) {
+        path.add(node.edge);
+      }
+      return path;
     }
   }
 }
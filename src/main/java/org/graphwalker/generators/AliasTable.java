@@ -0,0 +1,140 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.generators;
+
+import java.util.Random;
+
+import org.graphwalker.graph.GraphSnapshot;
+
+/**
+ * Walker's alias table over the accessible out-edges of a vertex, for drawing a weighted random edge
+ * in constant time. An edge is drawn with the probability of its weight. The edges without weight
+ * share what is left up to 1, and if all edges have weights that add up to less than 1, the weights
+ * are scaled up to 1.
+ */
+class AliasTable {
+
+  private final int size;
+  private final int[] edges;
+  private final float[] weights;
+  private final double[] probability;
+  private final int[] alias;
+
+  /**
+   * @param edges the ordinals of the edges, all going out from the same vertex
+   * @param count the number of edges to use from the array
+   */
+  AliasTable(GraphSnapshot snapshot, int[] edges, int count) {
+    this.size = count;
+    this.edges = new int[count];
+    this.weights = new float[count];
+    this.probability = new double[count];
+    this.alias = new int[count];
+    System.arraycopy(edges, 0, this.edges, 0, count);
+
+    double[] scaled = new double[count];
+    int numberOfZeros = 0;
+    double sum = 0;
+    for (int i = 0; i < count; i++) {
+      weights[i] = snapshot.getEdge(edges[i]).getWeightKey();
+      if (weights[i] > 0) {
+        scaled[i] = weights[i];
+        sum += weights[i];
+        if (sum > 1) {
+          throw new RuntimeException("The sum of all weights in edges from vertex: '"
+              + snapshot.getVertex(snapshot.getSource(edges[i])).getLabelKey() + "', adds up to more than 1.00");
+        }
+      } else {
+        numberOfZeros++;
+      }
+    }
+    double total = sum;
+    if (numberOfZeros > 0) {
+      double rest = (1 - sum) / numberOfZeros;
+      for (int i = 0; i < count; i++) {
+        if (weights[i] <= 0) {
+          scaled[i] = rest;
+        }
+      }
+      total = sum + rest * numberOfZeros;
+    }
+
+    // Vose's method: pair every entry below the average with one above it
+    int[] small = new int[count];
+    int[] large = new int[count];
+    int numberOfSmall = 0;
+    int numberOfLarge = 0;
+    for (int i = 0; i < count; i++) {
+      scaled[i] = (total > 0 ? scaled[i] * count / total : 1);
+      if (scaled[i] < 1) {
+        small[numberOfSmall++] = i;
+      } else {
+        large[numberOfLarge++] = i;
+      }
+    }
+    while (numberOfSmall > 0 && numberOfLarge > 0) {
+      int less = small[--numberOfSmall];
+      int more = large[--numberOfLarge];
+      probability[less] = scaled[less];
+      alias[less] = more;
+      scaled[more] = (scaled[more] + scaled[less]) - 1;
+      if (scaled[more] < 1) {
+        small[numberOfSmall++] = more;
+      } else {
+        large[numberOfLarge++] = more;
+      }
+    }
+    while (numberOfLarge > 0) {
+      probability[large[--numberOfLarge]] = 1;
+    }
+    while (numberOfSmall > 0) {
+      probability[small[--numberOfSmall]] = 1;
+    }
+  }
+
+  /**
+   * @return true if the table was built for the same edges, in the same order and with the same
+   *         weights
+   */
+  boolean isBuiltFor(GraphSnapshot snapshot, int[] edges, int count) {
+    if (count != size) {
+      return false;
+    }
+    for (int i = 0; i < count; i++) {
+      if (edges[i] != this.edges[i] || snapshot.getEdge(edges[i]).getWeightKey() != weights[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the ordinal of the drawn edge
+   */
+  int next(Random random) {
+    double draw = random.nextDouble() * size;
+    int i = Math.min((int) draw, size - 1);
+    return edges[draw - i < probability[i] ? i : alias[i]];
+  }
+}
@@ -23,18 +23,12 @@
 
 package org.graphwalker.generators;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Random;
-import java.util.Set;
-
 import org.apache.log4j.Logger;
 import org.graphwalker.Util;
 import org.graphwalker.conditions.StopCondition;
 import org.graphwalker.exceptions.FoundNoEdgeException;
 import org.graphwalker.graph.Edge;
+import org.graphwalker.graph.GraphSnapshot;
 
 /**
  * The generator generates paths through the model in a way that makes sure all path permutations of
@@ -53,13 +47,21 @@ public class AllPathPermutationsGenerator extends PathGenerator {
 
   private static Logger logger = Util.setupLogger(AllPathPermutationsGenerator.class);
 
-  private final Random random = new Random();
+  /* Contains all walked paths for a specific depth, keyed by the ordinals of their edges */
+  private PathNode pathWalked = new PathNode();
+
+  /* The number of walked paths, and of those walked exactly once and twice */
+  private int numOfPaths = 0;
+  private int numOfPathsWalkedOnce = 0;
+  private int numOfPathsWalkedTwice = 0;
 
-  /* Contains all walked paths for a specific depth */
-  private final HashMap<Integer, Integer> pathWalked = new HashMap<Integer, Integer>();
+  /* Ring buffer of the ordinals of the edges comprising the current path */
+  private int[] savedEdges = new int[4];
+  private int savedEdgesStart = 0;
+  private int savedEdgesSize = 0;
 
-  /* List of edges comprising the current path */
-  private final List<Edge> savedEdges = new ArrayList<Edge>();
+  private int[] availableEdges;
+  private int[] selectedEdges;
 
   private int currentDepth;
 
@@ -75,118 +77,121 @@ public class AllPathPermutationsGenerator extends PathGenerator {
 
   @Override
   public String[] getNext() throws InterruptedException {
-    Set<Edge> availableEdges;
-
+    GraphSnapshot snapshot = getMachine().getModel().getSnapshot();
+    if (availableEdges == null || availableEdges.length < snapshot.getMaxOutDegree()) {
+      availableEdges = new int[snapshot.getMaxOutDegree()];
+      selectedEdges = new int[snapshot.getMaxOutDegree()];
+    }
+    int numberOfEdges;
     try {
-      availableEdges = getMachine().getCurrentOutEdges();
+      numberOfEdges = getMachine().getCurrentOutEdges(availableEdges);
     } catch (FoundNoEdgeException e) {
       throw new RuntimeException("No possible edges available for path", e);
     }
 
-    Set<Edge> selectedEdges = new HashSet<Edge>();
+    // The node of the current path, whose children are the paths one edge longer
+    PathNode current = pathWalked;
+    for (int i = 0; i < savedEdgesSize; i++) {
+      current = current.getChild(savedEdges[(savedEdgesStart + i) % savedEdges.length], true);
+    }
+
+    int numberOfSelectedEdges = 0;
     int fewestVisits = -1;
 
     // Loop through available edges and pick the one which results in a path
     // least traversed.
-    for (Edge edge : availableEdges) {
-
-      // Add available edge to the current path
-      savedEdges.add(edge);
-
-      // Has it been traversed before and if so how many times
-      Integer hashValue = pathWalked.get(savedEdges.hashCode());
-
-      // Never walked path
-      if (hashValue == null) {
-        fewestVisits = 0;
-        selectedEdges.add(edge);
+    for (int i = 0; i < numberOfEdges; i++) {
+      PathNode path = current.getChild(availableEdges[i], false);
+      int visits = (path == null ? 0 : path.visits);
 
-        // Has been traversed but fewer times
-      } else if (hashValue < fewestVisits || fewestVisits == -1) {
-        fewestVisits = hashValue;
-        selectedEdges.clear();
-        selectedEdges.add(edge);
-
-        // Has been traversed but equal times
-      } else if (hashValue == fewestVisits) {
-        selectedEdges.add(edge);
+      if (visits < fewestVisits || fewestVisits == -1) {
+        fewestVisits = visits;
+        numberOfSelectedEdges = 0;
+      }
+      if (visits == fewestVisits) {
+        selectedEdges[numberOfSelectedEdges++] = availableEdges[i];
       }
-
-      // Remove the edge from the current path
-      savedEdges.remove(edge);
     }
-    Edge selectedEdge = getRandomEdge(selectedEdges);
-
-    // Add the selected edge to the current path
-    savedEdges.add(selectedEdge);
+    int selectedEdge = selectedEdges[getRandom().nextInt(numberOfSelectedEdges)];
 
     // Update number of traversals of this path
-    pathWalked.put(savedEdges.hashCode(), fewestVisits + 1);
+    PathNode path = current.getChild(selectedEdge, true);
+    countVisit(path.visits++);
 
     // Check if all paths have been traversed twice or more
-    // If so, increase the length of the path by 1 and clear the hash
-    if (checkCompletion()) {
+    // If so, increase the length of the path by 1 and clear the paths
+    if (numOfPathsWalkedOnce == 0) {
       currentDepth++;
       AllPathPermutationsGenerator.logger.debug("All combinations done, changing look back depth to: " + currentDepth);
-      pathWalked.clear();
-    } else if (currentDepth == 0 && checkCompletionFirst()) {
+      clearPaths();
+      addSavedEdge(selectedEdge);
+    } else if (currentDepth == 0 && numOfPathsWalkedTwice > 0) {
       currentDepth++;
       AllPathPermutationsGenerator.logger.debug("Cycle detected, starting algorithm with depth: " + currentDepth);
-      pathWalked.clear();
-      savedEdges.remove(0);
+      clearPaths();
 
-      // If not, remove the first edge in the path
+      // If not, move the path one edge forward
     } else {
-      savedEdges.remove(0);
+      addSavedEdge(selectedEdge);
+      savedEdgesStart = (savedEdgesStart + 1) % savedEdges.length;
+      savedEdgesSize--;
     }
 
-    getMachine().walkEdge(selectedEdge);
-    AllPathPermutationsGenerator.logger.debug(selectedEdge.getFullLabelKey());
-    AllPathPermutationsGenerator.logger.debug(selectedEdge);
-    AllPathPermutationsGenerator.logger.trace("Current Path: " + printPath());
-    AllPathPermutationsGenerator.logger.debug("Hash size: " + pathWalked.size());
-    AllPathPermutationsGenerator.logger.trace("Hash: " + printHash());
-    return new String[] {getMachine().getEdgeName(selectedEdge), getMachine().getCurrentVertexName()};
+    Edge edge = snapshot.getEdge(selectedEdge);
+    getMachine().walkEdge(edge);
+    AllPathPermutationsGenerator.logger.debug(edge.getFullLabelKey());
+    AllPathPermutationsGenerator.logger.debug(edge);
+    if (AllPathPermutationsGenerator.logger.isTraceEnabled()) {
+      AllPathPermutationsGenerator.logger.trace("Current Path: " + printPath(snapshot));
+    }
+    AllPathPermutationsGenerator.logger.debug("Paths walked: " + numOfPaths);
+    return new String[] {getMachine().getEdgeName(edge), getMachine().getCurrentVertexName()};
   }
 
-  private boolean checkCompletionFirst() {
-    for (Integer value : pathWalked.values()) {
-      if (value == 2) {
-        return true;
-      }
+  /**
+   * Keeps the number of paths walked exactly once and twice up to date, so that the completion of a
+   * pass is known without going through all paths.
+   */
+  private void countVisit(int visits) {
+    if (visits == 0) {
+      numOfPaths++;
+    } else if (visits == 1) {
+      numOfPathsWalkedOnce--;
+    } else if (visits == 2) {
+      numOfPathsWalkedTwice--;
+    }
+    if (visits + 1 == 1) {
+      numOfPathsWalkedOnce++;
+    } else if (visits + 1 == 2) {
+      numOfPathsWalkedTwice++;
     }
-    return false;
   }
 
-  private boolean checkCompletion() {
-    for (Integer value : pathWalked.values()) {
-      if (value == 1) {
-        return false;
-      }
-    }
-    return true;
+  private void clearPaths() {
+    pathWalked = new PathNode();
+    numOfPaths = 0;
+    numOfPathsWalkedOnce = 0;
+    numOfPathsWalkedTwice = 0;
   }
 
-  private String printPath() {
-    StringBuilder stringBuilder = new StringBuilder();
-    for (Edge edge : savedEdges) {
-      stringBuilder.append(edge.getFullLabelKey());
+  private void addSavedEdge(int edge) {
+    if (savedEdgesSize == savedEdges.length) {
+      int[] grown = new int[savedEdges.length * 2];
+      for (int i = 0; i < savedEdgesSize; i++) {
+        grown[i] = savedEdges[(savedEdgesStart + i) % savedEdges.length];
+      }
+      savedEdges = grown;
+      savedEdgesStart = 0;
     }
-    return stringBuilder.toString();
+    savedEdges[(savedEdgesStart + savedEdgesSize++) % savedEdges.length] = edge;
   }
 
-  private String printHash() {
+  private String printPath(GraphSnapshot snapshot) {
     StringBuilder stringBuilder = new StringBuilder();
-    for (Integer value : pathWalked.values()) {
-      stringBuilder.append(value);
-      stringBuilder.append(" ");
+    for (int i = 0; i < savedEdgesSize; i++) {
+      stringBuilder.append(snapshot.getEdge(savedEdges[(savedEdgesStart + i) % savedEdges.length]).getFullLabelKey());
     }
     return stringBuilder.toString();
-
-  }
-
-  private Edge getRandomEdge(final Set<Edge> availableEdges) {
-    return (Edge) availableEdges.toArray()[random.nextInt(availableEdges.size())];
   }
 
   @Override
@@ -197,4 +202,57 @@ public class AllPathPermutationsGenerator extends PathGenerator {
   public int getDepth() {
     return currentDepth;
   }
+
+  /**
+   * A node of a trie of paths. The children of a node are the paths one edge longer, kept in an open
+   * addressing table keyed by the ordinal of the added edge.
+   */
+  private static class PathNode {
+    int visits = 0;
+    private int[] edges = null;
+    private PathNode[] children = null;
+    private int size = 0;
+
+    PathNode getChild(int edge, boolean create) {
+      if (children != null) {
+        int mask = children.length - 1;
+        for (int i = (int) Util.mix(edge) & mask; children[i] != null; i = (i + 1) & mask) {
+          if (edges[i] == edge) return children[i];
+        }
+      }
+      if (!create) return null;
+
+      if (children == null || 2 * (size + 1) > children.length) {
+        grow();
+      }
+      PathNode child = new PathNode();
+      int mask = children.length - 1;
+      int i = (int) Util.mix(edge) & mask;
+      while (children[i] != null) {
+        i = (i + 1) & mask;
+      }
+      edges[i] = edge;
+      children[i] = child;
+      size++;
+      return child;
+    }
+
+    private void grow() {
+      int[] oldEdges = edges;
+      PathNode[] oldChildren = children;
+      edges = new int[oldChildren == null ? 4 : 2 * oldChildren.length];
+      children = new PathNode[edges.length];
+      if (oldChildren == null) return;
+      int mask = children.length - 1;
+      for (int j = 0; j < oldChildren.length; j++) {
+        if (oldChildren[j] == null) continue;
+        int i = (int) Util.mix(oldEdges[j]) & mask;
+        while (children[i] != null) {
+          i = (i + 1) & mask;
+        }
+        edges[i] = oldEdges[j];
+        children[i] = oldChildren[j];
+      }
+    }
+  }
 }
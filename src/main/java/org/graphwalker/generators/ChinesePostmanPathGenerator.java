@@ -0,0 +1,339 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.generators;
+
+import java.util.Arrays;
+
+import org.apache.log4j.Logger;
+import org.graphwalker.Keywords;
+import org.graphwalker.Util;
+import org.graphwalker.conditions.StopCondition;
+import org.graphwalker.exceptions.FoundNoEdgeException;
+import org.graphwalker.graph.Edge;
+import org.graphwalker.graph.GraphSnapshot;
+
+/**
+ * The generator walks the shortest closed walk that covers every edge of the model, the solution of
+ * the directed Chinese Postman problem.<br>
+ * The vertices where more edges go in than out are connected to the vertices where more edges go
+ * out than in, by a minimum cost flow along the edges of the model. Each unit of flow over an edge
+ * means that the edge has to be walked once more. All vertices are then balanced, and the walk is
+ * found as an Euler circuit of the edges, with Hierholzer's algorithm.<br>
+ * The walk starts, and ends, at the current vertex, or at the vertex after the Start vertex. Only
+ * edges that can be reached from there, and lead back there, can be part of a closed walk, so any
+ * other edges are left out. When the walk has been walked, and the stop condition is not fulfilled,
+ * a new walk is planned. The guards of an extended machine are not known when the walk is planned,
+ * so if an edge of the walk can not be walked, a random edge is walked instead and a new walk is
+ * planned from there.
+ */
+public class ChinesePostmanPathGenerator extends RandomPathGenerator {
+
+  private static Logger logger = Util.setupLogger(ChinesePostmanPathGenerator.class);
+
+  private static final int INFINITE = Integer.MAX_VALUE / 2;
+
+  private GraphSnapshot snapshot;
+  private int[] tour;
+  private int position;
+
+  public ChinesePostmanPathGenerator(StopCondition stopCondition) {
+    super(stopCondition);
+  }
+
+  public ChinesePostmanPathGenerator() {
+    super();
+  }
+
+  @Override
+  public String[] getNext() throws InterruptedException {
+    Util.AbortIf(!hasNext(), "Finished");
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+
+    GraphSnapshot current = getMachine().getModel().getSnapshot();
+    if (tour == null || position == tour.length || current != snapshot) {
+      snapshot = current;
+      tour = getTour();
+      position = 0;
+    }
+
+    Edge edge = snapshot.getEdge(tour[position]);
+    if (!isEdgeAvailable(edge)) {
+      logger.debug("The edge: " + edge + ", of the tour can not be walked, will walk a random edge and plan a new tour");
+      tour = null;
+      return super.getNext();
+    }
+    position++;
+    getMachine().walkEdge(edge);
+    return new String[] {getMachine().getEdgeName(edge), getMachine().getCurrentVertexName()};
+  }
+
+  /**
+   * @return the ordinals of the edges of the shortest closed walk from the current vertex
+   */
+  private int[] getTour() {
+    int current = snapshot.indexOf(getMachine().getCurrentVertex());
+    int root = current;
+    int startEdge = -1;
+    if (Keywords.START_NODE.equals(snapshot.getVertex(current).getLabelKey()) && snapshot.getOutDegree(current) > 0) {
+      startEdge = snapshot.getOutEdge(current, 0);
+      root = snapshot.getDest(startEdge);
+    }
+
+    boolean[] component = getStronglyConnected(root);
+    int[] copies = new int[snapshot.getEdgeCount()];
+    int leftOut = 0;
+    for (int i = 0; i < copies.length; i++) {
+      if (component[snapshot.getSource(i)] && component[snapshot.getDest(i)]) {
+        copies[i] = 1;
+      } else if (i != startEdge) {
+        leftOut++;
+      }
+    }
+    if (leftOut > 0) {
+      logger.warn(leftOut + " edges can not be walked in a closed walk from: " + snapshot.getVertex(root) + ", and are left out of the tour");
+    }
+
+    addBalancingCopies(component, copies);
+    int[] circuit = getEulerCircuit(root, copies);
+    if (startEdge != -1) {
+      int[] withStart = new int[circuit.length + 1];
+      withStart[0] = startEdge;
+      System.arraycopy(circuit, 0, withStart, 1, circuit.length);
+      circuit = withStart;
+    }
+    if (circuit.length == 0) {
+      throw new RuntimeException("No possible edges available for path",
+          new FoundNoEdgeException("There is no closed walk from: " + snapshot.getVertex(root)));
+    }
+    logger.debug("Planned a tour of " + circuit.length + " edges");
+    return circuit;
+  }
+
+  /**
+   * @return the vertices which can be reached from the root, and can reach it
+   */
+  private boolean[] getStronglyConnected(int root) {
+    int[] distances = snapshot.getDistanceOracle().getDistancesTo(root);
+    boolean[] reached = new boolean[snapshot.getVertexCount()];
+    int[] queue = new int[snapshot.getVertexCount()];
+    int head = 0, tail = 0;
+    reached[root] = true;
+    queue[tail++] = root;
+    while (head < tail) {
+      int vertex = queue[head++];
+      for (int i = 0; i < snapshot.getOutDegree(vertex); i++) {
+        int dest = snapshot.getDest(snapshot.getOutEdge(vertex, i));
+        if (!reached[dest]) {
+          reached[dest] = true;
+          queue[tail++] = dest;
+        }
+      }
+    }
+    for (int i = 0; i < reached.length; i++) {
+      reached[i] = reached[i] && distances[i] != -1;
+    }
+    return reached;
+  }
+
+  /**
+   * Balances the vertices by a minimum cost flow, found by successive shortest paths, from the
+   * vertices with a surplus of in-edges to the vertices with a surplus of out-edges. Every edge
+   * costs 1, and the flow over an edge is added to its number of copies.
+   */
+  private void addBalancingCopies(boolean[] component, int[] copies) {
+    int vertices = snapshot.getVertexCount();
+    int[] balance = new int[vertices];
+    int edges = 0;
+    int terminals = 0;
+    for (int i = 0; i < copies.length; i++) {
+      if (copies[i] > 0) {
+        balance[snapshot.getDest(i)]++;
+        balance[snapshot.getSource(i)]--;
+        edges++;
+      }
+    }
+    for (int i = 0; i < vertices; i++) {
+      if (balance[i] != 0) terminals++;
+    }
+    if (terminals == 0) {
+      return;
+    }
+
+    // The residual network, where the arcs come in pairs, and arc ^ 1 is the reverse of the arc
+    int source = vertices;
+    int sink = vertices + 1;
+    int nodes = vertices + 2;
+    int arcs = 2 * (edges + terminals);
+    int[] head = new int[nodes];
+    int[] next = new int[arcs];
+    int[] to = new int[arcs];
+    int[] capacity = new int[arcs];
+    int[] cost = new int[arcs];
+    int[] edgeOfArc = new int[arcs];
+    Arrays.fill(head, -1);
+    Arrays.fill(edgeOfArc, -1);
+
+    int arc = 0;
+    for (int i = 0; i < copies.length; i++) {
+      if (copies[i] > 0) {
+        edgeOfArc[arc] = i;
+        arc = addArc(head, next, to, capacity, cost, arc, snapshot.getSource(i), snapshot.getDest(i), INFINITE, 1);
+      }
+    }
+    for (int i = 0; i < vertices; i++) {
+      if (balance[i] > 0) {
+        arc = addArc(head, next, to, capacity, cost, arc, source, i, balance[i], 0);
+      } else if (balance[i] < 0) {
+        arc = addArc(head, next, to, capacity, cost, arc, i, sink, -balance[i], 0);
+      }
+    }
+
+    // Successive shortest paths, found by the queue based Bellman-Ford (SPFA), since the reverse
+    // arcs have negative costs
+    int[] distance = new int[nodes];
+    int[] previousArc = new int[nodes];
+    boolean[] queued = new boolean[nodes];
+    int[] queue = new int[nodes + 1];
+    while (true) {
+      Arrays.fill(distance, INFINITE);
+      distance[source] = 0;
+      int first = 0, last = 0;
+      queue[last++] = source;
+      queued[source] = true;
+      while (first != last) {
+        int node = queue[first];
+        first = (first + 1) % queue.length;
+        queued[node] = false;
+        for (int a = head[node]; a != -1; a = next[a]) {
+          if (capacity[a] > 0 && distance[node] + cost[a] < distance[to[a]]) {
+            distance[to[a]] = distance[node] + cost[a];
+            previousArc[to[a]] = a;
+            if (!queued[to[a]]) {
+              queued[to[a]] = true;
+              queue[last] = to[a];
+              last = (last + 1) % queue.length;
+            }
+          }
+        }
+      }
+      if (distance[sink] == INFINITE) {
+        break;
+      }
+
+      int flow = INFINITE;
+      for (int node = sink; node != source; node = to[previousArc[node] ^ 1]) {
+        flow = Math.min(flow, capacity[previousArc[node]]);
+      }
+      for (int node = sink; node != source; node = to[previousArc[node] ^ 1]) {
+        capacity[previousArc[node]] -= flow;
+        capacity[previousArc[node] ^ 1] += flow;
+      }
+    }
+
+    for (int a = head[source]; a != -1; a = next[a]) {
+      if (capacity[a] > 0) {
+        throw new RuntimeException("The edges of the model can not be balanced into a closed walk");
+      }
+    }
+    for (int a = 0; a < arcs; a += 2) {
+      if (edgeOfArc[a] != -1) {
+        copies[edgeOfArc[a]] += capacity[a ^ 1];
+      }
+    }
+  }
+
+  private static int addArc(int[] head, int[] next, int[] to, int[] capacity, int[] cost, int arc, int from, int dest, int arcCapacity,
+      int arcCost) {
+    to[arc] = dest;
+    capacity[arc] = arcCapacity;
+    cost[arc] = arcCost;
+    next[arc] = head[from];
+    head[from] = arc;
+    to[arc + 1] = from;
+    capacity[arc + 1] = 0;
+    cost[arc + 1] = -arcCost;
+    next[arc + 1] = head[dest];
+    head[dest] = arc + 1;
+    return arc + 2;
+  }
+
+  /**
+   * Finds an Euler circuit from the root, walking every edge as many times as it has copies, with
+   * Hierholzer's algorithm.
+   */
+  private int[] getEulerCircuit(int root, int[] copies) {
+    int total = 0;
+    for (int count : copies) {
+      total += count;
+    }
+    int[] remaining = copies.clone();
+    int[] pointer = new int[snapshot.getVertexCount()];
+    int[] vertexStack = new int[total + 1];
+    int[] edgeStack = new int[total + 1];
+    int[] circuit = new int[total];
+    int end = total;
+
+    int size = 0;
+    vertexStack[size] = root;
+    edgeStack[size++] = -1;
+    while (size > 0) {
+      int vertex = vertexStack[size - 1];
+      int degree = snapshot.getOutDegree(vertex);
+      while (pointer[vertex] < degree && remaining[snapshot.getOutEdge(vertex, pointer[vertex])] == 0) {
+        pointer[vertex]++;
+      }
+      if (pointer[vertex] < degree) {
+        int edge = snapshot.getOutEdge(vertex, pointer[vertex]);
+        remaining[edge]--;
+        vertexStack[size] = snapshot.getDest(edge);
+        edgeStack[size++] = edge;
+      } else {
+        size--;
+        if (edgeStack[size] != -1) {
+          circuit[--end] = edgeStack[size];
+        }
+      }
+    }
+    return circuit;
+  }
+
+  /**
+   * Will plan a new tour on the next step.
+   */
+  @Override
+  public void reset() {
+    tour = null;
+  }
+
+  @Override
+  public String toString() {
+    if (getStopCondition() == null) {
+      return "CHINESE_POSTMAN";
+    } else {
+      return "CHINESE_POSTMAN{" + getStopCondition().toString() + "}";
+    }
+  }
+}
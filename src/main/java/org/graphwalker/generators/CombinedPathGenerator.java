@@ -23,6 +23,7 @@
 
 package org.graphwalker.generators;
 
+import java.util.Random;
 import java.util.Vector;
 
 import org.apache.log4j.Logger;
@@ -56,6 +57,14 @@ public class CombinedPathGenerator extends PathGenerator {
     }
   }
 
+  @Override
+  public void setRandom(Random random) {
+    super.setRandom(random);
+    for (PathGenerator aGeneratorList : generatorList) {
+      aGeneratorList.setRandom(random);
+    }
+  }
+
   @Override
   public void setStopCondition(StopCondition stopCondition) {
     for (PathGenerator aGeneratorList : generatorList) {
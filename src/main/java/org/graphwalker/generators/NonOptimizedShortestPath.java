@@ -24,15 +24,12 @@
 package org.graphwalker.generators;
 
 import java.util.List;
-import java.util.Vector;
 
 import org.apache.log4j.Logger;
 import org.graphwalker.Util;
 import org.graphwalker.conditions.StopCondition;
 import org.graphwalker.graph.Edge;
-import org.graphwalker.graph.Vertex;
-
-import edu.uci.ics.jung.algorithms.shortestpath.DijkstraShortestPath;
+import org.graphwalker.graph.GraphSnapshot;
 
 public class NonOptimizedShortestPath extends RandomPathGenerator {
 
@@ -71,38 +68,35 @@ public class NonOptimizedShortestPath extends RandomPathGenerator {
   private boolean setDijkstraPath() {
     // Is there a path to walk, given from DijkstraShortestPath?
     if (dijkstraShortestPath == null || dijkstraShortestPath.size() == 0) {
-      Vector<Edge> unvisitedEdges = getMachine().getUncoveredEdges();
-      logger.debug("Number of unvisited edges: " + unvisitedEdges.size());
-
-      Edge e = null;
-      if (unvisitedEdges.size() == 0) {
+      Edge e = getMachine().getRandomUncoveredEdge(getRandom());
+      if (e == null) {
         return false;
-      } else {
-        Object[] shuffledList = null;
-        if (toggleAllOrUnvisited) {
-          shuffledList = Util.shuffle(unvisitedEdges.toArray());
-        } else {
-          shuffledList = Util.shuffle(getMachine().getAllEdgesExceptStartEdge().toArray());
-        }
-        toggleAllOrUnvisited = !toggleAllOrUnvisited;
+      }
+      logger.debug("Number of unvisited edges: " + (getMachine().getAllEdges().size() - getMachine().getNumOfCoveredEdges()));
 
-        e = (Edge) shuffledList[0];
+      if (!toggleAllOrUnvisited) {
+        Edge any = getMachine().getRandomEdgeExceptStartEdge(getRandom());
+        if (any != null) {
+          e = any;
+        }
       }
+      toggleAllOrUnvisited = !toggleAllOrUnvisited;
 
       logger.debug("Current vertex: " + getMachine().getCurrentVertex());
       logger.debug("Will try to reach unvisited edge: " + e);
 
-      dijkstraShortestPath =
-          new DijkstraShortestPath<Vertex, Edge>(getMachine().getModel()).getPath(getMachine().getCurrentVertex(),
-              getMachine().getModel().getSource(e));
+      GraphSnapshot snapshot = getMachine().getModel().getSnapshot();
+      int source = snapshot.indexOf(getMachine().getCurrentVertex());
+      int target = snapshot.getSource(snapshot.indexOf(e));
+      dijkstraShortestPath = snapshot.getDistanceOracle().getShortestPath(source, target);
 
-      // DijkstraShortestPath.getPath returns 0 if there is no way to reach the
+      // getShortestPath returns 0 if there is no way to reach the
       // destination. But,
-      // DijkstraShortestPath.getPath also returns 0 paths if the the source and
+      // getShortestPath also returns 0 paths if the the source and
       // destination vertex are the same, even if there is
       // an edge there (self-loop). So we have to check for that.
       if (dijkstraShortestPath.size() == 0) {
-        if (!getMachine().getCurrentVertex().getIndexKey().equals(getMachine().getModel().getSource(e).getIndexKey())) {
+        if (source != target) {
           if (!toggleAllOrUnvisited) {
             String msg = "There is no way to reach: " + e + ", from: " + getMachine().getCurrentVertex();
             logger.error(msg);
@@ -23,7 +23,7 @@
 
 package org.graphwalker.generators;
 
-import java.util.Set;
+import java.util.Random;
 
 import org.graphwalker.conditions.StopCondition;
 import org.graphwalker.exceptions.FoundNoEdgeException;
@@ -33,6 +33,7 @@ import org.graphwalker.machines.FiniteStateMachine;
 public abstract class PathGenerator {
   private FiniteStateMachine machine;
   private StopCondition stopCondition;
+  private Random random = new Random();
 
   public abstract String[] getNext() throws InterruptedException;
 
@@ -66,6 +67,21 @@ public abstract class PathGenerator {
     return stopCondition;
   }
 
+  /**
+   * @return the source of the random choices of the generator
+   */
+  public Random getRandom() {
+    return random;
+  }
+
+  /**
+   * Sets the source of the random choices of the generator. A generator given a random seeded with
+   * the same seed, walking the same model, makes the same choices.
+   */
+  public void setRandom(Random random) {
+    this.random = random;
+  }
+
   /**
    * @return the condition fulfilment
    */
@@ -87,13 +103,10 @@ public abstract class PathGenerator {
   }
 
   protected boolean isEdgeAvailable(Edge edge) {
-    Set<Edge> availableEdges;
     try {
-      availableEdges = getMachine().getCurrentOutEdges();
+      return getMachine().isCurrentOutEdge(edge);
     } catch (FoundNoEdgeException e) {
       throw new RuntimeException("No possible edges available for path", e);
     }
-    return availableEdges.contains(edge);
-
   }
 }
@@ -23,22 +23,21 @@
 
 package org.graphwalker.generators;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Random;
-import java.util.Set;
-
 import org.apache.log4j.Logger;
 import org.graphwalker.Util;
 import org.graphwalker.conditions.StopCondition;
 import org.graphwalker.exceptions.FoundNoEdgeException;
 import org.graphwalker.graph.Edge;
+import org.graphwalker.graph.GraphSnapshot;
+import org.graphwalker.machines.SharedCoverage;
 
 public class RandomPathGenerator extends PathGenerator {
 
   private static Logger logger = Util.setupLogger(RandomPathGenerator.class);
 
-  private Random random = new Random();
+  private int[] availableEdges;
+  private AliasTable[] aliasTables;
+  private GraphSnapshot aliasSnapshot;
 
   public RandomPathGenerator(StopCondition stopCondition) {
     super(stopCondition);
@@ -50,69 +49,73 @@ public class RandomPathGenerator extends PathGenerator {
 
   @Override
   public String[] getNext() throws InterruptedException {
-    Set<Edge> availableEdges;
+    GraphSnapshot snapshot = getMachine().getModel().getSnapshot();
+    if (availableEdges == null || availableEdges.length < snapshot.getMaxOutDegree()) {
+      availableEdges = new int[snapshot.getMaxOutDegree()];
+    }
+    int numberOfEdges;
     try {
-      availableEdges = getMachine().getCurrentOutEdges();
+      numberOfEdges = getMachine().getCurrentOutEdges(availableEdges);
     } catch (FoundNoEdgeException e) {
       throw new RuntimeException("No possible edges available for path", e);
     }
     if (Thread.interrupted()) {
       throw new InterruptedException();
     }
-    Edge edge = (getMachine().isWeighted() ? getWeightedEdge(availableEdges) : getRandomEdge(availableEdges));
+    int index = getGloballyUncoveredEdge(snapshot, numberOfEdges);
+    if (index == -1) {
+      index = getMachine().isWeighted() ? getWeightedEdge(snapshot, numberOfEdges) : availableEdges[getRandom().nextInt(numberOfEdges)];
+    }
+    Edge edge = snapshot.getEdge(index);
     getMachine().walkEdge(edge);
     logger.debug(edge.getFullLabelKey());
     logger.debug(edge);
     return new String[] {getMachine().getEdgeName(edge), getMachine().getCurrentVertexName()};
   }
 
-  private Edge getWeightedEdge(Set<Edge> availableEdges) {
-
-    Map<Edge, Double> probabilities = new HashMap<Edge, Double>();
-    int numberOfZeros = 0;
-    double sum = 0;
-
-    for (Edge edge : availableEdges) {
-      if (edge.getWeightKey() > 0) {
-        probabilities.put(edge, (double) edge.getWeightKey());
-        sum += edge.getWeightKey();
-        if (sum > 1) {
-          throw new RuntimeException("The sum of all weights in edges from vertex: '" + getMachine().getModel().getSource(edge).getLabelKey()
-              + "', adds up to more than 1.00");
-        }
-      } else {
-        numberOfZeros++;
-        probabilities.put(edge, 0d);
-      }
+  /**
+   * When the machine shares its coverage with other machines, the edges none of them has walked yet
+   * are preferred, so that the machines do not repeat each other's work.
+   * 
+   * @return one of the available edges not covered by any machine, drawn at random, or -1 if there is
+   *         none
+   */
+  private int getGloballyUncoveredEdge(GraphSnapshot snapshot, int numberOfEdges) {
+    SharedCoverage sharedCoverage = getMachine().getSharedCoverage();
+    if (sharedCoverage == null || sharedCoverage.getSnapshot() != snapshot) {
+      return -1;
     }
-
-    double rest = (1 - sum) / numberOfZeros;
-    int index = random.nextInt(100);
-    logger.debug("Randomized integer index = " + index);
-
-    double weight = 0;
-
-    for (Edge edge : availableEdges) {
-
-      if (probabilities.get(edge) == 0) {
-        probabilities.put(edge, rest);
-      }
-
-      logger.debug("The edge: '" + edge.getLabelKey() + "' is given the probability of " + probabilities.get(edge) * 100 + "%");
-
-      weight = weight + probabilities.get(edge) * 100;
-      logger.debug("Current weight is: " + weight);
-      if (index < weight) {
-        logger.debug("Selected edge is: " + edge);
-        return edge;
+    int selected = -1;
+    int uncovered = 0;
+    for (int i = 0; i < numberOfEdges; i++) {
+      // Reservoir sampling, to draw among the uncovered edges without collecting them
+      if (!sharedCoverage.isEdgeCovered(availableEdges[i]) && getRandom().nextInt(++uncovered) == 0) {
+        selected = availableEdges[i];
       }
     }
-
-    throw new RuntimeException("No edge found");
+    return selected;
   }
 
-  private Edge getRandomEdge(Set<Edge> availableEdges) {
-    return (Edge) availableEdges.toArray()[random.nextInt(availableEdges.size())];
+  /**
+   * Draws one of the available edges by weight. The alias table of the vertex is kept until the
+   * available edges, or their weights, change.
+   */
+  private int getWeightedEdge(GraphSnapshot snapshot, int numberOfEdges) {
+    if (snapshot != aliasSnapshot) {
+      aliasTables = new AliasTable[snapshot.getVertexCount()];
+      aliasSnapshot = snapshot;
+    }
+    int vertex = snapshot.getSource(availableEdges[0]);
+    AliasTable table = aliasTables[vertex];
+    if (table == null || !table.isBuiltFor(snapshot, availableEdges, numberOfEdges)) {
+      table = new AliasTable(snapshot, availableEdges, numberOfEdges);
+      aliasTables[vertex] = table;
+    }
+    int edge = table.next(getRandom());
+    if (logger.isDebugEnabled()) {
+      logger.debug("Selected edge is: " + snapshot.getEdge(edge));
+    }
+    return edge;
   }
 
   @Override
@@ -38,7 +38,6 @@ public class AbstractElement {
   private String reqTagKey = "";
   private Integer reqTagResult = 0;
   private String parameterKey = "";
-  private Integer visitedKey = 0;
   private String actionsKey = "";
   private Integer indexKey = 0;
   private String idKey = "";
@@ -50,6 +49,8 @@ public class AbstractElement {
   private boolean mergedMbtKey = false;
   private String manualInstructions = "";
   private String descriptionKey = "";
+  private int ordinal = -1;
+  private Graph owner = null;
 
   public AbstractElement() {}
 
@@ -59,7 +60,6 @@ public class AbstractElement {
     this.reqTagKey = ae.reqTagKey;
     this.reqTagResult = ae.reqTagResult;
     this.parameterKey = ae.parameterKey;
-    this.visitedKey = ae.visitedKey;
     this.actionsKey = ae.actionsKey;
     this.indexKey = ae.indexKey;
     this.idKey = ae.idKey;
@@ -80,7 +80,6 @@ public class AbstractElement {
       this.reqTagKey = A.reqTagKey;
       this.reqTagResult = A.reqTagResult;
       this.parameterKey = A.parameterKey;
-      this.visitedKey = A.visitedKey;
       this.actionsKey = A.actionsKey;
       this.indexKey = A.indexKey;
       this.idKey = A.idKey;
@@ -98,7 +97,6 @@ public class AbstractElement {
       this.reqTagKey = B.reqTagKey;
       this.reqTagResult = B.reqTagResult;
       this.parameterKey = B.parameterKey;
-      this.visitedKey = B.visitedKey;
       this.actionsKey = B.actionsKey;
       this.indexKey = B.indexKey;
       this.idKey = B.idKey;
@@ -167,6 +165,7 @@ public class AbstractElement {
 
   public void setIdKey(String idKey) {
     this.idKey = idKey;
+    keysChanged();
   }
 
   public Integer getIndexKey() {
@@ -175,6 +174,7 @@ public class AbstractElement {
 
   public void setIndexKey(Integer indexKey) {
     this.indexKey = indexKey;
+    keysChanged();
   }
 
   public String getActionsKey() {
@@ -185,14 +185,6 @@ public class AbstractElement {
     this.actionsKey = actionsKey;
   }
 
-  public Integer getVisitedKey() {
-    return visitedKey;
-  }
-
-  public void setVisitedKey(Integer visitedKey) {
-    this.visitedKey = visitedKey;
-  }
-
   public String getParameterKey() {
     return parameterKey;
   }
@@ -212,6 +204,7 @@ public class AbstractElement {
    */
   public void setReqTagKey(String reqTagKey) {
     this.reqTagKey = reqTagKey;
+    keysChanged();
   }
 
   /**
@@ -241,6 +234,39 @@ public class AbstractElement {
 
   public void setLabelKey(String labelKey) {
     this.labelKey = labelKey;
+    keysChanged();
+  }
+
+  /**
+   * @return the position of the element in the snapshot of the graph it belongs to, or -1 if no
+   *         snapshot has been built yet.
+   * @see GraphSnapshot
+   */
+  public int getOrdinal() {
+    return ordinal;
+  }
+
+  /**
+   * Tells the graph the element belongs to that its label, INDEX key, id or requirement tags have
+   * been set, so that its lookup indexes are rebuilt.
+   */
+  private void keysChanged() {
+    Graph graph = owner;
+    if (graph != null) {
+      graph.keysChanged();
+    }
+  }
+
+  void setOwner(Graph owner) {
+    this.owner = owner;
+  }
+
+  Graph getOwner() {
+    return owner;
+  }
+
+  void setOrdinal(int ordinal) {
+    this.ordinal = ordinal;
   }
 
   @Override
@@ -0,0 +1,140 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.graph;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers shortest path queries on a {@link GraphSnapshot}. The paths to a vertex are found by a
+ * breadth first search backwards from it, which gives the distance, and the first edge of a
+ * shortest path, from every other vertex. The search trees are computed when first asked for, and
+ * the most recently used ones are cached, so that repeated queries during a long run do not have to
+ * traverse the graph again.<br>
+ * The oracle is shared by everyone using the same snapshot, see
+ * {@link GraphSnapshot#getDistanceOracle()}, and can be used from several threads.
+ */
+public class DistanceOracle {
+
+  /**
+   * The number of search trees cached by the oracle of a snapshot.
+   */
+  public static final int DEFAULT_CAPACITY = 64;
+
+  private final GraphSnapshot snapshot;
+  private final Map<Integer, Tree> trees;
+
+  public DistanceOracle(GraphSnapshot snapshot, final int capacity) {
+    this.snapshot = snapshot;
+    this.trees = new LinkedHashMap<Integer, Tree>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, Tree> eldest) {
+        return size() > capacity;
+      }
+    };
+  }
+
+  /**
+   * @return the number of edges of the shortest path between the vertices, or -1 if there is no
+   *         path
+   */
+  public int getDistance(int from, int to) {
+    return getTree(to).distance[from];
+  }
+
+  /**
+   * @return the distance from every vertex to the given vertex, indexed by vertex ordinal, and -1
+   *         for the vertices that can not reach it. The array is shared, and must not be modified.
+   */
+  public int[] getDistancesTo(int to) {
+    return getTree(to).distance;
+  }
+
+  /**
+   * Finds one of the shortest paths between two vertices.
+   * 
+   * @return the edges of the path, or an empty list if the vertices are the same, or if there is no
+   *         path between them.
+   */
+  public List<Edge> getShortestPath(int from, int to) {
+    LinkedList<Edge> path = new LinkedList<Edge>();
+    Tree tree = getTree(to);
+    if (tree.distance[from] == -1) return path;
+    for (int vertex = from; vertex != to; vertex = snapshot.getDest(tree.nextEdge[vertex])) {
+      path.add(snapshot.getEdge(tree.nextEdge[vertex]));
+    }
+    return path;
+  }
+
+  private Tree getTree(int to) {
+    Integer key = Integer.valueOf(to);
+    Tree tree;
+    synchronized (trees) {
+      tree = trees.get(key);
+    }
+    if (tree == null) {
+      // Searched outside the lock, so that the trees of different vertices can be found in parallel
+      tree = new Tree(to);
+      synchronized (trees) {
+        trees.put(key, tree);
+      }
+    }
+    return tree;
+  }
+
+  private class Tree {
+    final int[] distance;
+    final int[] nextEdge;
+
+    Tree(int to) {
+      int n = snapshot.getVertexCount();
+      distance = new int[n];
+      nextEdge = new int[n];
+      Arrays.fill(distance, -1);
+      Arrays.fill(nextEdge, -1);
+      int[] queue = new int[n];
+      int head = 0, tail = 0;
+      distance[to] = 0;
+      queue[tail++] = to;
+      while (head < tail) {
+        int vertex = queue[head++];
+        int degree = snapshot.getInDegree(vertex);
+        for (int i = 0; i < degree; i++) {
+          int edge = snapshot.getInEdge(vertex, i);
+          int source = snapshot.getSource(edge);
+          if (distance[source] == -1) {
+            distance[source] = distance[vertex] + 1;
+            nextEdge[source] = edge;
+            queue[tail++] = source;
+          }
+        }
+      }
+    }
+  }
+}
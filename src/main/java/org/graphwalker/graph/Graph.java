@@ -23,20 +23,21 @@
 
 package org.graphwalker.graph;
 
-import org.apache.log4j.Logger;
-import org.graphwalker.Util;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import edu.uci.ics.jung.graph.SparseMultigraph;
 import edu.uci.ics.jung.graph.util.EdgeType;
+import edu.uci.ics.jung.graph.util.Pair;
 
 public class Graph extends SparseMultigraph<Vertex, Edge> {
 
   private static final long serialVersionUID = 4744840850614032582L;
-  private static Logger logger = Util.setupLogger(Graph.class);
 
   private String fileKey = "";
   private String labelKey = "";
   private String descriptionKey = "";
+  private transient volatile GraphSnapshot snapshot = null;
+  private final AtomicInteger keyVersion = new AtomicInteger();
 
   public String getDescriptionKey() {
     return descriptionKey;
@@ -77,27 +78,86 @@ public class Graph extends SparseMultigraph<Vertex, Edge> {
     return super.addEdge(e, source, dest, EdgeType.DIRECTED);
   }
 
-  public Vertex findVertex(String vertexName) {
-    logger.debug("Looking for vertex: " + vertexName + ", in model: " + this.toString());
-    for (Vertex vertex : getVertices()) {
-      logger.debug("  " + vertex.getLabelKey());
-      if ((vertex.getLabelKey()).equals(vertexName)) {
-        logger.debug("    Found it: " + vertex);
-        return vertex;
+  @Override
+  public boolean addEdge(Edge edge, Pair<? extends Vertex> endpoints, EdgeType edgeType) {
+    boolean added = super.addEdge(edge, endpoints, edgeType);
+    if (added) edge.setOwner(this);
+    snapshot = null;
+    return added;
+  }
+
+  @Override
+  public boolean addVertex(Vertex vertex) {
+    boolean added = super.addVertex(vertex);
+    if (added) vertex.setOwner(this);
+    snapshot = null;
+    return added;
+  }
+
+  @Override
+  public boolean removeEdge(Edge edge) {
+    boolean removed = super.removeEdge(edge);
+    if (removed && edge.getOwner() == this) edge.setOwner(null);
+    snapshot = null;
+    return removed;
+  }
+
+  @Override
+  public boolean removeVertex(Vertex vertex) {
+    boolean removed = super.removeVertex(vertex);
+    if (removed && vertex.getOwner() == this) vertex.setOwner(null);
+    snapshot = null;
+    return removed;
+  }
+
+  void keysChanged() {
+    keyVersion.incrementAndGet();
+  }
+
+  /**
+   * @return a counter that changes whenever the label, INDEX key, id or requirement tags of an
+   *         element of this graph is set. Used to tell when lookup indexes need to be rebuilt.
+   */
+  int getKeyVersion() {
+    return keyVersion.get();
+  }
+
+  /**
+   * Returns the index based snapshot of the graph. The snapshot is built the first time it is asked
+   * for, and rebuilt after the graph has been modified.
+   */
+  public GraphSnapshot getSnapshot() {
+    GraphSnapshot current = snapshot;
+    if (current == null) {
+      synchronized (this) {
+        if (snapshot == null) {
+          snapshot = new GraphSnapshot(this);
+        }
+        current = snapshot;
       }
     }
-    return null;
+    return current;
+  }
+
+  public Vertex findVertex(String vertexName) {
+    return getSnapshot().findVertex(vertexName);
   }
 
   public Edge findEdge(String edgeName) {
-    logger.debug("Looking for edge: " + edgeName + ", in model: " + this.toString());
-    for (Edge edge : getEdges()) {
-      logger.debug("  " + edge.getLabelKey());
-      if ((edge.getLabelKey()).equals(edgeName)) {
-        logger.debug("    Found it: " + edge);
-        return edge;
-      }
-    }
-    return null;
+    return getSnapshot().findEdge(edgeName);
+  }
+
+  /**
+   * @return the vertex, or if no vertex matches, the edge with the INDEX key. Null if there is none.
+   */
+  public AbstractElement findElement(Integer index) {
+    return getSnapshot().findElement(index);
+  }
+
+  /**
+   * @return the vertex, or if no vertex matches, the edge with the id. Null if there is none.
+   */
+  public AbstractElement findElementById(String id) {
+    return getSnapshot().findElementById(id);
   }
 }
@@ -0,0 +1,283 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.graph;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/**
+ * An immutable, index based view of a {@link Graph}. Vertices and edges are given dense ordinals
+ * (see {@link AbstractElement#getOrdinal()}), and the out-edges of every vertex are stored in
+ * compressed sparse row form, so that walking the graph needs neither hashing nor allocation. So
+ * are the in-edges, for searching the graph backwards.<br>
+ * The snapshot is built by {@link Graph#getSnapshot()}, and is discarded by the graph as soon as a
+ * vertex or an edge is added or removed.<br>
+ * The snapshot also keeps hash indexes of the elements by label, INDEX key and id, and the parsed
+ * requirement tags. Since the GraphML parser sets those keys after the elements have been added to
+ * the graph, they are built on first use, and rebuilt if any such key has been changed since.
+ */
+public class GraphSnapshot {
+
+  private final Vertex[] vertices;
+  private final Edge[] edges;
+  private final int[] edgeSource;
+  private final int[] edgeDest;
+  private final int[] outOffset;
+  private final int[] outEdges;
+  private final int[] inOffset;
+  private final int[] inEdges;
+  private final int maxOutDegree;
+
+  private final Graph graph;
+  private volatile Lookups lookups = null;
+  private volatile DistanceOracle distanceOracle = null;
+
+  /**
+   * The graph keeps its elements in hash order, which changes from one run to the next. Ordering them
+   * by INDEX key gives the same ordinals, and the same walks from the same random seed, every run.
+   */
+  private static final Comparator<AbstractElement> BY_INDEX_KEY = new Comparator<AbstractElement>() {
+    @Override
+    public int compare(AbstractElement a, AbstractElement b) {
+      return a.getIndexKey().compareTo(b.getIndexKey());
+    }
+  };
+
+  GraphSnapshot(Graph graph) {
+    this.graph = graph;
+    vertices = graph.getVertices().toArray(new Vertex[graph.getVertexCount()]);
+    edges = graph.getEdges().toArray(new Edge[graph.getEdgeCount()]);
+    Arrays.sort(vertices, BY_INDEX_KEY);
+    Arrays.sort(edges, BY_INDEX_KEY);
+    edgeSource = new int[edges.length];
+    edgeDest = new int[edges.length];
+    outOffset = new int[vertices.length + 1];
+    outEdges = new int[edges.length];
+    inOffset = new int[vertices.length + 1];
+    inEdges = new int[edges.length];
+
+    for (int i = 0; i < vertices.length; i++) {
+      vertices[i].setOrdinal(i);
+    }
+    for (int i = 0; i < edges.length; i++) {
+      edges[i].setOrdinal(i);
+      edgeSource[i] = graph.getSource(edges[i]).getOrdinal();
+      edgeDest[i] = graph.getDest(edges[i]).getOrdinal();
+      outOffset[edgeSource[i] + 1]++;
+      inOffset[edgeDest[i] + 1]++;
+    }
+
+    int max = 0;
+    for (int i = 0; i < vertices.length; i++) {
+      max = Math.max(max, outOffset[i + 1]);
+      outOffset[i + 1] += outOffset[i];
+      inOffset[i + 1] += inOffset[i];
+    }
+    maxOutDegree = max;
+
+    int[] next = new int[vertices.length];
+    System.arraycopy(outOffset, 0, next, 0, vertices.length);
+    for (int i = 0; i < edges.length; i++) {
+      outEdges[next[edgeSource[i]]++] = i;
+    }
+    System.arraycopy(inOffset, 0, next, 0, vertices.length);
+    for (int i = 0; i < edges.length; i++) {
+      inEdges[next[edgeDest[i]]++] = i;
+    }
+  }
+
+  public int getVertexCount() {
+    return vertices.length;
+  }
+
+  public int getEdgeCount() {
+    return edges.length;
+  }
+
+  public Vertex getVertex(int vertex) {
+    return vertices[vertex];
+  }
+
+  public Edge getEdge(int edge) {
+    return edges[edge];
+  }
+
+  /**
+   * @return the ordinal of the vertex, or -1 if the vertex is not part of this snapshot
+   */
+  public int indexOf(Vertex vertex) {
+    if (vertex == null) return -1;
+    int ordinal = vertex.getOrdinal();
+    if (ordinal >= 0 && ordinal < vertices.length && vertices[ordinal] == vertex) return ordinal;
+    for (int i = 0; i < vertices.length; i++) {
+      if (vertices[i] == vertex) return i;
+    }
+    return -1;
+  }
+
+  /**
+   * @return the ordinal of the edge, or -1 if the edge is not part of this snapshot
+   */
+  public int indexOf(Edge edge) {
+    if (edge == null) return -1;
+    int ordinal = edge.getOrdinal();
+    if (ordinal >= 0 && ordinal < edges.length && edges[ordinal] == edge) return ordinal;
+    for (int i = 0; i < edges.length; i++) {
+      if (edges[i] == edge) return i;
+    }
+    return -1;
+  }
+
+  /**
+   * @return the ordinal of the source vertex of the edge
+   */
+  public int getSource(int edge) {
+    return edgeSource[edge];
+  }
+
+  /**
+   * @return the ordinal of the destination vertex of the edge
+   */
+  public int getDest(int edge) {
+    return edgeDest[edge];
+  }
+
+  public int getOutDegree(int vertex) {
+    return outOffset[vertex + 1] - outOffset[vertex];
+  }
+
+  /**
+   * @return the ordinal of the i:th out-edge of the vertex
+   */
+  public int getOutEdge(int vertex, int i) {
+    return outEdges[outOffset[vertex] + i];
+  }
+
+  public int getInDegree(int vertex) {
+    return inOffset[vertex + 1] - inOffset[vertex];
+  }
+
+  /**
+   * @return the ordinal of the i:th in-edge of the vertex
+   */
+  public int getInEdge(int vertex, int i) {
+    return inEdges[inOffset[vertex] + i];
+  }
+
+  /**
+   * @return the largest out-degree of any vertex, useful for sizing edge buffers
+   */
+  public int getMaxOutDegree() {
+    return maxOutDegree;
+  }
+
+  /**
+   * @return the first vertex with the label, or null if there is none
+   */
+  public Vertex findVertex(String label) {
+    return getLookups().verticesByLabel.get(label);
+  }
+
+  /**
+   * @return the first edge with the label, or null if there is none
+   */
+  public Edge findEdge(String label) {
+    return getLookups().edgesByLabel.get(label);
+  }
+
+  /**
+   * @return the vertex, or if no vertex matches, the edge with the INDEX key. Null if there is none.
+   */
+  public AbstractElement findElement(Integer index) {
+    return getLookups().elementsByIndex.get(index);
+  }
+
+  /**
+   * @return the vertex, or if no vertex matches, the edge with the id. Null if there is none.
+   */
+  public AbstractElement findElementById(String id) {
+    return getLookups().elementsById.get(id);
+  }
+
+  /**
+   * @return the requirement tags of the elements, interned as integer ids
+   */
+  public Requirements getRequirements() {
+    return getLookups().requirements;
+  }
+
+  private Lookups getLookups() {
+    Lookups current = lookups;
+    if (current == null || current.keyVersion != graph.getKeyVersion()) {
+      synchronized (this) {
+        current = lookups;
+        if (current == null || current.keyVersion != graph.getKeyVersion()) {
+          current = new Lookups();
+          lookups = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  private class Lookups {
+    final int keyVersion = graph.getKeyVersion();
+    final HashMap<String, Vertex> verticesByLabel = new HashMap<String, Vertex>(2 * vertices.length);
+    final HashMap<String, Edge> edgesByLabel = new HashMap<String, Edge>(2 * edges.length);
+    final HashMap<Integer, AbstractElement> elementsByIndex = new HashMap<Integer, AbstractElement>(2 * (vertices.length + edges.length));
+    final HashMap<String, AbstractElement> elementsById = new HashMap<String, AbstractElement>(2 * (vertices.length + edges.length));
+    final Requirements requirements;
+
+    Lookups() {
+      for (Vertex vertex : vertices) {
+        if (!verticesByLabel.containsKey(vertex.getLabelKey())) verticesByLabel.put(vertex.getLabelKey(), vertex);
+        if (!elementsByIndex.containsKey(vertex.getIndexKey())) elementsByIndex.put(vertex.getIndexKey(), vertex);
+        if (!elementsById.containsKey(vertex.getIdKey())) elementsById.put(vertex.getIdKey(), vertex);
+      }
+      for (Edge edge : edges) {
+        if (!edgesByLabel.containsKey(edge.getLabelKey())) edgesByLabel.put(edge.getLabelKey(), edge);
+        if (!elementsByIndex.containsKey(edge.getIndexKey())) elementsByIndex.put(edge.getIndexKey(), edge);
+        if (!elementsById.containsKey(edge.getIdKey())) elementsById.put(edge.getIdKey(), edge);
+      }
+      requirements = new Requirements(GraphSnapshot.this);
+    }
+  }
+
+  /**
+   * @return the shortest path oracle of the snapshot, created on first use
+   */
+  public DistanceOracle getDistanceOracle() {
+    DistanceOracle current = distanceOracle;
+    if (current == null) {
+      synchronized (this) {
+        if (distanceOracle == null) {
+          distanceOracle = new DistanceOracle(this, DistanceOracle.DEFAULT_CAPACITY);
+        }
+        current = distanceOracle;
+      }
+    }
+    return current;
+  }
+}
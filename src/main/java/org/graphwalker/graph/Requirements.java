@@ -0,0 +1,103 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.graph;
+
+import java.util.HashMap;
+import java.util.Vector;
+
+/**
+ * The requirement tags of a {@link GraphSnapshot}, parsed once and interned as integer ids. Ids
+ * are given in order of first appearance, vertices first and then edges.
+ */
+public class Requirements {
+
+  private static final int[] NONE = new int[0];
+
+  private final Vector<String> names = new Vector<String>();
+  private final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+  private final int[][] vertexRequirements;
+  private final int[][] edgeRequirements;
+
+  Requirements(GraphSnapshot snapshot) {
+    vertexRequirements = new int[snapshot.getVertexCount()][];
+    edgeRequirements = new int[snapshot.getEdgeCount()][];
+    for (int i = 0; i < vertexRequirements.length; i++) {
+      vertexRequirements[i] = intern(snapshot.getVertex(i).getReqTagKey());
+    }
+    for (int i = 0; i < edgeRequirements.length; i++) {
+      edgeRequirements[i] = intern(snapshot.getEdge(i).getReqTagKey());
+    }
+  }
+
+  private int[] intern(String reqTags) {
+    if (reqTags.isEmpty()) return NONE;
+    String[] tags = reqTags.split(",");
+    int[] retur = new int[tags.length];
+    for (int i = 0; i < tags.length; i++) {
+      Integer id = ids.get(tags[i]);
+      if (id == null) {
+        id = names.size();
+        names.add(tags[i]);
+        ids.put(tags[i], id);
+      }
+      retur[i] = id;
+    }
+    return retur;
+  }
+
+  /**
+   * @return the number of distinct requirements in the model
+   */
+  public int size() {
+    return names.size();
+  }
+
+  public String getName(int id) {
+    return names.get(id);
+  }
+
+  /**
+   * @return the id of the requirement, or -1 if the model has no such requirement
+   */
+  public int getId(String name) {
+    Integer id = ids.get(name);
+    return (id == null ? -1 : id);
+  }
+
+  /**
+   * @return the ids of the requirements tagged on the vertex with the ordinal. A tag that appears
+   *         more than once on the vertex, is listed more than once.
+   */
+  public int[] getVertexRequirements(int vertex) {
+    return vertexRequirements[vertex];
+  }
+
+  /**
+   * @return the ids of the requirements tagged on the edge with the ordinal. A tag that appears
+   *         more than once on the edge, is listed more than once.
+   */
+  public int[] getEdgeRequirements(int edge) {
+    return edgeRequirements[edge];
+  }
+}
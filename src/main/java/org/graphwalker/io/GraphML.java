@@ -200,7 +200,6 @@ public class GraphML extends AbstractModelHandler {
               }
 
               v.setIdKey(element.getAttributeValue("id"));
-              v.setVisitedKey(0);
               v.setFileKey(fileName);
               v.setFullLabelKey(str);
               v.setIndexKey(getNewVertexAndEdgeIndex());
@@ -411,7 +410,6 @@ public class GraphML extends AbstractModelHandler {
 
             e.setReqTagKey(AbstractElement.getReqTags(str));
           }
-          e.setVisitedKey(0);
           logger.debug("  Added edge: '" + e.getLabelKey() + "', with id: " + e.getIndexKey());
 
           // Extract any manual test instructions
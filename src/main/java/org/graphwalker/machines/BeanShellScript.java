@@ -0,0 +1,202 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.machines;
+
+import java.io.StringReader;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.apache.log4j.Logger;
+import org.graphwalker.Util;
+
+import bsh.CallStack;
+import bsh.EvalError;
+import bsh.Interpreter;
+import bsh.InterpreterError;
+import bsh.Parser;
+import bsh.Primitive;
+import bsh.TokenMgrError;
+
+/**
+ * A BeanShell script that is parsed once, and then evaluated from its syntax tree as many times as
+ * needed. BeanShell does not publish its syntax tree classes, so the nodes are evaluated through
+ * reflection. If that is not possible with the BeanShell version at hand, the script is evaluated
+ * from its source instead.
+ */
+public class BeanShellScript {
+
+  private static Logger logger = Util.setupLogger(BeanShellScript.class);
+
+  private static Method evalNode = null;
+  private static Class<?> returnControl = null;
+  private static Field returnValue = null;
+  private static Method numChildren = null;
+  private static Method child = null;
+  private static Field nameText = null;
+
+  /**
+   * The syntax tree nodes that can not write to the name space other than by assigning a plain
+   * variable name in it.
+   */
+  private static final HashSet<String> plainNodes = new HashSet<String>(Arrays.asList("BSHAmbiguousName", "BSHArguments",
+      "BSHAssignment", "BSHBinaryExpression", "BSHCastExpression", "BSHIfStatement", "BSHLiteral", "BSHMethodInvocation",
+      "BSHPrimaryExpression", "BSHPrimitiveType", "BSHTernaryExpression", "BSHType", "BSHTypedVariableDeclaration",
+      "BSHUnaryExpression", "BSHVariableDeclarator"));
+
+  static {
+    try {
+      Class<?> simpleNode = Class.forName("bsh.SimpleNode");
+      evalNode = simpleNode.getMethod("eval", CallStack.class, Interpreter.class);
+      evalNode.setAccessible(true);
+      returnControl = Class.forName("bsh.ReturnControl");
+      returnValue = returnControl.getField("value");
+      returnValue.setAccessible(true);
+      numChildren = simpleNode.getMethod("jjtGetNumChildren");
+      numChildren.setAccessible(true);
+      child = simpleNode.getMethod("jjtGetChild", int.class);
+      child.setAccessible(true);
+      nameText = Class.forName("bsh.BSHAmbiguousName").getField("text");
+      nameText.setAccessible(true);
+    } catch (Exception e) {
+      logger.warn("BeanShell scripts will be evaluated from source, since the syntax tree is not accessible: " + e);
+      evalNode = null;
+    }
+  }
+
+  private final String script;
+  private final Object[] nodes;
+  private final boolean plainAssignments;
+
+  /**
+   * Parses the script.
+   * 
+   * @throws EvalError if the script is malformed
+   */
+  public BeanShellScript(String script) throws EvalError {
+    this.script = (script.endsWith(";") ? script : script + ";");
+    ArrayList<Object> parsed = new ArrayList<Object>();
+    Parser parser = new Parser(new StringReader(this.script));
+    boolean eof = false;
+    try {
+      while (!eof) {
+        eof = parser.Line();
+        Object node = parser.popNode();
+        if (node != null) {
+          parsed.add(node);
+        }
+      }
+    } catch (TokenMgrError e) {
+      throw new EvalError("Lexical error in: '" + this.script + "': " + e.getMessage(), null, null);
+    }
+    this.nodes = parsed.toArray();
+    this.plainAssignments = (evalNode != null && isPlain(nodes, false));
+  }
+
+  /**
+   * @return true if the script can only change the name space it is evaluated in by assigning,
+   *         declaring or unsetting plain variable names. Such writes all pass through the public
+   *         methods of the name space. Blocks, loops, method declarations, array elements and
+   *         fields are written by BeanShell behind the back of the name space.
+   */
+  public boolean hasOnlyPlainAssignments() {
+    return plainAssignments;
+  }
+
+  private static boolean isPlain(Object[] siblings, boolean assigned) {
+    try {
+      for (Object node : siblings) {
+        String type = node.getClass().getName().substring("bsh.".length());
+        if (!plainNodes.contains(type)) {
+          return false;
+        }
+        if (assigned && type.equals("BSHAmbiguousName") && ((String) nameText.get(node)).indexOf('.') != -1) {
+          return false;
+        }
+        Object[] children = new Object[(Integer) numChildren.invoke(node)];
+        for (int i = 0; i < children.length; i++) {
+          children[i] = child.invoke(node, i);
+        }
+        if (type.equals("BSHAssignment") || type.equals("BSHUnaryExpression")) {
+          if (children.length > 0 && !isPlain(new Object[] { children[0] }, true)) {
+            return false;
+          }
+          if (children.length > 1 && !isPlain(Arrays.copyOfRange(children, 1, children.length), false)) {
+            return false;
+          }
+        } else if (!isPlain(children, assigned)) {
+          return false;
+        }
+      }
+    } catch (Exception e) {
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Evaluates the script in the current name space of the interpreter.
+   * 
+   * @return the value of the last statement, unwrapped from any BeanShell primitive
+   */
+  public Object eval(Interpreter interpreter) throws EvalError {
+    if (evalNode == null) {
+      return interpreter.eval(script);
+    }
+
+    CallStack callstack = new CallStack(interpreter.getNameSpace());
+    Object retur = null;
+    try {
+      for (Object node : nodes) {
+        retur = evalNode.invoke(node, callstack, interpreter);
+        if (returnControl.isInstance(retur)) {
+          retur = returnValue.get(retur);
+          break;
+        }
+      }
+    } catch (InvocationTargetException e) {
+      if (e.getCause() instanceof EvalError) {
+        throw (EvalError) e.getCause();
+      }
+      if (e.getCause() instanceof InterpreterError) {
+        throw new EvalError("Internal BeanShell error: " + e.getCause().getMessage() + " in: '" + script + "'", null, callstack);
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException("Could not evaluate: '" + script + "'", e.getCause());
+    } catch (IllegalAccessException e) {
+      throw new RuntimeException("Could not evaluate: '" + script + "'", e);
+    }
+    return Primitive.unwrap(retur);
+  }
+
+  @Override
+  public String toString() {
+    return script;
+  }
+}
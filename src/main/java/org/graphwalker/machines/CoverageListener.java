@@ -0,0 +1,52 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.machines;
+
+import org.graphwalker.graph.AbstractElement;
+
+/**
+ * Is told by a {@link FiniteStateMachine} when the visits of its elements change, so that a stop
+ * condition can keep its fulfilment up to date instead of counting it again on every step.
+ */
+public interface CoverageListener {
+
+  /**
+   * The element has been visited.
+   * 
+   * @param visits the number of visits of the element, this one included
+   */
+  void visited(AbstractElement element, int visits);
+
+  /**
+   * A visit of the element has been taken back, when backtracking.
+   * 
+   * @param visits the number of visits of the element that are left
+   */
+  void unvisited(AbstractElement element, int visits);
+
+  /**
+   * All visits of the machine have been cleared, or the machine has been given a new model.
+   */
+  void reset();
+}
@@ -28,10 +28,16 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.Map.Entry;
@@ -39,6 +45,8 @@ import java.util.Set;
 import java.util.Stack;
 
 import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
@@ -46,12 +54,17 @@ import javax.script.ScriptException;
 
 import org.apache.log4j.Logger;
 import org.graphwalker.Util;
+import org.graphwalker.exceptions.ExpressionException;
 import org.graphwalker.exceptions.FoundNoEdgeException;
 import org.graphwalker.exceptions.InvalidDataException;
+import org.graphwalker.expressions.Script;
+import org.graphwalker.expressions.Variables;
 import org.graphwalker.filters.AccessableEdgeFilter;
 import org.graphwalker.graph.Edge;
+import org.graphwalker.graph.Graph;
 import org.json.simple.JSONObject;
 
+import bsh.BshClassManager;
 import bsh.EvalError;
 import bsh.Interpreter;
 import bsh.NameSpace;
@@ -61,6 +74,8 @@ import bsh.UtilEvalError;
 public class ExtendedFiniteStateMachine extends FiniteStateMachine {
 
   private PrintStream Void;
+  private Writer voidWriter;
+  private Writer jsWriter;
 
   private static Logger logger = Util.setupLogger(ExtendedFiniteStateMachine.class);
 
@@ -70,22 +85,49 @@ public class ExtendedFiniteStateMachine extends FiniteStateMachine {
   private ScriptEngineManager mgr = null;
   private ScriptEngine jsEngine = null;
 
-  private Stack<CannedNameSpace> namespaceStack;
-
-  private PrintStream oldPrintStream;
+  private Stack<NameSpaceMark> namespaceStack;
+  private ArrayList<JournalingNameSpace.Change> journal = new ArrayList<JournalingNameSpace.Change>();
+  private boolean journaledScripts = false;
+  private HashMap<String, Object> jsData = new HashMap<String, Object>();
+  private ArrayList<JsChange> jsJournal = new ArrayList<JsChange>();
+  private Stack<Integer> jsMarks = new Stack<Integer>();
+  private HashSet<String> jsCheckedObjects = new HashSet<String>();
+  private long jsFingerprint = 0;
+  private int jsMutableValues = 0;
+  private HashMap<String, CompiledScript> jsActions = new HashMap<String, CompiledScript>();
+  private HashMap<String, BeanShellScript> beanShellActions = new HashMap<String, BeanShellScript>();
+
+  private Variables nativeVariables = null;
+  private Stack<Variables.State> variablesStack = new Stack<Variables.State>();
+  private HashMap<String, Script> nativeActions = new HashMap<String, Script>();
 
   public ExtendedFiniteStateMachine(boolean usingJsEngine) {
+    this(usingJsEngine, false);
+  }
+
+  /**
+   * @param usingJsEngine if the guards and actions are Java Script
+   * @param usingNativeEngine if the guards and actions are written in the native expression
+   *        language, see {@link Script}. Takes precedence over usingJsEngine.
+   */
+  public ExtendedFiniteStateMachine(boolean usingJsEngine, boolean usingNativeEngine) {
     super();
-    namespaceStack = new Stack<CannedNameSpace>();
-    if (usingJsEngine) {
+    Void = new VoidPrintStream();
+    voidWriter = new PrintWriter(Void);
+    namespaceStack = new Stack<NameSpaceMark>();
+    if (usingNativeEngine) {
+      nativeVariables = new Variables();
+      accessableFilter = new AccessableEdgeFilter(nativeVariables);
+    } else if (usingJsEngine) {
       mgr = new ScriptEngineManager();
       jsEngine = mgr.getEngineByExtension("js");
       accessableFilter = new AccessableEdgeFilter(jsEngine);
+      jsWriter = jsEngine.getContext().getWriter();
     } else {
-      beanShellEngine = new Interpreter();
+      beanShellEngine = new Interpreter(new StringReader(""), System.out, System.err, false, new JournalingNameSpace(
+          BshClassManager.createClassManager(null), "global"));
       accessableFilter = new AccessableEdgeFilter(beanShellEngine);
     }
-    Void = new VoidPrintStream();
   }
 
   public void eval(String script) {
@@ -106,8 +148,19 @@ public class ExtendedFiniteStateMachine extends FiniteStateMachine {
         logger.error("EvalError: " + e);
         logger.error(e.getCause());
         throw new RuntimeException("Execution of startup script generated an error.", e);
+      } finally {
+        getJournalingNameSpace().recount();
+      }
+    } else if (nativeVariables != null) {
+      try {
+        Script.compile(script, nativeVariables).eval();
+      } catch (ExpressionException e) {
+        logger.error("Problem when running: '" + script + "' in the native expression engine");
+        logger.error("ExpressionException: " + e);
+        throw new RuntimeException("Execution of startup script generated an error.", e);
       }
     }
+    stateChanged();
   }
 
   @Override
@@ -133,12 +186,19 @@ public class ExtendedFiniteStateMachine extends FiniteStateMachine {
     return retur;
   }
 
+  @Override
+  protected boolean isAccessible(Edge edge) {
+    return accessableFilter.acceptEdge(getModel(), edge);
+  }
+
   @Override
   public boolean hasInternalVariables() {
     if (jsEngine != null) {
       return !jsEngine.getBindings(ScriptContext.ENGINE_SCOPE).isEmpty();
     } else if (beanShellEngine != null) {
       return beanShellEngine.getNameSpace().getVariableNames().length > 1;
+    } else if (nativeVariables != null) {
+      return nativeVariables.hasValues();
     }
     return false;
   }
@@ -196,6 +256,15 @@ public class ExtendedFiniteStateMachine extends FiniteStateMachine {
         jsonObj.put("value", value);
         data.add(jsonObj);
       }
+    } else if (nativeVariables != null) {
+      for (int i = 0; i < nativeVariables.size(); i++) {
+        if (nativeVariables.getValue(i) != null) {
+          JSONObject jsonObj = new JSONObject();
+          jsonObj.put("name", nativeVariables.getName(i));
+          jsonObj.put("value", nativeVariables.getValue(i).toString());
+          data.add(jsonObj);
+        }
+      }
     }
     return data;
   }
@@ -219,6 +288,11 @@ public class ExtendedFiniteStateMachine extends FiniteStateMachine {
           return dataTable.get(dataName).toString();
         }
       }
+    } else if (nativeVariables != null) {
+      Object value = nativeVariables.getValue(dataName);
+      if (value != null) {
+        return value.toString();
+      }
     }
     return "";
   }
@@ -244,49 +318,105 @@ public class ExtendedFiniteStateMachine extends FiniteStateMachine {
         res = beanShellEngine.eval(action);
       } catch (EvalError e) {
         throw new InvalidDataException("The action: '" + action + "', does not evaluate correctly. Detail: " + e.getMessage());
+      } finally {
+        getJournalingNameSpace().recount();
+      }
+    } else if (nativeVariables != null) {
+      try {
+        res = Script.compile(action, nativeVariables).eval();
+      } catch (ExpressionException e) {
+        throw new InvalidDataException("The action: '" + action + "', does not evaluate correctly. Detail: " + e.getMessage());
       }
     }
+    stateChanged();
     return res.toString();
   }
 
   @Override
   public String getCurrentDataString() {
-    String retur = "";
+    StringBuilder retur = new StringBuilder();
 
     if (jsEngine != null) {
       Set<Entry<String, Object>> dataTable = getCurrentJsEngineData();
       for (Entry<String, Object> entry : dataTable) {
-        if (!entry.getKey().equals("println") && !entry.getKey().equals("print") && !entry.getKey().equals("context"))
-          retur += entry.getKey() + "=" + entry.getValue() + ";";
+        if (isJsData(entry.getKey())) retur.append(entry.getKey()).append('=').append(entry.getValue()).append(';');
       }
     } else if (beanShellEngine != null) {
       Hashtable<String, Object> dataTable = getCurrentBeanShellData();
       Enumeration<String> e = dataTable.keys();
       while (e.hasMoreElements()) {
         String key = e.nextElement();
-        String data = "";
+        retur.append(key).append('=');
         if (dataTable.get(key) instanceof Object[]) {
-          data = Arrays.deepToString((Object[]) dataTable.get(key));
+          retur.append(Arrays.deepToString((Object[]) dataTable.get(key)));
         } else {
-          data = dataTable.get(key).toString();
+          retur.append(dataTable.get(key));
+        }
+        retur.append(';');
+      }
+    } else if (nativeVariables != null) {
+      for (int i = 0; i < nativeVariables.size(); i++) {
+        if (nativeVariables.getValue(i) != null) {
+          retur.append(nativeVariables.getName(i)).append('=').append(nativeVariables.getValue(i)).append(';');
         }
-        retur += key + "=" + data + ";";
       }
     }
+    return retur.toString();
+  }
+
+  /**
+   * The fingerprint of the data is the sum of the fingerprints of the variables. For BeanShell it
+   * is kept up to date by the name space as variables are written, as long as all writes pass
+   * through it, and for the native expressions by the variables. For Java Script only the variables
+   * that changed since the last time are fingerprinted again. Variables holding objects may change
+   * without being written, so while there are any, the fingerprint is summed from scratch.
+   */
+  @Override
+  public long getDataFingerprint() {
+    long retur = 0;
+    if (jsEngine != null) {
+      journalJsBindings();
+      if (jsMutableValues > 0) {
+        jsFingerprint = 0;
+        for (Entry<String, Object> entry : jsData.entrySet()) {
+          jsFingerprint += getFingerprint(entry.getKey(), entry.getValue());
+        }
+      }
+      retur = jsFingerprint;
+    } else if (beanShellEngine != null) {
+      JournalingNameSpace ns = getJournalingNameSpace();
+      if (!journaledScripts || ns.hasMutableValues()) {
+        ns.recount();
+      }
+      retur = ns.getFingerprint();
+    } else if (nativeVariables != null) {
+      retur = nativeVariables.getFingerprint();
+    }
     return retur;
   }
 
+  /**
+   * @return the fingerprint of a single variable
+   */
+  static long getFingerprint(String name, Object value) {
+    return Util.getFingerprint(name, value instanceof Primitive ? Primitive.unwrap(value) : value);
+  }
+
   @Override
   public boolean walkEdge(Edge edge) {
     boolean hasWalkedEdge = super.walkEdge(edge);
     if (hasWalkedEdge) {
       if (hasAction(edge)) {
-        PrintStream ps = System.out;
-        System.setOut(Void);
+        setQuiet(true);
 
         if (jsEngine != null) {
           try {
-            jsEngine.eval(getAction(edge));
+            CompiledScript action = compileJsAction(edge);
+            if (action == null) {
+              jsEngine.eval(getAction(edge));
+            } else {
+              action.eval();
+            }
           } catch (ScriptException e) {
             logger.error("Problem when running: '" + getAction(edge) + "' in Java Script engine");
             logger.error("EvalError: " + e);
@@ -294,11 +424,11 @@ public class ExtendedFiniteStateMachine extends FiniteStateMachine {
             throw new RuntimeException("Malformed action sequence\n\t" + edge + "\n\tAction sequence: " + edge.getActionsKey()
                 + "\n\tJava Script error message: '" + e.getMessage() + "'\nDetails: " + e.getCause());
           } finally {
-            System.setOut(ps);
+            setQuiet(isCalculatingPath());
           }
         } else if (beanShellEngine != null) {
           try {
-            beanShellEngine.eval(getAction(edge));
+            compileBeanShellAction(edge).eval(beanShellEngine);
           } catch (EvalError e) {
             logger.error("Problem when running: '" + getAction(edge) + "' in BeanShell");
             logger.error("EvalError: " + e);
@@ -306,14 +436,100 @@ public class ExtendedFiniteStateMachine extends FiniteStateMachine {
             throw new RuntimeException("Malformed action sequence\n\t" + edge + "\n\tAction sequence: " + edge.getActionsKey()
                 + "\n\tBeanShell error message: '" + e.getMessage() + "'\nDetails: " + e.getCause());
           } finally {
-            System.setOut(ps);
+            setQuiet(isCalculatingPath());
+          }
+        } else if (nativeVariables != null) {
+          try {
+            compileNativeAction(edge).eval();
+          } catch (ExpressionException e) {
+            logger.error("Problem when running: '" + getAction(edge) + "' in the native expression engine");
+            logger.error("ExpressionException: " + e);
+            throw new RuntimeException("Malformed action sequence\n\t" + edge + "\n\tAction sequence: " + edge.getActionsKey()
+                + "\n\tExpression error message: '" + e.getMessage() + "'");
+          } finally {
+            setQuiet(isCalculatingPath());
           }
         }
+        stateChanged();
       }
     }
     return hasWalkedEdge;
   }
 
+  @Override
+  public void setModel(Graph model) {
+    super.setModel(model);
+    journaledScripts = true;
+    for (Edge edge : model.getEdges()) {
+      accessableFilter.compileGuard(edge);
+      if (beanShellEngine != null && !edge.getGuardKey().isEmpty()) {
+        try {
+          journaledScripts &= accessableFilter.compileBeanShellGuard(edge).hasOnlyPlainAssignments();
+        } catch (EvalError e) {
+          // Already reported by compileGuard
+        }
+      }
+      if (!hasAction(edge)) {
+        continue;
+      }
+      if (jsEngine != null) {
+        try {
+          compileJsAction(edge);
+        } catch (ScriptException e) {
+          throw new RuntimeException("Malformed action sequence\n\t" + edge + "\n\tAction sequence: " + edge.getActionsKey()
+              + "\n\tJava Script error message: '" + e.getMessage() + "'");
+        }
+      } else if (beanShellEngine != null) {
+        try {
+          journaledScripts &= compileBeanShellAction(edge).hasOnlyPlainAssignments();
+        } catch (EvalError e) {
+          throw new RuntimeException("Malformed action sequence\n\t" + edge + "\n\tAction sequence: " + edge.getActionsKey()
+              + "\n\tBeanShell error message: '" + e.getMessage() + "'");
+        }
+      } else if (nativeVariables != null) {
+        try {
+          compileNativeAction(edge);
+        } catch (ExpressionException e) {
+          throw new RuntimeException("Malformed action sequence\n\t" + edge + "\n\tAction sequence: " + edge.getActionsKey()
+              + "\n\tExpression error message: '" + e.getMessage() + "'");
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the compiled action, or null if the engine can not compile scripts
+   */
+  private CompiledScript compileJsAction(Edge edge) throws ScriptException {
+    if (!(jsEngine instanceof Compilable)) {
+      return null;
+    }
+    CompiledScript action = jsActions.get(getAction(edge));
+    if (action == null) {
+      action = ((Compilable) jsEngine).compile(getAction(edge));
+      jsActions.put(getAction(edge), action);
+    }
+    return action;
+  }
+
+  private BeanShellScript compileBeanShellAction(Edge edge) throws EvalError {
+    BeanShellScript action = beanShellActions.get(getAction(edge));
+    if (action == null) {
+      action = new BeanShellScript(getAction(edge));
+      beanShellActions.put(getAction(edge), action);
+    }
+    return action;
+  }
+
+  private Script compileNativeAction(Edge edge) throws ExpressionException {
+    Script action = nativeActions.get(getAction(edge));
+    if (action == null) {
+      action = Script.compile(getAction(edge), nativeVariables);
+      nativeActions.put(getAction(edge), action);
+    }
+    return action;
+  }
+
   private String getAction(Edge edge) {
     return (edge == null ? "" : edge.getActionsKey());
   }
@@ -325,16 +541,183 @@ public class ExtendedFiniteStateMachine extends FiniteStateMachine {
   @Override
   protected void track() {
     super.track();
-    if (jsEngine != null) {} else if (beanShellEngine != null) {
-      namespaceStack.push(new CannedNameSpace(beanShellEngine.getNameSpace()));
+    if (jsEngine != null) {
+      journalJsBindings();
+      jsMarks.push(jsJournal.size());
+    } else if (beanShellEngine != null) {
+      JournalingNameSpace ns = getJournalingNameSpace();
+      if (journaledScripts && ns.isJournalable()) {
+        namespaceStack.push(new NameSpaceMark(journal.size(), null));
+      } else {
+        namespaceStack.push(new NameSpaceMark(journal.size(), new CannedNameSpace(ns)));
+      }
+      ns.setJournal(journal);
+    } else if (nativeVariables != null) {
+      variablesStack.push(nativeVariables.save());
     }
   }
 
   @Override
   protected void popVertex() {
     super.popVertex();
-    if (jsEngine != null) {} else if (beanShellEngine != null) {
-      beanShellEngine.setNameSpace((namespaceStack.pop()).unpack());
+    if (jsEngine != null) {
+      rollbackJsBindings(jsMarks.peek());
+      jsMarks.pop();
+      if (jsMarks.isEmpty()) {
+        jsJournal.clear();
+      }
+    } else if (beanShellEngine != null) {
+      NameSpaceMark mark = namespaceStack.pop();
+      if (mark.canned == null) {
+        getJournalingNameSpace().rollback(mark.position);
+      } else {
+        journal.subList(mark.position, journal.size()).clear();
+        JournalingNameSpace ns = (JournalingNameSpace) mark.canned.unpack();
+        ns.recount();
+        beanShellEngine.setNameSpace(ns);
+      }
+      if (namespaceStack.isEmpty()) {
+        journal.clear();
+        getJournalingNameSpace().setJournal(null);
+      } else {
+        getJournalingNameSpace().setJournal(journal);
+      }
+    } else if (nativeVariables != null) {
+      nativeVariables.restore(variablesStack.pop());
+    }
+    stateChanged();
+  }
+
+  private boolean isJsData(String key) {
+    return !key.equals("println") && !key.equals("print") && !key.equals("context");
+  }
+
+  /**
+   * The previous value of a Java Script variable, as it was before a change was journaled.
+   */
+  private static class JsChange {
+    private final String key;
+    private final boolean existed;
+    private final Object value;
+
+    JsChange(String key, boolean existed, Object value) {
+      this.key = key;
+      this.existed = existed;
+      this.value = value;
+    }
+  }
+
+  /**
+   * Journals the variables of the Java Script engine that changed since they were last journaled.
+   * The engine does not let writes to its global variables be intercepted, the way the BeanShell
+   * name space does, so the changes are found by comparing with the values seen last time. Only the
+   * changed variables are journaled.
+   */
+  private void journalJsBindings() {
+    Bindings bindings = jsEngine.getBindings(ScriptContext.ENGINE_SCOPE);
+    int seen = 0;
+    for (Entry<String, Object> entry : bindings.entrySet()) {
+      String key = entry.getKey();
+      if (!isJsData(key)) {
+        continue;
+      }
+      seen++;
+      Object value = entry.getValue();
+      Object previous = jsData.get(key);
+      boolean existed = previous != null || jsData.containsKey(key);
+      if (!existed || (previous == null ? value != null : !previous.equals(value))) {
+        if (!jsMarks.isEmpty()) {
+          jsJournal.add(new JsChange(key, existed, previous));
+        }
+        setJsData(key, existed, previous, true, value);
+        checkJsValue(key, value);
+      }
+    }
+    if (seen != jsData.size()) {
+      for (String key : new ArrayList<String>(jsData.keySet())) {
+        if (!bindings.containsKey(key)) {
+          Object previous = jsData.get(key);
+          if (!jsMarks.isEmpty()) {
+            jsJournal.add(new JsChange(key, true, previous));
+          }
+          setJsData(key, true, previous, false, null);
+        }
+      }
+    }
+  }
+
+  /**
+   * Sets, or removes, a variable in the values seen, and keeps their fingerprint up to date.
+   */
+  private void setJsData(String key, boolean existed, Object previous, boolean exists, Object value) {
+    if (existed) {
+      jsFingerprint -= getFingerprint(key, previous);
+      if (isJsMutable(previous)) jsMutableValues--;
+    }
+    if (exists) {
+      jsData.put(key, value);
+      jsFingerprint += getFingerprint(key, value);
+      if (isJsMutable(value)) jsMutableValues++;
+    } else {
+      jsData.remove(key);
+    }
+  }
+
+  private static boolean isJsMutable(Object value) {
+    return !(value == null || value instanceof CharSequence || value instanceof Number || value instanceof Boolean || value instanceof Character);
+  }
+
+  /**
+   * Undoes the journaled changes back to the position, in the engine as well as in the values seen.
+   */
+  private void rollbackJsBindings(int position) {
+    journalJsBindings();
+    Bindings bindings = jsEngine.getBindings(ScriptContext.ENGINE_SCOPE);
+    for (int i = jsJournal.size() - 1; i >= position; i--) {
+      JsChange change = jsJournal.remove(i);
+      Object value = jsData.get(change.key);
+      setJsData(change.key, value != null || jsData.containsKey(change.key), value, change.existed, change.value);
+      if (change.existed) {
+        bindings.put(change.key, change.value);
+      } else {
+        bindings.remove(change.key);
+      }
+    }
+  }
+
+  /**
+   * Objects and arrays are journaled by reference, so changes made inside them are not rolled back
+   * when backtracking. Warns once per variable holding one. Functions are not warned about.
+   */
+  private void checkJsValue(String key, Object value) {
+    if (!isJsMutable(value) || !jsCheckedObjects.add(key)) {
+      return;
+    }
+    try {
+      if ("function".equals(jsEngine.eval("typeof " + key))) {
+        return;
+      }
+    } catch (ScriptException e) {
+      logger.debug("Could not tell the type of: " + key + ": " + e.getMessage());
+    }
+    logger.warn("The Java Script variable: " + key + ", holds an object. Changes made inside it are not rolled back when backtracking.");
+  }
+
+  private JournalingNameSpace getJournalingNameSpace() {
+    return (JournalingNameSpace) beanShellEngine.getNameSpace();
+  }
+
+  /**
+   * A position in the journal of the name space to roll back to. If the writes after the position
+   * can not all be journaled, the whole name space is canned instead.
+   */
+  private static class NameSpaceMark {
+    final int position;
+    final CannedNameSpace canned;
+
+    NameSpaceMark(int position, CannedNameSpace canned) {
+      this.position = position;
+      this.canned = canned;
     }
   }
 
@@ -370,17 +753,28 @@ public class ExtendedFiniteStateMachine extends FiniteStateMachine {
   @Override
   public void setCalculatingPath(boolean calculatingPath) {
     super.setCalculatingPath(calculatingPath);
-    if (calculatingPath && this.oldPrintStream != System.out) {
-      this.oldPrintStream = System.out;
-      System.setOut(new VoidPrintStream());
-    } else if (!calculatingPath && this.oldPrintStream != System.out) {
-      System.setOut(this.oldPrintStream);
+    setQuiet(calculatingPath);
+  }
+
+  /**
+   * Silences, or restores, the output of the script engine of this machine. Only output written by
+   * the engine itself, like print(), is affected. The System.out of the process is left alone, so
+   * that several machines can run side by side.
+   */
+  private void setQuiet(boolean quiet) {
+    if (jsEngine != null) {
+      jsEngine.getContext().setWriter(quiet ? voidWriter : jsWriter);
+    } else if (beanShellEngine != null) {
+      beanShellEngine.setOut(quiet ? Void : System.out);
     }
   }
 
-  private class VoidPrintStream extends PrintStream {
+  private static class VoidPrintStream extends PrintStream {
     public VoidPrintStream() {
-      super(System.out);
+      super(new OutputStream() {
+        @Override
+        public void write(int b) {}
+      });
     }
 
     @Override
@@ -394,4 +788,8 @@ public class ExtendedFiniteStateMachine extends FiniteStateMachine {
   public boolean isBeanShellEnabled() {
     return beanShellEngine != null;
   }
+
+  public boolean isNativeEnabled() {
+    return nativeVariables != null;
+  }
 }
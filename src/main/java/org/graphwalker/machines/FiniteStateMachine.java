@@ -23,13 +23,17 @@
 
 package org.graphwalker.machines;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Map.Entry;
+import java.util.Random;
 import java.util.Set;
 import java.util.Stack;
 import java.util.Vector;
@@ -41,6 +45,8 @@ import org.graphwalker.exceptions.FoundNoEdgeException;
 import org.graphwalker.graph.AbstractElement;
 import org.graphwalker.graph.Edge;
 import org.graphwalker.graph.Graph;
+import org.graphwalker.graph.GraphSnapshot;
+import org.graphwalker.graph.Requirements;
 import org.graphwalker.graph.Vertex;
 
 /**
@@ -52,6 +58,15 @@ public class FiniteStateMachine {
   private static Logger logger = Util.setupLogger(FiniteStateMachine.class);
 
   private Graph model = null;
+  private GraphSnapshot snapshot = null;
+  private int[] vertexVisits = new int[0];
+  private int[] edgeVisits = new int[0];
+  private OrdinalSet uncoveredVertices = new OrdinalSet(0);
+  private OrdinalSet uncoveredEdges = new OrdinalSet(0);
+  private Requirements requirements = null;
+  private int[] requirementVisits = new int[0];
+  private BitSet coveredRequirements = new BitSet();
+  private int numOfCoveredRequirements = 0;
   private AbstractElement currentAbstractElement = null;
   private Vertex currentVertex = null;
   private boolean weighted = false;
@@ -61,19 +76,91 @@ public class FiniteStateMachine {
   private int numberOfEdgesTravesed = 0;
   private HashMap<String, Boolean> reqs = new HashMap<String, Boolean>();
   private boolean calculatingPath = false;
-  private int numOfCoveredEdges = 0;
-  private int numOfCoveredVertices = 0;
+  private int[][] distanceTables = new int[3][];
+  private long[] distanceVersions = new long[3];
+  private long coverageVersion = 0;
+  private SharedCoverage sharedCoverage = null;
+  private long version = 0;
+  private CoverageListener[] coverageListeners = new CoverageListener[0];
 
   private long start_time;
 
-  private Hashtable<String, Integer> associatedRequirements;
-
   public int getNumOfCoveredEdges() {
-    return numOfCoveredEdges;
+    if (model == null) {
+      return 0;
+    }
+    getSnapshot();
+    return edgeVisits.length - uncoveredEdges.size();
   }
 
   public int getNumOfCoveredVertices() {
-    return numOfCoveredVertices;
+    if (model == null) {
+      return 0;
+    }
+    getSnapshot();
+    return vertexVisits.length - uncoveredVertices.size();
+  }
+
+  /**
+   * @return the number of edges covered by this machine, or by any of the machines it shares its
+   *         coverage with
+   */
+  public int getNumOfGloballyCoveredEdges() {
+    if (sharedCoverage == null) {
+      return getNumOfCoveredEdges();
+    }
+    if (!isCalculatingPath()) {
+      return sharedCoverage.getNumOfCoveredEdges();
+    }
+    // The edges walked while calculating a path are not shared, so count the edges uncovered by all
+    getSnapshot();
+    int uncovered = 0;
+    for (int i = 0; i < uncoveredEdges.size(); i++) {
+      if (!sharedCoverage.isEdgeCovered(uncoveredEdges.get(i))) uncovered++;
+    }
+    return edgeVisits.length - uncovered;
+  }
+
+  /**
+   * @return the number of vertices covered by this machine, or by any of the machines it shares its
+   *         coverage with
+   */
+  public int getNumOfGloballyCoveredVertices() {
+    if (sharedCoverage == null) {
+      return getNumOfCoveredVertices();
+    }
+    if (!isCalculatingPath()) {
+      return sharedCoverage.getNumOfCoveredVertices();
+    }
+    getSnapshot();
+    int uncovered = 0;
+    for (int i = 0; i < uncoveredVertices.size(); i++) {
+      if (!sharedCoverage.isVertexCovered(uncoveredVertices.get(i))) uncovered++;
+    }
+    return vertexVisits.length - uncovered;
+  }
+
+  /**
+   * Shares the coverage of this machine with other machines walking the same model. Everything the
+   * machine has covered so far is added to the shared coverage, and so is every element it visits
+   * from now on, except while calculating a path.
+   */
+  public void setSharedCoverage(SharedCoverage sharedCoverage) {
+    this.sharedCoverage = sharedCoverage;
+    if (sharedCoverage == null || model == null) {
+      return;
+    }
+    Util.AbortIf(sharedCoverage.getSnapshot() != getSnapshot(), "The shared coverage is not of the model of the machine");
+    for (int i = 0; i < edgeVisits.length; i++) {
+      if (edgeVisits[i] > 0) sharedCoverage.cover(snapshot.getEdge(i));
+    }
+    for (int i = 0; i < vertexVisits.length; i++) {
+      if (vertexVisits[i] > 0) sharedCoverage.cover(snapshot.getVertex(i));
+    }
+  }
+
+  public SharedCoverage getSharedCoverage() {
+    return sharedCoverage;
   }
 
   public void setVertex(String vertexName) {
@@ -86,17 +173,7 @@ public class FiniteStateMachine {
   }
 
   public AbstractElement findElement(Integer index) {
-    for (Vertex vertex : model.getVertices()) {
-      if (vertex.getIndexKey().equals(index)) {
-        return vertex;
-      }
-    }
-    for (Edge edge : model.getEdges()) {
-      if (edge.getIndexKey().equals(index)) {
-        return edge;
-      }
-    }
-    return null;
+    return model.findElement(index);
   }
 
   public boolean hasVertex(String vertexName) {
@@ -104,12 +181,7 @@ public class FiniteStateMachine {
   }
 
   public Edge findEdge(String edgeName) {
-    for (Edge edge : model.getEdges()) {
-      if ((edge.getLabelKey()).equals(edgeName)) {
-        return edge;
-      }
-    }
-    return null;
+    return model.findEdge(edgeName);
   }
 
   public FiniteStateMachine() {
@@ -121,6 +193,11 @@ public class FiniteStateMachine {
   public void setModel(Graph model) {
     reset();
     this.model = model;
+    this.snapshot = null;
+    this.vertexVisits = new int[0];
+    this.edgeVisits = new int[0];
+    this.requirements = null;
+    this.requirementVisits = new int[0];
     setVertex(Keywords.START_NODE);
   }
 
@@ -129,12 +206,7 @@ public class FiniteStateMachine {
   }
 
   public Vertex getStartVertex() {
-    for (Vertex vertex : model.getVertices()) {
-      if (vertex.getLabelKey().equals(Keywords.START_NODE)) {
-        return vertex;
-      }
-    }
-    return null;
+    return model.findVertex(Keywords.START_NODE);
   }
 
   public String getLastEdgeName() {
@@ -155,63 +227,424 @@ public class FiniteStateMachine {
 
   public Collection<Edge> getAllEdgesExceptStartEdge() {
     Vector<Edge> list = new Vector<Edge>(model.getEdges());
-    Edge e = (Edge) model.getOutEdges(getStartVertex()).toArray()[0];
-    list.remove(e);
+    GraphSnapshot snapshot = getSnapshot();
+    list.remove(snapshot.getEdge(snapshot.getOutEdge(snapshot.indexOf(getStartVertex()), 0)));
     return list;
   }
 
   public Set<Edge> getCurrentOutEdges() throws FoundNoEdgeException {
-    Set<Edge> retur = new HashSet<Edge>(model.getOutEdges(currentVertex));
-    if (retur.size() == 0) {
+    GraphSnapshot snapshot = getSnapshot();
+    int vertex = snapshot.indexOf(currentVertex);
+    int degree = (vertex == -1 ? 0 : snapshot.getOutDegree(vertex));
+    if (degree == 0) {
       throw new FoundNoEdgeException("Cul-De-Sac, dead end found in '" + getCurrentVertex() + "'");
     }
+    Set<Edge> retur = new HashSet<Edge>(2 * degree);
+    for (int i = 0; i < degree; i++) {
+      retur.add(snapshot.getEdge(snapshot.getOutEdge(vertex, i)));
+    }
     return retur;
   }
 
+  /**
+   * Fills the buffer with the ordinals of the edges that can be walked from the current vertex. The
+   * buffer needs to hold at least {@link GraphSnapshot#getMaxOutDegree()} ordinals.
+   * 
+   * @return the number of ordinals written to the buffer
+   */
+  public int getCurrentOutEdges(int[] buffer) throws FoundNoEdgeException {
+    GraphSnapshot snapshot = getSnapshot();
+    int vertex = snapshot.indexOf(currentVertex);
+    int degree = (vertex == -1 ? 0 : snapshot.getOutDegree(vertex));
+    int count = 0;
+    for (int i = 0; i < degree; i++) {
+      int edge = snapshot.getOutEdge(vertex, i);
+      if (isAccessible(snapshot.getEdge(edge))) {
+        buffer[count++] = edge;
+      }
+    }
+    if (count == 0) {
+      throw new FoundNoEdgeException("Cul-De-Sac, dead end found in '" + getCurrentVertex() + "'");
+    }
+    return count;
+  }
+
+  /**
+   * @return true if the edge goes out from the current vertex, and can be walked.
+   */
+  public boolean isCurrentOutEdge(Edge edge) throws FoundNoEdgeException {
+    GraphSnapshot snapshot = getSnapshot();
+    int vertex = snapshot.indexOf(currentVertex);
+    if (vertex == -1 || snapshot.getOutDegree(vertex) == 0) {
+      throw new FoundNoEdgeException("Cul-De-Sac, dead end found in '" + getCurrentVertex() + "'");
+    }
+    int index = snapshot.indexOf(edge);
+    return index != -1 && snapshot.getSource(index) == vertex && isAccessible(edge);
+  }
+
+  /**
+   * @return true if the edge can be walked, given the current state of the machine.
+   */
+  protected boolean isAccessible(Edge edge) {
+    return true;
+  }
+
   public void setAsVisited(AbstractElement e) {
+    Requirements requirements = getRequirements();
+    int visits;
+    int[] tags;
     if (e instanceof Edge) {
-      if (e.getVisitedKey() < 1) {
-        numOfCoveredEdges++;
+      int index = indexOf((Edge) e);
+      if ((visits = ++edgeVisits[index]) > 0) {
+        uncoveredEdges.remove(index);
       }
+      tags = requirements.getEdgeRequirements(index);
     } else if (e instanceof Vertex) {
-      if (e.getVisitedKey() < 1) {
-        numOfCoveredVertices++;
+      int index = indexOf((Vertex) e);
+      if ((visits = ++vertexVisits[index]) > 0) {
+        uncoveredVertices.remove(index);
+      }
+      tags = requirements.getVertexRequirements(index);
+    } else {
+      return;
+    }
+    if (!isCalculatingPath()) {
+      coverageVersion++;
+      if (sharedCoverage != null) {
+        sharedCoverage.cover(e);
       }
     }
 
-    e.setVisitedKey(e.getVisitedKey() + 1);
-
-    if (!e.getReqTagKey().isEmpty()) {
-      Hashtable<String, Integer> reqs = getAllRequirements();
-      String[] tags = e.getReqTagKey().split(",");
-      for (String tag : tags) {
-        reqs.put(tag, reqs.get(tag) + 1);
+    for (int tag : tags) {
+      if (requirementVisits[tag]++ == 0) {
+        coveredRequirements.set(tag);
+        numOfCoveredRequirements++;
       }
     }
+
+    stateChanged();
+    for (CoverageListener listener : coverageListeners) {
+      listener.visited(e, visits);
+    }
   }
 
   public void setAsUnvisited(AbstractElement e) {
-    Integer visits = e.getVisitedKey();
-    e.setVisitedKey(e.getVisitedKey() - 1);
+    Requirements requirements = getRequirements();
+    int visits = 0;
+    int[] tags;
     if (e instanceof Edge) {
-      if (e.getVisitedKey() < 1) {
-        numOfCoveredEdges--;
+      int index = indexOf((Edge) e);
+      visits = edgeVisits[index]--;
+      if (visits - 1 < 1) {
+        uncoveredEdges.add(index);
       }
+      tags = requirements.getEdgeRequirements(index);
     } else if (e instanceof Vertex) {
-      if (e.getVisitedKey() < 1) {
-        numOfCoveredVertices--;
+      int index = indexOf((Vertex) e);
+      visits = vertexVisits[index]--;
+      if (visits - 1 < 1) {
+        uncoveredVertices.add(index);
+      }
+      tags = requirements.getVertexRequirements(index);
+    } else {
+      return;
+    }
+
+    if (visits <= 0) logger.error(e + ", has a negative number of visits");
+    if (!isCalculatingPath()) {
+      coverageVersion++;
+    }
+
+    for (int tag : tags) {
+      if (--requirementVisits[tag] == 0) {
+        coveredRequirements.clear(tag);
+        numOfCoveredRequirements--;
+      }
+    }
+
+    stateChanged();
+    for (CoverageListener listener : coverageListeners) {
+      listener.unvisited(e, visits - 1);
+    }
+  }
+
+  /**
+   * The version of the machine changes whenever its state does: when an element is visited or
+   * unvisited, when the current vertex is set, or when the data of an extended machine changes. A
+   * stop condition can cache its result for as long as the version is the same.
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * Changes the version of the machine, see {@link #getVersion()}.
+   */
+  protected void stateChanged() {
+    version++;
+  }
+
+  public void addCoverageListener(CoverageListener listener) {
+    CoverageListener[] listeners = Arrays.copyOf(coverageListeners, coverageListeners.length + 1);
+    listeners[coverageListeners.length] = listener;
+    coverageListeners = listeners;
+  }
+
+  public void removeCoverageListener(CoverageListener listener) {
+    for (int i = 0; i < coverageListeners.length; i++) {
+      if (coverageListeners[i] == listener) {
+        CoverageListener[] listeners = new CoverageListener[coverageListeners.length - 1];
+        System.arraycopy(coverageListeners, 0, listeners, 0, i);
+        System.arraycopy(coverageListeners, i + 1, listeners, i, listeners.length - i);
+        coverageListeners = listeners;
+        return;
       }
     }
+  }
+
+  private int indexOf(Edge edge) {
+    int index = getSnapshot().indexOf(edge);
+    Util.AbortIf(index == -1, "Edge not found in model: '" + edge + "'");
+    return index;
+  }
 
-    if (visits <= 0) logger.error(e + ", has a negative number in VISITED_KEY");
+  private int indexOf(Vertex vertex) {
+    int index = getSnapshot().indexOf(vertex);
+    Util.AbortIf(index == -1, "Vertex not found in model: '" + vertex + "'");
+    return index;
+  }
 
-    if (!e.getReqTagKey().isEmpty()) {
-      Hashtable<String, Integer> reqs = getAllRequirements();
-      String[] tags = e.getReqTagKey().split(",");
-      for (String tag : tags) {
-        reqs.put(tag, reqs.get(tag) - 1);
+  /**
+   * @return the number of times the element has been visited by this machine
+   */
+  public int getVisits(AbstractElement e) {
+    GraphSnapshot snapshot = getSnapshot();
+    if (e instanceof Edge) {
+      int index = snapshot.indexOf((Edge) e);
+      return (index == -1 ? 0 : edgeVisits[index]);
+    } else if (e instanceof Vertex) {
+      int index = snapshot.indexOf((Vertex) e);
+      return (index == -1 ? 0 : vertexVisits[index]);
+    }
+    return 0;
+  }
+
+  /**
+   * Returns the requirements of the model. Like the visit counters, the requirement counters are
+   * carried over by name if the requirement tags of the model have been changed.
+   */
+  protected Requirements getRequirements() {
+    Requirements current = getSnapshot().getRequirements();
+    if (current != requirements) {
+      int[] visits = new int[current.size()];
+      if (requirements != null) {
+        for (int i = 0; i < requirementVisits.length; i++) {
+          int id = current.getId(requirements.getName(i));
+          if (id != -1) visits[id] = requirementVisits[i];
+        }
+      }
+      requirementVisits = visits;
+      coveredRequirements = new BitSet(visits.length);
+      numOfCoveredRequirements = 0;
+      for (int i = 0; i < visits.length; i++) {
+        if (visits[i] > 0) {
+          coveredRequirements.set(i);
+          numOfCoveredRequirements++;
+        }
       }
+      requirements = current;
+      coverageVersion++;
     }
+    return current;
+  }
+
+  public int getNumOfRequirements() {
+    return getRequirements().size();
+  }
+
+  public int getNumOfCoveredRequirements() {
+    getRequirements();
+    return numOfCoveredRequirements;
+  }
+
+  /**
+   * @return true if any element tagged with the requirement has been visited
+   */
+  public boolean isRequirementCovered(String requirement) {
+    int id = getRequirements().getId(requirement);
+    return id != -1 && coveredRequirements.get(id);
+  }
+
+  /**
+   * @param id the id of the requirement, in the requirements of the snapshot of the model
+   * @return true if any element tagged with the requirement has been visited
+   */
+  public boolean isRequirementCovered(int id) {
+    getRequirements();
+    return coveredRequirements.get(id);
+  }
+
+  /**
+   * Returns the snapshot of the model. The visit counters of the machine are indexed by the
+   * ordinals of the snapshot, so if the model has been modified since the counters were sized,
+   * they are moved over to the new ordinals.
+   */
+  protected GraphSnapshot getSnapshot() {
+    GraphSnapshot current = model.getSnapshot();
+    if (current != snapshot) {
+      int[] vertices = new int[current.getVertexCount()];
+      int[] edges = new int[current.getEdgeCount()];
+      if (snapshot != null) {
+        for (int i = 0; i < vertexVisits.length; i++) {
+          int index = current.indexOf(snapshot.getVertex(i));
+          if (index != -1) vertices[index] = vertexVisits[i];
+        }
+        for (int i = 0; i < edgeVisits.length; i++) {
+          int index = current.indexOf(snapshot.getEdge(i));
+          if (index != -1) edges[index] = edgeVisits[i];
+        }
+      }
+      vertexVisits = vertices;
+      edgeVisits = edges;
+      uncoveredVertices = getUncovered(vertices);
+      uncoveredEdges = getUncovered(edges);
+      snapshot = current;
+      coverageVersion++;
+    }
+    return current;
+  }
+
+  private static final int UNCOVERED_EDGE = 0;
+  private static final int UNCOVERED_VERTEX = 1;
+  private static final int UNCOVERED_REQUIREMENT = 2;
+
+  /**
+   * @return the least number of edges to walk from the current vertex to cover an edge which has
+   *         not yet been covered, or Integer.MAX_VALUE if no such edge can be reached
+   */
+  public int getDistanceToUncoveredEdge() {
+    return getDistanceToUncovered(UNCOVERED_EDGE);
+  }
+
+  /**
+   * @return the least number of edges to walk from the current vertex to cover a vertex which has
+   *         not yet been covered, or Integer.MAX_VALUE if no such vertex can be reached
+   */
+  public int getDistanceToUncoveredVertex() {
+    return getDistanceToUncovered(UNCOVERED_VERTEX);
+  }
+
+  /**
+   * @return the least number of edges to walk from the current vertex to cover a requirement which
+   *         has not yet been covered, or Integer.MAX_VALUE if no such requirement can be reached
+   */
+  public int getDistanceToUncoveredRequirement() {
+    return getDistanceToUncovered(UNCOVERED_REQUIREMENT);
+  }
+
+  /**
+   * Looks up the distance from the current vertex in a table of the distances from every vertex to
+   * the nearest uncovered element of the given kind. Guards are not evaluated, so the distance is a
+   * lower bound for an extended machine.
+   */
+  private int getDistanceToUncovered(int kind) {
+    GraphSnapshot snapshot = getSnapshot();
+    Requirements requirements = getRequirements();
+    int source = snapshot.indexOf(currentVertex);
+    if (source == -1) {
+      return 0;
+    }
+    if (kind == UNCOVERED_EDGE && uncoveredEdges.size() == 0 || kind == UNCOVERED_VERTEX && uncoveredVertices.size() == 0
+        || kind == UNCOVERED_REQUIREMENT && numOfCoveredRequirements == requirements.size()) {
+      return Integer.MAX_VALUE;
+    }
+    if (distanceTables[kind] == null || distanceVersions[kind] != coverageVersion) {
+      distanceTables[kind] = getDistancesToUncovered(kind);
+      distanceVersions[kind] = coverageVersion;
+    }
+    return distanceTables[kind][source];
+  }
+
+  /**
+   * A breadth first search backwards along the in-edges, from the sources of all edges that cover
+   * an uncovered element of the given kind at once.<br>
+   * The table is built for the coverage the machine has outside of any path calculation, and is
+   * kept until that coverage changes, so it is built once per step however many nodes a search
+   * visits. The walks tracked by a path calculation are taken off the visit counters, so elements
+   * covered only by the search are still counted as uncovered. That keeps the distances a lower
+   * bound for every node of the search.
+   */
+  private int[] getDistancesToUncovered(int kind) {
+    GraphSnapshot snapshot = getSnapshot();
+    Requirements requirements = getRequirements();
+    int[] searchEdgeVisits = new int[edgeVisits.length];
+    int[] searchVertexVisits = new int[vertexVisits.length];
+    int[] searchRequirementVisits = new int[requirementVisits.length];
+    for (Edge edge : edgeStack) {
+      int index = (edge == null ? -1 : snapshot.indexOf(edge));
+      if (index == -1) continue;
+      int dest = snapshot.getDest(index);
+      searchEdgeVisits[index]++;
+      searchVertexVisits[dest]++;
+      for (int tag : requirements.getEdgeRequirements(index)) {
+        searchRequirementVisits[tag]++;
+      }
+      for (int tag : requirements.getVertexRequirements(dest)) {
+        searchRequirementVisits[tag]++;
+      }
+    }
+
+    int[] distances = new int[vertexVisits.length];
+    Arrays.fill(distances, Integer.MAX_VALUE);
+    int[] queue = new int[vertexVisits.length];
+    int head = 0;
+    int tail = 0;
+    for (int edge = 0; edge < edgeVisits.length; edge++) {
+      int dest = snapshot.getDest(edge);
+      boolean uncovered;
+      if (kind == UNCOVERED_EDGE) {
+        uncovered = edgeVisits[edge] - searchEdgeVisits[edge] <= 0;
+      } else if (kind == UNCOVERED_VERTEX) {
+        uncovered = vertexVisits[dest] - searchVertexVisits[dest] <= 0;
+      } else {
+        uncovered = hasUncovered(requirements.getEdgeRequirements(edge), searchRequirementVisits)
+            || hasUncovered(requirements.getVertexRequirements(dest), searchRequirementVisits);
+      }
+      int source = snapshot.getSource(edge);
+      if (uncovered && distances[source] != 1) {
+        distances[source] = 1;
+        queue[tail++] = source;
+      }
+    }
+    while (head < tail) {
+      int vertex = queue[head++];
+      int degree = snapshot.getInDegree(vertex);
+      for (int i = 0; i < degree; i++) {
+        int from = snapshot.getSource(snapshot.getInEdge(vertex, i));
+        if (distances[from] == Integer.MAX_VALUE) {
+          distances[from] = distances[vertex] + 1;
+          queue[tail++] = from;
+        }
+      }
+    }
+    return distances;
+  }
+
+  private boolean hasUncovered(int[] tags, int[] searchRequirementVisits) {
+    for (int tag : tags) {
+      if (requirementVisits[tag] - searchRequirementVisits[tag] <= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static OrdinalSet getUncovered(int[] visits) {
+    OrdinalSet uncovered = new OrdinalSet(visits.length);
+    for (int i = 0; i < visits.length; i++) {
+      if (visits[i] <= 0) uncovered.add(i);
+    }
+    return uncovered;
   }
 
   public void walkPath(Stack<Edge> path) {
@@ -221,16 +654,19 @@ public class FiniteStateMachine {
   }
 
   public boolean walkEdge(Edge edge) {
-    if (model.isSource(currentVertex, edge)) {
+    GraphSnapshot snapshot = getSnapshot();
+    int index = snapshot.indexOf(edge);
+    if (index != -1 && snapshot.getSource(index) == snapshot.indexOf(currentVertex)) {
       lastEdge = edge;
       if (isBacktrackPossible()) {
         track();
       }
 
-      currentVertex = model.getDest(edge);
+      currentVertex = snapshot.getVertex(snapshot.getDest(index));
       setAsVisited(lastEdge);
       setAsVisited(currentVertex);
       numberOfEdgesTravesed++;
+      stateChanged();
       logger.debug("No. of walked edges: " + numberOfEdgesTravesed);
       return true;
     } else {
@@ -289,8 +725,8 @@ public class FiniteStateMachine {
     Collection<Vertex> v = model.getVertices();
 
     int[] retur =
-        {e.size(), getEdgeCoverage(e), v.size(), getVertexCoverage(v), numberOfEdgesTravesed, getAllRequirements().size(),
-            getCoveredRequirements().size()};
+        {e.size(), getNumOfCoveredEdges(), v.size(), getNumOfCoveredVertices(), numberOfEdgesTravesed, getNumOfRequirements(),
+            getNumOfCoveredRequirements()};
     return retur;
   }
 
@@ -362,12 +798,12 @@ public class FiniteStateMachine {
     Vector<String> notCovered = new Vector<String>();
 
     for (Edge edge : model.getEdges()) {
-      if (edge.getVisitedKey() <= 0) {
+      if (getVisits(edge) <= 0) {
         notCovered.add("Edge not reached: " + edge + newLine);
       }
     }
     for (Vertex vertex : model.getVertices()) {
-      if (vertex.getVisitedKey() <= 0) {
+      if (getVisits(vertex) <= 0) {
         notCovered.add("Vertex not reached: " + vertex + newLine);
       }
     }
@@ -457,56 +893,26 @@ public class FiniteStateMachine {
     return false;
   }
 
-  private int getVertexCoverage(Collection<Vertex> modelItems) {
-    int unique = 0;
-
-    for (Vertex vertex : modelItems) {
-      if (vertex.getVisitedKey() > 0) {
-        unique++;
-      }
-    }
-    return unique;
-  }
-
-  private int getEdgeCoverage(Collection<Edge> modelItems) {
-    int unique = 0;
-
-    for (Edge edge : modelItems) {
-      if (edge.getVisitedKey() > 0) {
-        unique++;
-      }
-    }
-    return unique;
-  }
-
+  /**
+   * @return all requirements of the model, and the number of times each has been visited
+   */
   public Hashtable<String, Integer> getAllRequirements() {
-    if (associatedRequirements == null) {
-      associatedRequirements = new Hashtable<String, Integer>();
-
-      Vector<AbstractElement> abstractElements = new Vector<AbstractElement>();
-      abstractElements.addAll(getAllVertices());
-      abstractElements.addAll(getAllEdges());
-
-      for (AbstractElement abstractElement : abstractElements) {
-        String reqtags = abstractElement.getReqTagKey();
-        if (!reqtags.isEmpty()) {
-          String[] tags = reqtags.split(",");
-          for (String tag : tags) {
-            associatedRequirements.put(tag, 0);
-          }
-        }
-      }
+    Requirements requirements = getRequirements();
+    Hashtable<String, Integer> retur = new Hashtable<String, Integer>();
+    for (int i = 0; i < requirements.size(); i++) {
+      retur.put(requirements.getName(i), requirementVisits[i]);
     }
-    return associatedRequirements;
+    return retur;
   }
 
-  @SuppressWarnings("unchecked")
   public Set<String> getCoveredRequirements() {
-    Vector<Integer> notCoveredValues = new Vector<Integer>();
-    notCoveredValues.add(0);
-    Hashtable<String, Integer> allRequirements = (Hashtable<String, Integer>) getAllRequirements().clone();
-    allRequirements.values().removeAll(notCoveredValues);
-    return allRequirements.keySet();
+    Set<String> retur = new LinkedHashSet<String>();
+    for (Entry<String, Integer> requirement : getAllRequirements().entrySet()) {
+      if (requirement.getValue() > 0) {
+        retur.add(requirement.getKey());
+      }
+    }
+    return retur;
   }
 
   public String getEdgeName(Edge edge) {
@@ -524,9 +930,22 @@ public class FiniteStateMachine {
 
   public void restoreVertex() {
     if (this.vertexStore == null || this.vertexStore.size() == 0) throw new RuntimeException("Nothing to restore");
-    int prevVertex = this.vertexStore.pop();
-    if (prevVertex > edgeStack.size()) throw new RuntimeException("Cannot restore vertex from backtrack");
-    while (prevVertex < edgeStack.size()) {
+    backtrackTo(this.vertexStore.pop());
+  }
+
+  /**
+   * @return the number of walked edges that can be backtracked
+   */
+  public int getTrackedDepth() {
+    return edgeStack.size();
+  }
+
+  /**
+   * Backtracks the machine until only the given number of walked edges are left to backtrack.
+   */
+  public void backtrackTo(int depth) {
+    if (depth > edgeStack.size()) throw new RuntimeException("Cannot restore vertex from backtrack");
+    while (depth < edgeStack.size()) {
       popVertex();
     }
   }
@@ -543,10 +962,12 @@ public class FiniteStateMachine {
     if (lastEdge == null) {
       setVertex(Keywords.START_NODE);
     } else {
-      currentVertex = model.getSource(lastEdge);
+      GraphSnapshot snapshot = getSnapshot();
+      currentVertex = snapshot.getVertex(snapshot.getSource(snapshot.indexOf(lastEdge)));
     }
     lastEdge = (edgeStack.size() > 0 ? edgeStack.peek() : null);
     numberOfEdgesTravesed--;
+    stateChanged();
   }
 
   /**
@@ -580,6 +1001,7 @@ public class FiniteStateMachine {
 
   public void setCalculatingPath(boolean calculatingPath) {
     this.calculatingPath = calculatingPath;
+    coverageVersion++;
   }
 
   /**
@@ -588,39 +1010,71 @@ public class FiniteStateMachine {
    * @return
    */
   public Vector<Edge> getUncoveredEdges() {
-    Vector<Edge> retur = new Vector<Edge>();
-    for (Edge edge : getAllEdges()) {
-      if (edge.getVisitedKey() <= 0) {
-        retur.add(edge);
-      }
+    GraphSnapshot snapshot = getSnapshot();
+    Vector<Edge> retur = new Vector<Edge>(uncoveredEdges.size());
+    for (int index : uncoveredEdges.toSortedArray()) {
+      retur.add(snapshot.getEdge(index));
     }
     return retur;
   }
 
+  /**
+   * @return an edge, drawn at random among the edges which has not yet been covered, or null if
+   *         all edges are covered
+   */
+  public Edge getRandomUncoveredEdge(Random random) {
+    GraphSnapshot snapshot = getSnapshot();
+    int index = uncoveredEdges.getRandom(random);
+    return (index == -1 ? null : snapshot.getEdge(index));
+  }
+
+  /**
+   * @return an edge, drawn at random among all edges but the edge out from the Start vertex, or
+   *         null if there is no such edge
+   */
+  public Edge getRandomEdgeExceptStartEdge(Random random) {
+    GraphSnapshot snapshot = getSnapshot();
+    if (snapshot.getEdgeCount() < 2) {
+      return null;
+    }
+    int startEdge = snapshot.getOutEdge(snapshot.indexOf(getStartVertex()), 0);
+    int index = random.nextInt(snapshot.getEdgeCount() - 1);
+    return snapshot.getEdge(index < startEdge ? index : index + 1);
+  }
+
   /**
    * This functions returns a list of edges, which has been covered
    * 
    * @return
    */
   public Vector<Edge> getCoveredEdges() {
-    Vector<Edge> retur = new Vector<Edge>(getAllEdges());
-    retur.removeAll(getUncoveredEdges());
+    GraphSnapshot snapshot = getSnapshot();
+    Vector<Edge> retur = new Vector<Edge>(edgeVisits.length - uncoveredEdges.size());
+    for (int i = 0; i < edgeVisits.length; i++) {
+      if (!uncoveredEdges.contains(i)) {
+        retur.add(snapshot.getEdge(i));
+      }
+    }
     return retur;
   }
 
   public Vector<Vertex> getUncoveredVertices() {
-    Vector<Vertex> retur = new Vector<Vertex>();
-    for (Vertex vertex : getAllVertices()) {
-      if (vertex.getVisitedKey() <= 0) {
-        retur.add(vertex);
-      }
+    GraphSnapshot snapshot = getSnapshot();
+    Vector<Vertex> retur = new Vector<Vertex>(uncoveredVertices.size());
+    for (int index : uncoveredVertices.toSortedArray()) {
+      retur.add(snapshot.getVertex(index));
     }
     return retur;
   }
 
   public Vector<Vertex> getCoveredVertices() {
-    Vector<Vertex> retur = new Vector<Vertex>(getAllVertices());
-    retur.removeAll(getUncoveredVertices());
+    GraphSnapshot snapshot = getSnapshot();
+    Vector<Vertex> retur = new Vector<Vertex>(vertexVisits.length - uncoveredVertices.size());
+    for (int i = 0; i < vertexVisits.length; i++) {
+      if (!uncoveredVertices.contains(i)) {
+        retur.add(snapshot.getVertex(i));
+      }
+    }
     return retur;
   }
 
@@ -644,6 +1098,14 @@ public class FiniteStateMachine {
     return "";
   }
 
+  /**
+   * @return a hash of the data of the machine. Equal data gives equal hashes, regardless of the
+   *         order the data was written in. A machine without data returns 0.
+   */
+  public long getDataFingerprint() {
+    return 0;
+  }
+
   public boolean hasInternalVariables() {
     return false;
   }
@@ -651,23 +1113,29 @@ public class FiniteStateMachine {
   private void reset() {
     numberOfEdgesTravesed = 0;
     calculatingPath = false;
-    numOfCoveredEdges = 0;
-    numOfCoveredVertices = 0;
+    stateChanged();
+    for (CoverageListener listener : coverageListeners) {
+      listener.reset();
+    }
   }
 
   public void setVertex(Vertex vertex) {
     currentVertex = vertex;
+    stateChanged();
   }
 
   public void setAllUnvisited() {
     logger.debug("setAllUnvisited");
     reset();
-    for (Vertex vertex : model.getVertices()) {
-      vertex.setVisitedKey(0);
-    }
-    for (Edge edge : model.getEdges()) {
-      edge.setVisitedKey(0);
-    }
+    getSnapshot();
+    Arrays.fill(vertexVisits, 0);
+    Arrays.fill(edgeVisits, 0);
+    uncoveredVertices = getUncovered(vertexVisits);
+    uncoveredEdges = getUncovered(edgeVisits);
+    Arrays.fill(requirementVisits, 0);
+    coveredRequirements.clear();
+    numOfCoveredRequirements = 0;
+    coverageVersion++;
   }
 
   public AbstractElement getCurrentAbstractElement() {
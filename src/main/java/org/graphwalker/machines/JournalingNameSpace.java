@@ -0,0 +1,224 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.machines;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+
+import bsh.BshClassManager;
+import bsh.Modifiers;
+import bsh.NameSpace;
+import bsh.Primitive;
+import bsh.UtilEvalError;
+import bsh.Variable;
+
+/**
+ * A BeanShell name space that keeps a journal of the variables written through it. Before a
+ * variable is assigned, declared or unset, its previous state is appended to the journal, so that
+ * the name space can be rolled back to an earlier position of the journal by undoing only the
+ * writes made since then.<br>
+ * BeanShell writes variables from blocks, loops and methods without passing the public methods of
+ * the name space, and objects held by variables can be changed in place. The journal is only
+ * complete when neither happens, see {@link #isJournalable()} and
+ * {@link BeanShellScript#hasOnlyPlainAssignments()}.
+ */
+class JournalingNameSpace extends NameSpace {
+
+  private static final long serialVersionUID = -1586512381632545063L;
+
+  private transient ArrayList<Change> journal = null;
+  private transient int mutableValues = 0;
+  private transient long fingerprint = 0;
+
+  public JournalingNameSpace(BshClassManager classManager, String name) {
+    super(classManager, name);
+  }
+
+  /**
+   * Sets the journal to record the writes in. The journal is kept outside of the name space, so
+   * that it survives the name space being replaced by a deserialized copy. If null, the writes are
+   * not recorded.
+   */
+  public void setJournal(ArrayList<Change> journal) {
+    this.journal = journal;
+  }
+
+  /**
+   * @return true if the name space holds no methods, and no variable holds an object that can be
+   *         changed without assigning the variable.
+   */
+  public boolean isJournalable() {
+    return !hasMutableValues() && getMethodNames().length == 0;
+  }
+
+  /**
+   * @return true if a variable holds an object that can be changed without assigning the variable
+   */
+  public boolean hasMutableValues() {
+    return mutableValues > 0;
+  }
+
+  /**
+   * @return the sum of the fingerprints of the variables, as kept up to date by the writes made
+   *         through the name space
+   * @see ExtendedFiniteStateMachine#getDataFingerprint()
+   */
+  public long getFingerprint() {
+    return fingerprint;
+  }
+
+  /**
+   * Undoes the writes recorded in the journal after the position, latest first, and removes them
+   * from the journal.
+   */
+  public void rollback(int position) {
+    try {
+      while (journal.size() > position) {
+        Change change = journal.remove(journal.size() - 1);
+        Variable variable = getVariableImpl(change.name, false);
+        Object value = (variable == null ? null : unwrapVariable(variable));
+        super.unsetVariable(change.name);
+        if (change.existed) {
+          if (change.type == null) {
+            super.setVariable(change.name, change.value, false);
+          } else {
+            super.setTypedVariable(change.name, change.type, change.value, change.modifiers);
+          }
+        }
+        count(change.name, variable != null, value, change.existed, change.value);
+      }
+    } catch (UtilEvalError e) {
+      throw new RuntimeException("Unable to restore backtrack information: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Counts the mutable values, and sums the fingerprint, from scratch. Needed after the name space has been deserialized, or
+   * written by scripts that bypass the journal.
+   */
+  public void recount() {
+    mutableValues = 0;
+    fingerprint = 0;
+    try {
+      for (String name : getVariableNames()) {
+        Variable variable = getVariableImpl(name, false);
+        if (variable != null) {
+          count(name, false, null, true, unwrapVariable(variable));
+        }
+      }
+    } catch (UtilEvalError e) {
+      throw new RuntimeException("Unable to read the BeanShell name space: " + e.getMessage(), e);
+    }
+  }
+
+  @Override
+  public void setVariable(String name, Object value, boolean strictJava) throws UtilEvalError {
+    Change change = before(name);
+    super.setVariable(name, value, strictJava);
+    after(change);
+  }
+
+  @Override
+  public void setTypedVariable(String name, @SuppressWarnings("rawtypes") Class type, Object value, Modifiers modifiers) throws UtilEvalError {
+    Change change = before(name);
+    super.setTypedVariable(name, type, value, modifiers);
+    after(change);
+  }
+
+  @Override
+  public void unsetVariable(String name) {
+    Change change;
+    try {
+      change = before(name);
+    } catch (UtilEvalError e) {
+      throw new RuntimeException("Unable to read the BeanShell name space: " + e.getMessage(), e);
+    }
+    super.unsetVariable(name);
+    try {
+      after(change);
+    } catch (UtilEvalError e) {
+      throw new RuntimeException("Unable to read the BeanShell name space: " + e.getMessage(), e);
+    }
+  }
+
+  private Change before(String name) throws UtilEvalError {
+    Variable variable = getVariableImpl(name, false);
+    if (variable == null) {
+      return new Change(name, false, null, null, null);
+    }
+    return new Change(name, true, variable.getType(), unwrapVariable(variable), variable.getModifiers());
+  }
+
+  private void after(Change change) throws UtilEvalError {
+    Variable variable = getVariableImpl(change.name, false);
+    count(change.name, change.existed, change.value, variable != null, (variable == null ? null : unwrapVariable(variable)));
+    if (journal != null) {
+      journal.add(change);
+    }
+  }
+
+  private void count(String name, boolean oldExisted, Object oldValue, boolean newExists, Object newValue) {
+    if (name.equals("bsh")) {
+      return;
+    }
+    if (oldExisted) {
+      fingerprint -= ExtendedFiniteStateMachine.getFingerprint(name, oldValue);
+      if (isMutable(oldValue)) {
+        mutableValues--;
+      }
+    }
+    if (newExists) {
+      fingerprint += ExtendedFiniteStateMachine.getFingerprint(name, newValue);
+      if (isMutable(newValue)) {
+        mutableValues++;
+      }
+    }
+  }
+
+  private static boolean isMutable(Object value) {
+    return !(value == null || value instanceof Primitive || value instanceof String || value instanceof Boolean || value instanceof Character
+        || value instanceof Byte || value instanceof Short || value instanceof Integer || value instanceof Long || value instanceof Float
+        || value instanceof Double || value instanceof BigInteger || value instanceof BigDecimal);
+  }
+
+  /**
+   * The state of a variable before it was written.
+   */
+  static class Change {
+    final String name;
+    final boolean existed;
+    final Class<?> type;
+    final Object value;
+    final Modifiers modifiers;
+
+    Change(String name, boolean existed, Class<?> type, Object value, Modifiers modifiers) {
+      this.name = name;
+      this.existed = existed;
+      this.type = type;
+      this.value = value;
+      this.modifiers = modifiers;
+    }
+  }
+}
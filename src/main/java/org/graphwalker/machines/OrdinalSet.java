@@ -0,0 +1,93 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.machines;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A set of ordinals in the range [0, capacity). Adding, removing and drawing a random member are
+ * all constant time; a removed member is replaced by the last member of the set.
+ */
+class OrdinalSet {
+
+  private int[] members;
+  private int[] positions;
+  private int size = 0;
+
+  OrdinalSet(int capacity) {
+    members = new int[capacity];
+    positions = new int[capacity];
+    Arrays.fill(positions, -1);
+  }
+
+  boolean add(int ordinal) {
+    if (positions[ordinal] != -1) {
+      return false;
+    }
+    members[size] = ordinal;
+    positions[ordinal] = size++;
+    return true;
+  }
+
+  boolean remove(int ordinal) {
+    int position = positions[ordinal];
+    if (position == -1) {
+      return false;
+    }
+    int last = members[--size];
+    members[position] = last;
+    positions[last] = position;
+    positions[ordinal] = -1;
+    return true;
+  }
+
+  boolean contains(int ordinal) {
+    return positions[ordinal] != -1;
+  }
+
+  int size() {
+    return size;
+  }
+
+  int get(int index) {
+    return members[index];
+  }
+
+  /**
+   * @return the members of the set, in ascending order
+   */
+  int[] toSortedArray() {
+    int[] retur = Arrays.copyOf(members, size);
+    Arrays.sort(retur);
+    return retur;
+  }
+
+  /**
+   * @return a member drawn at random, or -1 if the set is empty
+   */
+  int getRandom(Random random) {
+    return (size == 0 ? -1 : members[random.nextInt(size)]);
+  }
+}
@@ -0,0 +1,107 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.machines;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.graphwalker.Util;
+import org.graphwalker.graph.AbstractElement;
+import org.graphwalker.graph.Edge;
+import org.graphwalker.graph.Graph;
+import org.graphwalker.graph.GraphSnapshot;
+import org.graphwalker.graph.Vertex;
+
+/**
+ * The coverage of a model, shared by several machines walking it in parallel. Each element is a bit,
+ * set by compare-and-set the first time any machine visits it, so the machines need no locking.<br>
+ * See {@link FiniteStateMachine#setSharedCoverage(SharedCoverage)}.
+ */
+public class SharedCoverage {
+
+  private final GraphSnapshot snapshot;
+  private final AtomicLongArray edges;
+  private final AtomicLongArray vertices;
+  private final AtomicInteger numOfCoveredEdges = new AtomicInteger();
+  private final AtomicInteger numOfCoveredVertices = new AtomicInteger();
+
+  public SharedCoverage(Graph model) {
+    snapshot = model.getSnapshot();
+    edges = new AtomicLongArray((snapshot.getEdgeCount() + 63) >>> 6);
+    vertices = new AtomicLongArray((snapshot.getVertexCount() + 63) >>> 6);
+  }
+
+  public GraphSnapshot getSnapshot() {
+    return snapshot;
+  }
+
+  /**
+   * Marks the element as covered.
+   * 
+   * @return true if no machine had covered the element before
+   */
+  public boolean cover(AbstractElement e) {
+    if (e instanceof Edge) {
+      int index = snapshot.indexOf((Edge) e);
+      Util.AbortIf(index == -1, "Edge not found in the shared model: '" + e + "'");
+      return set(edges, index, numOfCoveredEdges);
+    } else if (e instanceof Vertex) {
+      int index = snapshot.indexOf((Vertex) e);
+      Util.AbortIf(index == -1, "Vertex not found in the shared model: '" + e + "'");
+      return set(vertices, index, numOfCoveredVertices);
+    }
+    return false;
+  }
+
+  public boolean isEdgeCovered(int edge) {
+    return (edges.get(edge >>> 6) & (1L << edge)) != 0;
+  }
+
+  public boolean isVertexCovered(int vertex) {
+    return (vertices.get(vertex >>> 6) & (1L << vertex)) != 0;
+  }
+
+  public int getNumOfCoveredEdges() {
+    return numOfCoveredEdges.get();
+  }
+
+  public int getNumOfCoveredVertices() {
+    return numOfCoveredVertices.get();
+  }
+
+  private static boolean set(AtomicLongArray bits, int index, AtomicInteger count) {
+    int word = index >>> 6;
+    long mask = 1L << index;
+    while (true) {
+      long current = bits.get(word);
+      if ((current & mask) != 0) {
+        return false;
+      }
+      if (bits.compareAndSet(word, current, current | mask)) {
+        count.incrementAndGet();
+        return true;
+      }
+    }
+  }
+}
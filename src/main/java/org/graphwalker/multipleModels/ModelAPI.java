@@ -4,6 +4,7 @@ import java.io.File;
 
 import org.graphwalker.ModelBasedTesting;
 import org.graphwalker.generators.PathGenerator;
+import org.graphwalker.graph.Graph;
 
 /**
  * @author krikar Any test should extend this class.
@@ -27,6 +28,18 @@ public class ModelAPI {
     mbt.setWeighted(weight);
   }
 
+  /**
+   * Creates an API using an already parsed model. The model is not modified by the run, so the
+   * same instance can be shared by several APIs, also in parallel threads.
+   */
+  public ModelAPI(Graph model, boolean efsm, PathGenerator generator, boolean weight) {
+    mbt = new ModelBasedTesting();
+    mbt.setGraph(model);
+    mbt.enableExtended(efsm);
+    mbt.setGenerator(generator);
+    mbt.setWeighted(weight);
+  }
+
   public ModelAPI(String model) {
     mbt = new ModelBasedTesting();
     mbt.readGraph(model);
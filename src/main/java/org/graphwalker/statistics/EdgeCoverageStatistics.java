@@ -23,11 +23,13 @@
 
 package org.graphwalker.statistics;
 
-import java.util.HashSet;
+import java.util.BitSet;
 
+import org.graphwalker.Util;
 import org.graphwalker.graph.AbstractElement;
 import org.graphwalker.graph.Edge;
 import org.graphwalker.graph.Graph;
+import org.graphwalker.graph.GraphSnapshot;
 
 /**
  * @author Johan Tejle
@@ -35,16 +37,23 @@ import org.graphwalker.graph.Graph;
  */
 public class EdgeCoverageStatistics extends Statistics {
 
-  private int max;
-  private HashSet<String> usedEdges;
+  private GraphSnapshot snapshot;
+  private BitSet usedEdges;
+  private int numOfUsedEdges = 0;
 
   /**
    * 
    * @param model
    */
   public EdgeCoverageStatistics(Graph model) {
-    max = model.getEdges().size();
-    usedEdges = new HashSet<String>();
+    snapshot = model.getSnapshot();
+    usedEdges = new BitSet(snapshot.getEdgeCount());
+  }
+
+  private EdgeCoverageStatistics(EdgeCoverageStatistics statistics) {
+    snapshot = statistics.snapshot;
+    usedEdges = (BitSet) statistics.usedEdges.clone();
+    numOfUsedEdges = statistics.numOfUsedEdges;
   }
 
   /*
@@ -55,7 +64,13 @@ public class EdgeCoverageStatistics extends Statistics {
    */
   @Override
   public void addProgress(AbstractElement element) {
-    if (element instanceof Edge) usedEdges.add(element.toString());
+    if (element instanceof Edge) {
+      int index = snapshot.indexOf((Edge) element);
+      if (index != -1 && !usedEdges.get(index)) {
+        usedEdges.set(index);
+        numOfUsedEdges++;
+      }
+    }
   }
 
   /*
@@ -65,7 +80,7 @@ public class EdgeCoverageStatistics extends Statistics {
    */
   @Override
   public int getCurrent() {
-    return usedEdges.size();
+    return numOfUsedEdges;
   }
 
   /*
@@ -75,7 +90,22 @@ public class EdgeCoverageStatistics extends Statistics {
    */
   @Override
   public int getMax() {
-    return max;
+    return snapshot.getEdgeCount();
+  }
+
+  @Override
+  public Statistics snapshot() {
+    return new EdgeCoverageStatistics(this);
+  }
+
+  /**
+   * The edges are matched by their ordinals, which are the same for every load of the same model.
+   */
+  @Override
+  public void merge(Statistics other) {
+    Util.AbortIf(!(other instanceof EdgeCoverageStatistics) || other.getMax() != getMax(), "Can not merge " + other + " into " + this);
+    usedEdges.or(((EdgeCoverageStatistics) other).usedEdges);
+    numOfUsedEdges = usedEdges.cardinality();
   }
 
 }
@@ -23,81 +23,100 @@
 
 package org.graphwalker.statistics;
 
-import java.util.HashSet;
-import java.util.Stack;
+import java.util.Arrays;
 
+import org.graphwalker.LongHashSet;
+import org.graphwalker.Util;
 import org.graphwalker.graph.AbstractElement;
 import org.graphwalker.graph.Edge;
 import org.graphwalker.graph.Graph;
+import org.graphwalker.graph.GraphSnapshot;
 
 /**
+ * Counts the sequences of a given number of edges that have been walked, out of all sequences the
+ * model has.<br>
+ * A sequence is kept as a 64 bit key: the ordinals of its edges as the digits of a number in base
+ * (number of edges, rounded up to odd). The key is rolled forward as edges are walked. As long as
+ * the number of edges to the power of the sequence length fits in 63 bits the keys are exact, and
+ * beyond that they are hashes.
+ * 
  * @author Johan Tejle
  * 
  */
 public class EdgeSequenceCoverageStatistics extends Statistics {
 
-  private HashSet<String> usedSequences;
-  private HashSet<String> allSequences;
-  private Stack<AbstractElement> pathHistory;
+  private GraphSnapshot snapshot;
+  private LongHashSet usedSequences;
+  private int max;
   private int length;
 
+  /* Ring buffer of the ordinals of the last walked edges */
+  private int[] pathHistory;
+  private int pathStart = 0;
+  private int pathSize = 0;
+
+  private long key = 0;
+  private long base;
+  private long highestDigit;
+
   /**
    * 
    * @param model
    * @param sequenceLength
    */
-  @SuppressWarnings("unchecked")
   public EdgeSequenceCoverageStatistics(Graph model, int sequenceLength) {
     this.length = sequenceLength;
-    usedSequences = new HashSet<String>();
-    allSequences = new HashSet<String>();
-    pathHistory = new Stack<AbstractElement>();
-
-    Stack<Edge>[] possibilities = new Stack[sequenceLength];
-    for (int i = 0; i < sequenceLength; i++) {
-      possibilities[i] = new Stack<Edge>();
-    }
-    possibilities[0].addAll(model.getEdges());
-    while (possibilities[0].size() > 0) {
-      for (int i = 0; i < sequenceLength - 1; i++) {
-        if (possibilities[i].size() == 0) return;
-        if (possibilities[i + 1].size() == 0) possibilities[i + 1].addAll(model.getOutEdges(model.getDest(possibilities[i].peek())));
-      }
-      while (possibilities[sequenceLength - 1].size() > 0) {
-        allSequences.add(getSequenceName(possibilities));
-        possibilities[sequenceLength - 1].pop();
-      }
-      for (int i = sequenceLength - 1; i > 0; i--) {
-        if (possibilities[i].size() == 0) {
-          possibilities[i - 1].pop();
-        }
-      }
+    this.snapshot = model.getSnapshot();
+    usedSequences = new LongHashSet();
+    pathHistory = new int[sequenceLength];
+    base = snapshot.getEdgeCount() | 1;
+    highestDigit = 1;
+    for (int i = 1; i < sequenceLength; i++) {
+      highestDigit *= base;
     }
+    max = countSequences();
   }
 
-  /**
-   * @param possibilities
-   * @return
-   */
-  private String getSequenceName(Stack<Edge>[] possibilities) {
-    StringBuilder stringBuilder = new StringBuilder();
-    for (Stack<Edge> possibility : possibilities) {
-      stringBuilder.append(possibility.peek().hashCode());
-      stringBuilder.append(" ");
-    }
-    return stringBuilder.toString().trim();
+  private EdgeSequenceCoverageStatistics(EdgeSequenceCoverageStatistics statistics) {
+    snapshot = statistics.snapshot;
+    usedSequences = new LongHashSet();
+    usedSequences.addAll(statistics.usedSequences);
+    max = statistics.max;
+    length = statistics.length;
+    pathHistory = statistics.pathHistory.clone();
+    pathStart = statistics.pathStart;
+    pathSize = statistics.pathSize;
+    key = statistics.key;
+    base = statistics.base;
+    highestDigit = statistics.highestDigit;
   }
 
   /**
-   * @return
+   * Counts the sequences by dynamic programming over the sequence length: the number of sequences of
+   * n edges from a vertex is the sum, over its out edges, of the sequences of n - 1 edges from the
+   * destination of the edge. The count is capped at Integer.MAX_VALUE.
    */
-  private String getCurrentSequenceName() {
-    StringBuilder stringBuilder = new StringBuilder();
-    for (int i = 0; i < pathHistory.size(); i++) {
-      stringBuilder.append(pathHistory.elementAt(i).hashCode());
-      stringBuilder.append(" ");
+  private int countSequences() {
+    int vertices = snapshot.getVertexCount();
+    long[] walks = new long[vertices];
+    long[] longer = new long[vertices];
+    Arrays.fill(walks, 1);
+    long total = 0;
+    for (int n = 1; n <= length; n++) {
+      total = 0;
+      for (int v = 0; v < vertices; v++) {
+        long sum = 0;
+        for (int i = 0; i < snapshot.getOutDegree(v); i++) {
+          sum = Math.min(Integer.MAX_VALUE, sum + walks[snapshot.getDest(snapshot.getOutEdge(v, i))]);
+        }
+        longer[v] = sum;
+        total = Math.min(Integer.MAX_VALUE, total + sum);
+      }
+      long[] swap = walks;
+      walks = longer;
+      longer = swap;
     }
-    return stringBuilder.toString().trim();
+    return (int) total;
   }
 
   /*
@@ -108,14 +127,22 @@ public class EdgeSequenceCoverageStatistics extends Statistics {
    */
   @Override
   public void addProgress(AbstractElement element) {
-    if (element instanceof Edge) {
-      pathHistory.add(element);
+    if (!(element instanceof Edge)) {
+      return;
+    }
+    int edge = snapshot.indexOf((Edge) element);
+    if (edge == -1) {
+      return;
     }
-    if (pathHistory.size() > this.length) {
-      pathHistory.remove(0);
+    if (pathSize == length) {
+      key -= pathHistory[pathStart] * highestDigit;
+      pathStart = (pathStart + 1) % length;
+      pathSize--;
     }
-    if (pathHistory.size() == this.length) {
-      usedSequences.add(getCurrentSequenceName());
+    pathHistory[(pathStart + pathSize++) % length] = edge;
+    key = key * base + edge;
+    if (pathSize == length) {
+      usedSequences.add(key);
     }
   }
 
@@ -136,7 +163,23 @@ public class EdgeSequenceCoverageStatistics extends Statistics {
    */
   @Override
   public int getMax() {
-    return allSequences.size();
+    return max;
+  }
+
+  @Override
+  public Statistics snapshot() {
+    return new EdgeSequenceCoverageStatistics(this);
+  }
+
+  /**
+   * Adds the walked sequences of the other counter. The last walked edges of this counter are kept,
+   * so sequences are never joined across runs.
+   */
+  @Override
+  public void merge(Statistics other) {
+    Util.AbortIf(!(other instanceof EdgeSequenceCoverageStatistics) || ((EdgeSequenceCoverageStatistics) other).length != length
+        || ((EdgeSequenceCoverageStatistics) other).base != base, "Can not merge " + other + " into " + this);
+    usedSequences.addAll(((EdgeSequenceCoverageStatistics) other).usedSequences);
   }
 
 }
@@ -23,12 +23,15 @@
 
 package org.graphwalker.statistics;
 
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Vector;
+import java.util.BitSet;
 
+import org.graphwalker.Util;
 import org.graphwalker.graph.AbstractElement;
+import org.graphwalker.graph.Edge;
 import org.graphwalker.graph.Graph;
+import org.graphwalker.graph.GraphSnapshot;
+import org.graphwalker.graph.Requirements;
+import org.graphwalker.graph.Vertex;
 
 /**
  * @author Johan Tejle
@@ -36,30 +39,26 @@ import org.graphwalker.graph.Graph;
  */
 public class RequirementCoverageStatistics extends Statistics {
 
-  private HashSet<String> usedRequirements;
-  private HashSet<String> allRequirements;
+  private GraphSnapshot snapshot;
+  private Requirements requirements;
+  private BitSet usedRequirements;
+  private int numOfUsedRequirements = 0;
 
   /**
    * 
    * @param model
    */
   public RequirementCoverageStatistics(Graph model) {
-    usedRequirements = new HashSet<String>();
-    allRequirements = new HashSet<String>();
-
-    Vector<AbstractElement> allElements = new Vector<AbstractElement>();
-    allElements.addAll(model.getEdges());
-    allElements.addAll(model.getVertices());
-    for (AbstractElement e : allElements) {
-      if (!e.getReqTagKey().isEmpty()) {
-        appendRequirements(allRequirements, e.getReqTagKey());
-      }
-    }
+    snapshot = model.getSnapshot();
+    requirements = snapshot.getRequirements();
+    usedRequirements = new BitSet(requirements.size());
   }
 
-  private void appendRequirements(HashSet<String> set, String requirements) {
-    String[] tags = requirements.split(",");
-    Collections.addAll(set, tags);
+  private RequirementCoverageStatistics(RequirementCoverageStatistics statistics) {
+    snapshot = statistics.snapshot;
+    requirements = statistics.requirements;
+    usedRequirements = (BitSet) statistics.usedRequirements.clone();
+    numOfUsedRequirements = statistics.numOfUsedRequirements;
   }
 
   /*
@@ -70,8 +69,21 @@ public class RequirementCoverageStatistics extends Statistics {
    */
   @Override
   public void addProgress(AbstractElement element) {
-    if (element != null && !element.getReqTagKey().isEmpty()) {
-      appendRequirements(usedRequirements, element.getReqTagKey());
+    int[] tags = null;
+    if (element instanceof Edge) {
+      int index = snapshot.indexOf((Edge) element);
+      if (index != -1) tags = requirements.getEdgeRequirements(index);
+    } else if (element instanceof Vertex) {
+      int index = snapshot.indexOf((Vertex) element);
+      if (index != -1) tags = requirements.getVertexRequirements(index);
+    }
+    if (tags != null) {
+      for (int tag : tags) {
+        if (!usedRequirements.get(tag)) {
+          usedRequirements.set(tag);
+          numOfUsedRequirements++;
+        }
+      }
     }
   }
 
@@ -82,7 +94,7 @@ public class RequirementCoverageStatistics extends Statistics {
    */
   @Override
   public int getCurrent() {
-    return usedRequirements.size();
+    return numOfUsedRequirements;
   }
 
   /*
@@ -92,7 +104,22 @@ public class RequirementCoverageStatistics extends Statistics {
    */
   @Override
   public int getMax() {
-    return allRequirements.size();
+    return requirements.size();
+  }
+
+  @Override
+  public Statistics snapshot() {
+    return new RequirementCoverageStatistics(this);
+  }
+
+  /**
+   * The requirements are matched by their tags, which are the same for every load of the same model.
+   */
+  @Override
+  public void merge(Statistics other) {
+    Util.AbortIf(!(other instanceof RequirementCoverageStatistics) || other.getMax() != getMax(), "Can not merge " + other + " into " + this);
+    usedRequirements.or(((RequirementCoverageStatistics) other).usedRequirements);
+    numOfUsedRequirements = usedRequirements.cardinality();
   }
 
 }
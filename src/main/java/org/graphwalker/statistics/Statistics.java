@@ -35,4 +35,15 @@ public abstract class Statistics {
   public abstract int getCurrent();
 
   public abstract int getMax();
+
+  /**
+   * @return a copy of the counter, which later progress does not change
+   */
+  public abstract Statistics snapshot();
+
+  /**
+   * Adds the coverage counted by another counter of the same kind, of a run of the same model, to
+   * this counter.
+   */
+  public abstract void merge(Statistics other);
 }
@@ -23,10 +23,12 @@
 
 package org.graphwalker.statistics;
 
-import java.util.HashSet;
+import java.util.BitSet;
 
+import org.graphwalker.Util;
 import org.graphwalker.graph.AbstractElement;
 import org.graphwalker.graph.Graph;
+import org.graphwalker.graph.GraphSnapshot;
 import org.graphwalker.graph.Vertex;
 
 /**
@@ -35,16 +37,23 @@ import org.graphwalker.graph.Vertex;
  */
 public class VertexCoverageStatistics extends Statistics {
 
-  private int max;
-  private HashSet<String> usedVertices;
+  private GraphSnapshot snapshot;
+  private BitSet usedVertices;
+  private int numOfUsedVertices = 0;
 
   /**
    * 
    * @param model
    */
   public VertexCoverageStatistics(Graph model) {
-    max = model.getVertices().size();
-    usedVertices = new HashSet<String>();
+    snapshot = model.getSnapshot();
+    usedVertices = new BitSet(snapshot.getVertexCount());
+  }
+
+  private VertexCoverageStatistics(VertexCoverageStatistics statistics) {
+    snapshot = statistics.snapshot;
+    usedVertices = (BitSet) statistics.usedVertices.clone();
+    numOfUsedVertices = statistics.numOfUsedVertices;
   }
 
   /*
@@ -56,7 +65,11 @@ public class VertexCoverageStatistics extends Statistics {
   @Override
   public void addProgress(AbstractElement element) {
     if (element instanceof Vertex) {
-      usedVertices.add(element.toString());
+      int index = snapshot.indexOf((Vertex) element);
+      if (index != -1 && !usedVertices.get(index)) {
+        usedVertices.set(index);
+        numOfUsedVertices++;
+      }
     }
   }
 
@@ -67,7 +80,7 @@ public class VertexCoverageStatistics extends Statistics {
    */
   @Override
   public int getCurrent() {
-    return usedVertices.size();
+    return numOfUsedVertices;
   }
 
   /*
@@ -77,7 +90,22 @@ public class VertexCoverageStatistics extends Statistics {
    */
   @Override
   public int getMax() {
-    return max;
+    return snapshot.getVertexCount();
+  }
+
+  @Override
+  public Statistics snapshot() {
+    return new VertexCoverageStatistics(this);
+  }
+
+  /**
+   * The vertices are matched by their ordinals, which are the same for every load of the same model.
+   */
+  @Override
+  public void merge(Statistics other) {
+    Util.AbortIf(!(other instanceof VertexCoverageStatistics) || other.getMax() != getMax(), "Can not merge " + other + " into " + this);
+    usedVertices.or(((VertexCoverageStatistics) other).usedVertices);
+    numOfUsedVertices = usedVertices.cardinality();
   }
 
 }
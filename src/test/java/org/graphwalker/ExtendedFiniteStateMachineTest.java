@@ -23,8 +23,12 @@
 
 package org.graphwalker;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
 import junit.framework.TestCase;
 
+import org.graphwalker.exceptions.FoundNoEdgeException;
 import org.graphwalker.graph.Edge;
 import org.graphwalker.graph.Graph;
 import org.graphwalker.graph.Vertex;
@@ -85,4 +89,217 @@ public class ExtendedFiniteStateMachineTest extends TestCase {
     assertEquals("{REQ001=1, REQ004=1, REQ003=1, REQ002=2}", EFSM.getAllRequirements().toString());
     assertEquals("[REQ001, REQ004, REQ003, REQ002]", EFSM.getCoveredRequirements().toString());
   }
+
+  public void testBacktrackJournaledData() {
+    Graph g = new Graph();
+    Vertex s = Util.addVertexToGraph(g, "Start");
+    Vertex a = Util.addVertexToGraph(g, "A");
+    Vertex b = Util.addVertexToGraph(g, "B");
+    Edge init = Util.addEdgeToGraph(g, s, a, "Init", null, null, "int x=1;s=\"a\"");
+    Edge ab = Util.addEdgeToGraph(g, a, b, "AB", null, "x<3", "x++;s=s+x;y=x*2");
+    Edge ba = Util.addEdgeToGraph(g, b, a, "BA", null, null, "x+=10");
+
+    ExtendedFiniteStateMachine EFSM = new ExtendedFiniteStateMachine(false);
+    EFSM.setModel(g);
+    EFSM.walkEdge(init);
+    assertEquals("A/x=1;s=a;", EFSM.getCurrentVertexName());
+
+    EFSM.setCalculatingPath(true);
+    EFSM.storeVertex();
+    EFSM.walkEdge(ab);
+    EFSM.storeVertex();
+    EFSM.walkEdge(ba);
+    assertEquals("12", EFSM.getDataValue("x"));
+    EFSM.restoreVertex();
+    assertEquals("B", EFSM.getCurrentVertex().getLabelKey());
+    assertEquals("2", EFSM.getDataValue("x"));
+    assertEquals("4", EFSM.getDataValue("y"));
+    assertEquals("a2", EFSM.getDataValue("s"));
+    EFSM.restoreVertex();
+    assertEquals("A/x=1;s=a;", EFSM.getCurrentVertexName());
+    assertFalse(EFSM.getCurrentBeanShellData().containsKey("y"));
+    EFSM.setCalculatingPath(false);
+
+    EFSM.walkEdge(ab);
+    assertEquals("2", EFSM.getDataValue("x"));
+    assertEquals("a2", EFSM.getDataValue("s"));
+  }
+
+  public void testBacktrackCannedData() {
+    ExtendedFiniteStateMachine EFSM = new ExtendedFiniteStateMachine(false);
+    EFSM.setModel(graph);
+    EFSM.walkEdge(e1);
+    EFSM.walkEdge(e2);
+
+    EFSM.setCalculatingPath(true);
+    EFSM.storeVertex();
+    EFSM.walkEdge(e3);
+    EFSM.walkEdge(e4);
+    assertEquals("V1/x=3;y=[3];", EFSM.getCurrentVertexName());
+    EFSM.restoreVertex();
+    EFSM.setCalculatingPath(false);
+    assertEquals("V2/x=2;y=[];", EFSM.getCurrentVertexName());
+  }
+
+  public void testBacktrackJsData() {
+    Graph g = new Graph();
+    Vertex s = Util.addVertexToGraph(g, "Start");
+    Vertex a = Util.addVertexToGraph(g, "A");
+    Vertex b = Util.addVertexToGraph(g, "B");
+    Edge init = Util.addEdgeToGraph(g, s, a, "Init", null, null, "x=1;s='a';");
+    Edge ab = Util.addEdgeToGraph(g, a, b, "AB", null, "x<3", "x=x+1;s=s+x;y=x*2;");
+    Edge ba = Util.addEdgeToGraph(g, b, a, "BA", null, null, "x=x+10;");
+
+    ExtendedFiniteStateMachine EFSM = new ExtendedFiniteStateMachine(true);
+    EFSM.setModel(g);
+    EFSM.walkEdge(init);
+
+    EFSM.setCalculatingPath(true);
+    EFSM.storeVertex();
+    EFSM.walkEdge(ab);
+    EFSM.storeVertex();
+    EFSM.walkEdge(ba);
+    assertEquals(12.0, Double.parseDouble(EFSM.getDataValue("x")));
+    EFSM.restoreVertex();
+    assertEquals(2.0, Double.parseDouble(EFSM.getDataValue("x")));
+    assertEquals(4.0, Double.parseDouble(EFSM.getDataValue("y")));
+    assertEquals("a2", EFSM.getDataValue("s"));
+    EFSM.restoreVertex();
+    assertEquals(1.0, Double.parseDouble(EFSM.getDataValue("x")));
+    assertEquals("a", EFSM.getDataValue("s"));
+    assertEquals("A/x=1;s=a;", EFSM.getCurrentVertexName());
+    EFSM.setCalculatingPath(false);
+
+    EFSM.walkEdge(ab);
+    assertEquals(2.0, Double.parseDouble(EFSM.getDataValue("x")));
+  }
+
+  public void testBacktrackJsDataRemoved() {
+    Graph g = new Graph();
+    Vertex s = Util.addVertexToGraph(g, "Start");
+    Vertex a = Util.addVertexToGraph(g, "A");
+    Vertex b = Util.addVertexToGraph(g, "B");
+    Edge init = Util.addEdgeToGraph(g, s, a, "Init", null, null, "x=1;");
+    Edge ab = Util.addEdgeToGraph(g, a, b, "AB", null, null, "z=3;delete x;");
+
+    ExtendedFiniteStateMachine EFSM = new ExtendedFiniteStateMachine(true);
+    EFSM.setModel(g);
+    EFSM.walkEdge(init);
+
+    EFSM.setCalculatingPath(true);
+    EFSM.storeVertex();
+    EFSM.walkEdge(ab);
+    assertEquals("B/z=3;", EFSM.getCurrentVertexName());
+    EFSM.restoreVertex();
+    assertEquals("A/x=1;", EFSM.getCurrentVertexName());
+    EFSM.setCalculatingPath(false);
+  }
+
+  public void testActionOutputSilenced() {
+    PrintStream out = System.out;
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    PrintStream captured = new PrintStream(buffer);
+    System.setOut(captured);
+    try {
+      for (boolean usingJsEngine : new boolean[] { false, true }) {
+        Graph g = new Graph();
+        Vertex s = Util.addVertexToGraph(g, "Start");
+        Vertex a = Util.addVertexToGraph(g, "A");
+        Edge e = Util.addEdgeToGraph(g, s, a, "E", null, null, "print(\"hello\");");
+
+        ExtendedFiniteStateMachine EFSM = new ExtendedFiniteStateMachine(usingJsEngine);
+        EFSM.setModel(g);
+        EFSM.setCalculatingPath(true);
+        assertSame(captured, System.out);
+        EFSM.setCalculatingPath(false);
+        EFSM.walkEdge(e);
+        assertSame(captured, System.out);
+      }
+      captured.flush();
+      assertEquals(0, buffer.size());
+    } finally {
+      System.setOut(out);
+    }
+  }
+
+  public void testDataFingerprint() {
+    for (boolean usingJsEngine : new boolean[] { false, true }) {
+      Graph g = new Graph();
+      Vertex s = Util.addVertexToGraph(g, "Start");
+      Vertex a = Util.addVertexToGraph(g, "A");
+      Vertex b = Util.addVertexToGraph(g, "B");
+      Edge xy = Util.addEdgeToGraph(g, s, a, "XY", null, null, "x=1;y='b';");
+      Edge yx = Util.addEdgeToGraph(g, s, b, "YX", null, null, "y='b';x=1;");
+      Edge ab = Util.addEdgeToGraph(g, a, b, "AB", null, null, "x=2;");
+
+      ExtendedFiniteStateMachine first = new ExtendedFiniteStateMachine(usingJsEngine);
+      first.setModel(g);
+      ExtendedFiniteStateMachine second = new ExtendedFiniteStateMachine(usingJsEngine);
+      second.setModel(g);
+      first.walkEdge(xy);
+      second.walkEdge(yx);
+      long fingerprint = first.getDataFingerprint();
+      assertEquals(fingerprint, second.getDataFingerprint());
+
+      first.setCalculatingPath(true);
+      first.storeVertex();
+      first.walkEdge(ab);
+      assertTrue(fingerprint != first.getDataFingerprint());
+      first.restoreVertex();
+      assertEquals(fingerprint, first.getDataFingerprint());
+    }
+  }
+
+  public void testIncrementalDataFingerprint() {
+    for (int engine = 0; engine < 3; engine++) {
+      Graph g = new Graph();
+      Vertex s = Util.addVertexToGraph(g, "Start");
+      Vertex a = Util.addVertexToGraph(g, "A");
+      Vertex b = Util.addVertexToGraph(g, "B");
+      Edge init = Util.addEdgeToGraph(g, s, a, "Init", null, null, engine == 2 ? "x=1;y=true;" : "x=1;y=\"Aa\";");
+      Edge ab = Util.addEdgeToGraph(g, a, b, "AB", null, null, engine == 2 ? "x=x+1;" : "x=x+1;y=\"BB\";");
+
+      ExtendedFiniteStateMachine EFSM = new ExtendedFiniteStateMachine(engine == 1, engine == 2);
+      EFSM.setModel(g);
+      EFSM.walkEdge(init);
+      long fingerprint = EFSM.getDataFingerprint();
+      assertEquals(fingerprint, EFSM.getDataFingerprint());
+
+      EFSM.setCalculatingPath(true);
+      EFSM.storeVertex();
+      EFSM.walkEdge(ab);
+      assertTrue(fingerprint != EFSM.getDataFingerprint());
+      EFSM.restoreVertex();
+      assertEquals(fingerprint, EFSM.getDataFingerprint());
+      EFSM.setCalculatingPath(false);
+    }
+  }
+
+  public void testNativeExpressions() throws FoundNoEdgeException {
+    Graph g = new Graph();
+    Vertex s = Util.addVertexToGraph(g, "Start");
+    Vertex a = Util.addVertexToGraph(g, "A");
+    Vertex b = Util.addVertexToGraph(g, "B");
+    Edge init = Util.addEdgeToGraph(g, s, a, "Init", null, null, "int x=1;");
+    Edge ab = Util.addEdgeToGraph(g, a, b, "AB", null, "x<3", "x++;done=x==3");
+    Edge ba = Util.addEdgeToGraph(g, b, a, "BA", null, null, "x+=10");
+
+    ExtendedFiniteStateMachine EFSM = new ExtendedFiniteStateMachine(false, true);
+    EFSM.setModel(g);
+    assertFalse(EFSM.hasInternalVariables());
+    EFSM.walkEdge(init);
+    assertEquals("A/x=1;", EFSM.getCurrentVertexName());
+
+    EFSM.setCalculatingPath(true);
+    EFSM.storeVertex();
+    EFSM.walkEdge(ab);
+    assertEquals("B/x=2;done=false;", EFSM.getCurrentVertexName());
+    EFSM.walkEdge(ba);
+    assertFalse(EFSM.isCurrentOutEdge(ab));
+    EFSM.restoreVertex();
+    EFSM.setCalculatingPath(false);
+    assertEquals("A/x=1;", EFSM.getCurrentVertexName());
+    assertTrue(EFSM.isCurrentOutEdge(ab));
+    assertEquals("", EFSM.getDataValue("done"));
+  }
 }
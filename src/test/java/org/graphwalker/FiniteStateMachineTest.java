@@ -23,12 +23,18 @@
 
 package org.graphwalker;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
 import junit.framework.TestCase;
 
+import org.graphwalker.graph.AbstractElement;
 import org.graphwalker.graph.Edge;
 import org.graphwalker.graph.Graph;
 import org.graphwalker.graph.Vertex;
 import org.graphwalker.machines.FiniteStateMachine;
+import org.graphwalker.machines.SharedCoverage;
 
 public class FiniteStateMachineTest extends TestCase {
 
@@ -86,4 +92,155 @@ public class FiniteStateMachineTest extends TestCase {
     assertEquals("{REQ001=1, REQ004=1, REQ003=1, REQ002=2}", FSM.getAllRequirements().toString());
     assertEquals("[REQ001, REQ004, REQ003, REQ002]", FSM.getCoveredRequirements().toString());
   }
+
+  public void testSharedModel() {
+    FiniteStateMachine first = new FiniteStateMachine();
+    first.setModel(graph);
+    FiniteStateMachine second = new FiniteStateMachine();
+    second.setModel(graph);
+
+    first.walkEdge(e1);
+    first.walkEdge(e2);
+    first.walkEdge(e3);
+    assertEquals(2, first.getVisits(v2));
+    assertEquals(3, first.getNumOfCoveredEdges());
+    assertEquals(0, second.getVisits(v2));
+    assertEquals(0, second.getNumOfCoveredEdges());
+    assertEquals(1, second.getNumOfCoveredVertices());
+
+    second.walkEdge(e1);
+    assertEquals(1, second.getVisits(e1));
+    assertEquals(1, first.getVisits(e1));
+  }
+
+  public void testRequirementCounters() {
+    FiniteStateMachine FSM = new FiniteStateMachine();
+    FSM.setModel(graph);
+    assertEquals(4, FSM.getNumOfRequirements());
+    assertEquals(0, FSM.getNumOfCoveredRequirements());
+
+    FSM.walkEdge(e1);
+    assertEquals(2, FSM.getNumOfCoveredRequirements());
+    assertTrue(FSM.isRequirementCovered("REQ002"));
+    assertFalse(FSM.isRequirementCovered("REQ003"));
+    assertFalse(FSM.isRequirementCovered("REQ999"));
+
+    FSM.setAsUnvisited(v1);
+    assertTrue(FSM.isRequirementCovered("REQ002"));
+    FSM.setAsUnvisited(e1);
+    assertFalse(FSM.isRequirementCovered("REQ002"));
+    assertEquals(0, FSM.getNumOfCoveredRequirements());
+  }
+
+  public void testUncoveredElements() {
+    FiniteStateMachine FSM = new FiniteStateMachine();
+    FSM.setModel(graph);
+    assertEquals(4, FSM.getUncoveredEdges().size());
+    assertEquals(2, FSM.getUncoveredVertices().size());
+
+    FSM.walkEdge(e1);
+    FSM.walkEdge(e2);
+    assertEquals(2, FSM.getNumOfCoveredEdges());
+    assertEquals(3, FSM.getNumOfCoveredVertices());
+    assertEquals("[E1, E2]", Arrays.toString(labels(FSM.getCoveredEdges())));
+    assertEquals("[E3, E4]", Arrays.toString(labels(FSM.getUncoveredEdges())));
+    assertEquals(0, FSM.getUncoveredVertices().size());
+
+    Random random = new Random(1);
+    for (int i = 0; i < 20; i++) {
+      Edge edge = FSM.getRandomUncoveredEdge(random);
+      assertTrue(edge == e3 || edge == e4);
+      assertNotSame(e1, FSM.getRandomEdgeExceptStartEdge(random));
+    }
+
+    FSM.setAsUnvisited(e2);
+    FSM.setAsUnvisited(v2);
+    assertEquals(1, FSM.getNumOfCoveredEdges());
+    assertEquals(2, FSM.getNumOfCoveredVertices());
+    assertEquals("[V2]", Arrays.toString(labels(FSM.getUncoveredVertices())));
+
+    FSM.walkEdge(e4);
+    FSM.walkEdge(e2);
+    FSM.walkEdge(e3);
+    assertNull(FSM.getRandomUncoveredEdge(random));
+    assertEquals(4, FSM.getNumOfCoveredEdges());
+
+    FSM.setAllUnvisited();
+    assertEquals(0, FSM.getNumOfCoveredEdges());
+    assertEquals(4, FSM.getUncoveredEdges().size());
+  }
+
+  public void testDistanceToUncoveredEdge() {
+    Graph g = new Graph();
+    Vertex s = Util.addVertexToGraph(g, "Start");
+    Vertex v1 = Util.addVertexToGraph(g, "V1");
+    Vertex v2 = Util.addVertexToGraph(g, "V2");
+    Vertex v3 = Util.addVertexToGraph(g, "V3");
+    Edge e0 = Util.addEdgeToGraph(g, s, v1, "E0", null, null, null);
+    Edge e1 = Util.addEdgeToGraph(g, v1, v2, "E1", null, null, null);
+    Edge e2 = Util.addEdgeToGraph(g, v2, v1, "E2", null, null, null);
+    Util.addEdgeToGraph(g, v2, v3, "E3", null, null, null);
+
+    FiniteStateMachine machine = new FiniteStateMachine();
+    machine.setModel(g);
+    assertEquals(1, machine.getDistanceToUncoveredEdge());
+
+    // Edges covered only by a path calculation still count as uncovered, which keeps the distance a
+    // lower bound for the other nodes of the search
+    machine.setCalculatingPath(true);
+    machine.storeVertex();
+    machine.walkEdge(e0);
+    machine.walkEdge(e1);
+    machine.walkEdge(e2);
+    assertEquals(1, machine.getDistanceToUncoveredEdge());
+    machine.restoreVertex();
+    machine.setCalculatingPath(false);
+
+    machine.walkEdge(e0);
+    machine.walkEdge(e1);
+    assertEquals(1, machine.getDistanceToUncoveredEdge());
+    machine.walkEdge(e2);
+    assertEquals(2, machine.getDistanceToUncoveredEdge());
+  }
+
+  public void testSharedCoverage() {
+    SharedCoverage sharedCoverage = new SharedCoverage(graph);
+    FiniteStateMachine first = new FiniteStateMachine();
+    first.setModel(graph);
+    first.walkEdge(e1);
+    first.setSharedCoverage(sharedCoverage);
+    assertEquals(1, sharedCoverage.getNumOfCoveredEdges());
+    assertEquals(2, sharedCoverage.getNumOfCoveredVertices());
+
+    FiniteStateMachine second = new FiniteStateMachine();
+    second.setModel(graph);
+    second.setSharedCoverage(sharedCoverage);
+    assertEquals(0, second.getNumOfCoveredEdges());
+    assertEquals(1, second.getNumOfGloballyCoveredEdges());
+
+    second.walkEdge(e1);
+    second.walkEdge(e2);
+    assertEquals(2, first.getNumOfGloballyCoveredEdges());
+    assertEquals(3, first.getNumOfGloballyCoveredVertices());
+
+    // Edges walked while calculating a path are counted by the machine, but not shared
+    first.setCalculatingPath(true);
+    first.walkEdge(e2);
+    first.walkEdge(e3);
+    assertEquals(3, first.getNumOfGloballyCoveredEdges());
+    assertEquals(2, sharedCoverage.getNumOfCoveredEdges());
+    first.backtrackTo(0);
+    first.setCalculatingPath(false);
+    assertEquals(2, first.getNumOfGloballyCoveredEdges());
+  }
+
+  private static String[] labels(Collection<? extends AbstractElement> elements) {
+    String[] labels = new String[elements.size()];
+    int i = 0;
+    for (AbstractElement element : elements) {
+      labels[i++] = element.getLabelKey();
+    }
+    Arrays.sort(labels);
+    return labels;
+  }
 }
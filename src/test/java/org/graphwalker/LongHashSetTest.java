@@ -0,0 +1,64 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class LongHashSetTest extends TestCase {
+
+  public void testAdd() {
+    LongHashSet set = new LongHashSet();
+    assertTrue(set.isEmpty());
+    assertTrue(set.add(0));
+    assertFalse(set.add(0));
+    assertTrue(set.add(-1));
+    assertTrue(set.add(Long.MIN_VALUE));
+    assertFalse(set.add(Long.MIN_VALUE));
+    assertEquals(3, set.size());
+    assertTrue(set.contains(0));
+    assertTrue(set.contains(-1));
+    assertFalse(set.contains(1));
+
+    set.clear();
+    assertEquals(0, set.size());
+    assertFalse(set.contains(0));
+  }
+
+  public void testGrow() {
+    LongHashSet set = new LongHashSet();
+    HashSet<Long> expected = new HashSet<Long>();
+    Random random = new Random(7);
+    for (int i = 0; i < 10000; i++) {
+      long key = random.nextInt(5000);
+      assertEquals(expected.add(key), set.add(key));
+    }
+    assertEquals(expected.size(), set.size());
+    for (long key = 0; key < 5000; key++) {
+      assertEquals(expected.contains(key), set.contains(key));
+    }
+  }
+}
@@ -38,6 +38,8 @@ import org.graphwalker.exceptions.GeneratorException;
 import org.graphwalker.exceptions.InvalidDataException;
 import org.graphwalker.exceptions.StopConditionException;
 import org.graphwalker.generators.NonOptimizedShortestPath;
+import org.graphwalker.graph.Graph;
+import org.graphwalker.graph.Vertex;
 import org.jdom2.JDOMException;
 
 /**
@@ -249,4 +251,44 @@ public class ModelBasedTestingTest extends TestCase {
     assertEquals("e_EnterBaseURL", mbt.getCurrentEdgeName());
     assertEquals("v_BaseURL", mbt.getCurrentVertexName());
   }
+
+  public static class Executor {
+    public StringBuilder calls = new StringBuilder();
+
+    public void e_init() {
+      calls.append("e_init;");
+    }
+
+    public void v_A() {
+      calls.append("v_A;");
+    }
+
+    public void e_Param(String parameter) {
+      calls.append("e_Param " + parameter + ";");
+    }
+
+    public void v_B() {
+      calls.append("v_B;");
+    }
+  }
+
+  public void testExecutePath() throws StopConditionException, InterruptedException {
+    Graph graph = new Graph();
+    Vertex start = Util.addVertexToGraph(graph, "Start");
+    Vertex a = Util.addVertexToGraph(graph, "v_A");
+    Vertex b = Util.addVertexToGraph(graph, "v_B");
+    Util.addVertexToGraph(graph, "v_Unreached");
+    Util.addEdgeToGraph(graph, start, a, "e_init", null, null, null);
+    Util.addEdgeToGraph(graph, a, b, "e_Param", "x", null, null);
+    Util.addEdgeToGraph(graph, b, a, null, null, null, null);
+
+    ModelBasedTesting mbt = new ModelBasedTesting();
+    mbt.setGraph(graph);
+    mbt.enableExtended(false);
+    mbt.setGenerator(new NonOptimizedShortestPath(Util.getCondition(mbt.getMachine(), Keywords.CONDITION_EDGE_COVERAGE, "100")));
+
+    Executor executor = new Executor();
+    mbt.executePath(executor);
+    assertEquals("e_init;v_A;e_Param x;v_B;v_A;", executor.calls.toString());
+  }
 }
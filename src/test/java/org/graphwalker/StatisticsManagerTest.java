@@ -25,6 +25,7 @@ package org.graphwalker;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.util.Map;
 
 import junit.framework.TestCase;
 
@@ -34,6 +35,7 @@ import org.graphwalker.graph.Vertex;
 import org.graphwalker.statistics.EdgeCoverageStatistics;
 import org.graphwalker.statistics.EdgeSequenceCoverageStatistics;
 import org.graphwalker.statistics.RequirementCoverageStatistics;
+import org.graphwalker.statistics.Statistics;
 import org.graphwalker.statistics.VertexCoverageStatistics;
 
 /**
@@ -170,6 +172,108 @@ public class StatisticsManagerTest extends TestCase {
                 "<\\?xml version=\\\"1.0\\\" encoding=\\\"UTF-8\\\"\\?>\\s+<Statistics><Statistic><Data type=\"Edge Coverage\" value=\"0\" max=\"4\" /><Data type=\"State Coverage\" value=\"1\" max=\"3\" /><Data type=\"3-Edge Sequence Coverage\" value=\"0\" max=\"10\" /><Data type=\"2-Edge Sequence Coverage\" value=\"0\" max=\"6\" /><Data type=\"Requirements Coverage\" value=\"0\" max=\"4\" /></Statistic><Statistic><Data type=\"Edge Coverage\" value=\"1\" max=\"4\" /><Data type=\"State Coverage\" value=\"1\" max=\"3\" /><Data type=\"3-Edge Sequence Coverage\" value=\"0\" max=\"10\" /><Data type=\"2-Edge Sequence Coverage\" value=\"0\" max=\"6\" /><Data type=\"Requirements Coverage\" value=\"2\" max=\"4\" /></Statistic><Statistic><Data type=\"Edge Coverage\" value=\"1\" max=\"4\" /><Data type=\"State Coverage\" value=\"2\" max=\"3\" /><Data type=\"3-Edge Sequence Coverage\" value=\"0\" max=\"10\" /><Data type=\"2-Edge Sequence Coverage\" value=\"0\" max=\"6\" /><Data type=\"Requirements Coverage\" value=\"2\" max=\"4\" /></Statistic><Statistic><Data type=\"Edge Coverage\" value=\"2\" max=\"4\" /><Data type=\"State Coverage\" value=\"2\" max=\"3\" /><Data type=\"3-Edge Sequence Coverage\" value=\"0\" max=\"10\" /><Data type=\"2-Edge Sequence Coverage\" value=\"1\" max=\"6\" /><Data type=\"Requirements Coverage\" value=\"3\" max=\"4\" /></Statistic><Statistic><Data type=\"Edge Coverage\" value=\"2\" max=\"4\" /><Data type=\"State Coverage\" value=\"3\" max=\"3\" /><Data type=\"3-Edge Sequence Coverage\" value=\"0\" max=\"10\" /><Data type=\"2-Edge Sequence Coverage\" value=\"1\" max=\"6\" /><Data type=\"Requirements Coverage\" value=\"4\" max=\"4\" /></Statistic><Statistic><Data type=\"Edge Coverage\" value=\"3\" max=\"4\" /><Data type=\"State Coverage\" value=\"3\" max=\"3\" /><Data type=\"3-Edge Sequence Coverage\" value=\"1\" max=\"10\" /><Data type=\"2-Edge Sequence Coverage\" value=\"2\" max=\"6\" /><Data type=\"Requirements Coverage\" value=\"4\" max=\"4\" /></Statistic><Statistic><Data type=\"Edge Coverage\" value=\"4\" max=\"4\" /><Data type=\"State Coverage\" value=\"3\" max=\"3\" /><Data type=\"3-Edge Sequence Coverage\" value=\"2\" max=\"10\" /><Data type=\"2-Edge Sequence Coverage\" value=\"3\" max=\"6\" /><Data type=\"Requirements Coverage\" value=\"4\" max=\"4\" /></Statistic></Statistics>\\s+"));
   }
 
+  public void testEdgeSequences() {
+    EdgeSequenceCoverageStatistics statistics = new EdgeSequenceCoverageStatistics(graph, 4);
+    assertEquals(16, statistics.getMax());
+    statistics.addProgress(start);
+    statistics.addProgress(e1);
+    statistics.addProgress(v1);
+    statistics.addProgress(e2);
+    statistics.addProgress(e3);
+    assertEquals(0, statistics.getCurrent());
+    statistics.addProgress(e4);
+    assertEquals(1, statistics.getCurrent());
+    statistics.addProgress(e2);
+    statistics.addProgress(e3);
+    statistics.addProgress(e4);
+    assertEquals(4, statistics.getCurrent());
+    statistics.addProgress(e2);
+    assertEquals(4, statistics.getCurrent());
+
+    Graph loops = new Graph();
+    Vertex vertex = Util.addVertexToGraph(loops, "Start");
+    for (int i = 0; i < 10; i++) {
+      Util.addEdgeToGraph(loops, vertex, vertex, "E" + i, null, null, null);
+    }
+    assertEquals(Integer.MAX_VALUE, new EdgeSequenceCoverageStatistics(loops, 20).getMax());
+  }
+
+  public void testMergeCounters() {
+    StatisticsManager first = new StatisticsManager();
+    first.addStatisicsCounter("Edge Coverage", new EdgeCoverageStatistics(graph));
+    first.addStatisicsCounter("2-Edge Sequence Coverage", new EdgeSequenceCoverageStatistics(graph, 2));
+    first.addStatisicsCounter("Requirements Coverage", new RequirementCoverageStatistics(graph));
+    first.addProgress(e1);
+    first.addProgress(e2);
+    Map<String, Statistics> snapshot = first.snapshotCounters();
+    first.addProgress(e3);
+    assertEquals(2, snapshot.get("Edge Coverage").getCurrent());
+    assertEquals(3, first.snapshotCounters().get("Edge Coverage").getCurrent());
+
+    StatisticsManager second = new StatisticsManager();
+    second.addStatisicsCounter("Edge Coverage", new EdgeCoverageStatistics(graph));
+    second.addStatisicsCounter("2-Edge Sequence Coverage", new EdgeSequenceCoverageStatistics(graph, 2));
+    second.addProgress(e3);
+    second.addProgress(e4);
+    second.mergeCounters(snapshot);
+
+    Map<String, Statistics> merged = second.snapshotCounters();
+    assertEquals(4, merged.get("Edge Coverage").getCurrent());
+    assertEquals(2, merged.get("2-Edge Sequence Coverage").getCurrent());
+    assertEquals(3, merged.get("Requirements Coverage").getCurrent());
+
+    try {
+      merged.get("Edge Coverage").merge(new VertexCoverageStatistics(graph));
+      fail("Expected a RuntimeException");
+    } catch (RuntimeException e) {
+    }
+  }
+
+  public void testSampledProgress() {
+    StatisticsManager statisticsManager = new StatisticsManager();
+    statisticsManager.addStatisicsCounter("Edge Coverage", new EdgeCoverageStatistics(graph));
+    statisticsManager.setSampleInterval(60000);
+    statisticsManager.addProgress(start);
+    statisticsManager.addProgress(e1);
+    statisticsManager.addProgress(v1);
+    statisticsManager.addProgress(e2);
+    assertEquals(
+        true,
+        statisticsManager
+            .getFullProgressXml()
+            .matches(
+                "<\\?xml version=\\\"1.0\\\" encoding=\\\"UTF-8\\\"\\?>\\s+<Statistics><Statistic><Data type=\"Edge Coverage\" value=\"0\" max=\"4\" /></Statistic><Statistic><Data type=\"Edge Coverage\" value=\"2\" max=\"4\" /></Statistic></Statistics>\\s+"));
+  }
+
+  public void testRecordingProgress() {
+    StatisticsManager statisticsManager = new StatisticsManager(false);
+    statisticsManager.addStatisicsCounter("Edge Coverage", new EdgeCoverageStatistics(graph));
+    statisticsManager.addProgress(start);
+    statisticsManager.addProgress(e1);
+    assertEquals(
+        true,
+        statisticsManager
+            .getFullProgressXml()
+            .matches(
+                "<\\?xml version=\\\"1.0\\\" encoding=\\\"UTF-8\\\"\\?>\\s+<Statistics><Statistic><Data type=\"Edge Coverage\" value=\"1\" max=\"4\" /></Statistic></Statistics>\\s+"));
+    statisticsManager.setRecordingProgress(true);
+    statisticsManager.addProgress(v1);
+    statisticsManager.addProgress(e2);
+    assertEquals(
+        true,
+        statisticsManager
+            .getFullProgressXml()
+            .matches(
+                "<\\?xml version=\\\"1.0\\\" encoding=\\\"UTF-8\\\"\\?>\\s+<Statistics><Statistic><Data type=\"Edge Coverage\" value=\"1\" max=\"4\" /></Statistic><Statistic><Data type=\"Edge Coverage\" value=\"1\" max=\"4\" /></Statistic><Statistic><Data type=\"Edge Coverage\" value=\"2\" max=\"4\" /></Statistic></Statistics>\\s+"));
+    statisticsManager.close();
+    assertEquals(
+        true,
+        statisticsManager
+            .getFullProgressXml()
+            .matches(
+                "<\\?xml version=\\\"1.0\\\" encoding=\\\"UTF-8\\\"\\?>\\s+<Statistics><Statistic><Data type=\"Edge Coverage\" value=\"2\" max=\"4\" /></Statistic></Statistics>\\s+"));
+  }
+
   public void testFullProgressReport() {
     StatisticsManager statisticsManager = new StatisticsManager();
     statisticsManager.addStatisicsCounter("State Coverage", new VertexCoverageStatistics(graph));
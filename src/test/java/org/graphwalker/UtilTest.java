@@ -73,6 +73,23 @@ public class UtilTest extends TestCase {
     assertEquals("Vertex: 'V1', INDEX=1", v1.toString());
   }
 
+  public void testSplitSeed() {
+    assertEquals(Util.splitSeed(42, 0), Util.splitSeed(42, 0));
+    assertFalse(Util.splitSeed(42, 0) == Util.splitSeed(42, 1));
+    assertFalse(Util.splitSeed(42, 0) == Util.splitSeed(43, 0));
+  }
+
+  public void testHash64() {
+    assertEquals("Aa".hashCode(), "BB".hashCode());
+    assertFalse(Util.hash64("Aa") == Util.hash64("BB"));
+    assertEquals(Long.valueOf(0).hashCode(), Long.valueOf(0x100000001L).hashCode());
+    assertFalse(Util.hash64(0L) == Util.hash64(0x100000001L));
+    assertEquals(Util.hash64(2), Util.hash64(2.0));
+    assertEquals(Util.hash64(new int[] {1, 2}), Util.hash64(new Integer[] {1, 2}));
+    assertFalse(Util.hash64(new int[] {1, 2}) == Util.hash64(new int[] {2, 1}));
+    assertFalse(Util.getFingerprint("x", "Aa") == Util.getFingerprint("x", "BB"));
+  }
+
   public void testSetupLogger() {
     Logger logger = Util.setupLogger(UtilTest.class);
     logger.debug("Working");
@@ -25,6 +25,12 @@ package org.graphwalker.conditions;
 
 import junit.framework.TestCase;
 
+import org.graphwalker.Util;
+import org.graphwalker.graph.Edge;
+import org.graphwalker.graph.Graph;
+import org.graphwalker.graph.Vertex;
+import org.graphwalker.machines.FiniteStateMachine;
+
 public class CombinationalConditionTest extends TestCase {
 
   public void testConstructor() {
@@ -46,4 +52,27 @@ public class CombinationalConditionTest extends TestCase {
     condition.add(new NeverCondition());
     assertEquals(false, condition.isFulfilled());
   }
+
+  public void testCachedByVersion() {
+    Graph graph = new Graph();
+    Vertex start = Util.addVertexToGraph(graph, "Start");
+    Vertex v1 = Util.addVertexToGraph(graph, "V1");
+    Edge e1 = Util.addEdgeToGraph(graph, start, v1, "E1", null, null, null);
+    FiniteStateMachine machine = new FiniteStateMachine();
+    machine.setModel(graph);
+
+    CombinationalCondition condition = new CombinationalCondition();
+    condition.add(new TestCaseLength(1));
+    condition.setMachine(machine);
+    assertTrue(condition.isCacheable());
+    assertFalse(condition.isFulfilled());
+    long version = machine.getVersion();
+    machine.walkEdge(e1);
+    assertTrue(machine.getVersion() != version);
+    assertTrue(condition.isFulfilled());
+
+    condition.add(new TimeDuration(60));
+    assertFalse(condition.isCacheable());
+    assertFalse(condition.isFulfilled());
+  }
 }
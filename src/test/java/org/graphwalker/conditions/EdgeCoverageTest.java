@@ -33,6 +33,7 @@ import org.graphwalker.generators.RandomPathGenerator;
 import org.graphwalker.graph.Edge;
 import org.graphwalker.graph.Graph;
 import org.graphwalker.graph.Vertex;
+import org.graphwalker.machines.FiniteStateMachine;
 
 public class EdgeCoverageTest extends TestCase {
 
@@ -90,4 +91,24 @@ public class EdgeCoverageTest extends TestCase {
     assertEquals(true, mbt.getGenerator().getStopCondition().isFulfilled());
   }
 
+  public void testRemainingDistance() throws StopConditionException {
+    FiniteStateMachine machine = new FiniteStateMachine();
+    machine.setModel(graph);
+    StopCondition condition = new EdgeCoverage();
+    condition.setMachine(machine);
+
+    assertEquals(2, condition.getRemainingDistance());
+    machine.walkEdge(e0);
+    assertEquals(1, condition.getRemainingDistance());
+    machine.walkEdge(e1);
+    assertEquals(0, condition.getRemainingDistance());
+
+    Util.addEdgeToGraph(graph, start, v2, "E2", null, null, null);
+    assertEquals(StopCondition.UNREACHABLE, condition.getRemainingDistance());
+
+    StopCondition half = new EdgeCoverage(0.5);
+    half.setMachine(machine);
+    assertEquals(0, half.getRemainingDistance());
+  }
+
 }
@@ -32,6 +32,7 @@ import org.graphwalker.generators.RandomPathGenerator;
 import org.graphwalker.graph.Edge;
 import org.graphwalker.graph.Graph;
 import org.graphwalker.graph.Vertex;
+import org.graphwalker.machines.FiniteStateMachine;
 
 public class ReachedEdgeTest extends TestCase {
 
@@ -95,4 +96,21 @@ public class ReachedEdgeTest extends TestCase {
     assertEquals(true, mbt.getGenerator().getStopCondition().isFulfilled());
   }
 
+  public void testRemainingDistance() {
+    FiniteStateMachine machine = new FiniteStateMachine();
+    machine.setModel(graph);
+    StopCondition condition = new ReachedEdge("E1");
+    condition.setMachine(machine);
+
+    assertEquals(2, condition.getRemainingDistance());
+    machine.walkEdge(e0);
+    assertEquals(1, condition.getRemainingDistance());
+    machine.walkEdge(e1);
+    assertEquals(0, condition.getRemainingDistance());
+
+    StopCondition unreachable = new ReachedEdge("E0");
+    unreachable.setMachine(machine);
+    assertEquals(StopCondition.UNREACHABLE, unreachable.getRemainingDistance());
+  }
+
 }
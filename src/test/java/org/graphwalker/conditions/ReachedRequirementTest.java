@@ -32,6 +32,7 @@ import org.graphwalker.generators.RandomPathGenerator;
 import org.graphwalker.graph.Edge;
 import org.graphwalker.graph.Graph;
 import org.graphwalker.graph.Vertex;
+import org.graphwalker.machines.FiniteStateMachine;
 
 public class ReachedRequirementTest extends TestCase {
   Graph graph;
@@ -99,4 +100,50 @@ public class ReachedRequirementTest extends TestCase {
     mbt.getNextStep();
     assertEquals(true, mbt.getGenerator().getStopCondition().isFulfilled());
   }
+
+  public void testBacktrack() {
+    FiniteStateMachine machine = new FiniteStateMachine();
+    machine.setModel(graph);
+    ReachedRequirement condition = new ReachedRequirement("R1, R4");
+    condition.setMachine(machine);
+    assertEquals(0, condition.getFulfilment(), 0.01);
+
+    machine.setCalculatingPath(true);
+    machine.walkEdge(e0);
+    assertEquals(0.5, condition.getFulfilment(), 0.01);
+    machine.walkEdge(e1);
+    assertTrue(condition.isFulfilled());
+    machine.backtrackTo(1);
+    assertFalse(condition.isFulfilled());
+    assertEquals(0.5, condition.getFulfilment(), 0.01);
+
+    machine.setAllUnvisited();
+    assertEquals(0, condition.getFulfilment(), 0.01);
+  }
+
+  public void testSharedRequirement() {
+    Edge e2 = Util.addEdgeToGraph(graph, v2, v1, "E2", null, null, null);
+    e2.setReqTagKey("R4");
+    FiniteStateMachine machine = new FiniteStateMachine();
+    machine.setModel(graph);
+    ReachedRequirement condition = new ReachedRequirement("R1, R4");
+    condition.setMachine(machine);
+    assertEquals(0, condition.getFulfilment(), 0.01);
+
+    machine.setCalculatingPath(true);
+    machine.walkEdge(e0);
+    machine.walkEdge(e1);
+    machine.walkEdge(e2);
+    assertTrue(condition.isFulfilled());
+    machine.backtrackTo(2);
+    assertTrue(condition.isFulfilled());
+    machine.backtrackTo(1);
+    assertEquals(0.5, condition.getFulfilment(), 0.01);
+
+    e1.setReqTagKey("R5");
+    machine.walkEdge(e1);
+    assertEquals(0.5, condition.getFulfilment(), 0.01);
+    machine.walkEdge(e2);
+    assertTrue(condition.isFulfilled());
+  }
 }
@@ -32,6 +32,7 @@ import org.graphwalker.generators.RandomPathGenerator;
 import org.graphwalker.graph.Edge;
 import org.graphwalker.graph.Graph;
 import org.graphwalker.graph.Vertex;
+import org.graphwalker.machines.ExtendedFiniteStateMachine;
 
 public class ReachedStateTest extends TestCase {
   Graph graph;
@@ -94,4 +95,18 @@ public class ReachedStateTest extends TestCase {
     assertEquals(true, mbt.getGenerator().getStopCondition().isFulfilled());
   }
 
+  public void testSubStateOfCollidingData() {
+    Edge init = Util.addEdgeToGraph(graph, start, v2, "Init", null, null, "s=\"Aa\";");
+    Edge loop = Util.addEdgeToGraph(graph, v2, v2, "Loop", null, null, "s=\"BB\";");
+    ExtendedFiniteStateMachine machine = new ExtendedFiniteStateMachine(false);
+    machine.setModel(graph);
+    ReachedVertex condition = new ReachedVertex("V2/s=BB;");
+    condition.setMachine(machine);
+
+    machine.walkEdge(init);
+    assertFalse(condition.isFulfilled());
+    machine.walkEdge(loop);
+    assertTrue(condition.isFulfilled());
+  }
+
 }
@@ -0,0 +1,103 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.expressions;
+
+import junit.framework.TestCase;
+
+import org.graphwalker.exceptions.ExpressionException;
+
+public class ScriptTest extends TestCase {
+
+  public void testEval() throws ExpressionException {
+    Variables variables = new Variables();
+    Script.compile("int x = 1; boolean loggedIn = false", variables).eval();
+    Script action = Script.compile("x++;loggedIn=true;", variables);
+    Script guard = Script.compile("x<3", variables);
+
+    assertTrue(guard.evalGuard());
+    action.eval();
+    assertEquals(2, variables.getValue("x"));
+    assertEquals(Boolean.TRUE, variables.getValue("loggedIn"));
+    action.eval();
+    assertFalse(guard.evalGuard());
+  }
+
+  public void testOperators() throws ExpressionException {
+    Variables variables = new Variables();
+    assertEquals(7, Script.compile("1 + 2 * 3", variables).eval());
+    assertEquals(9, Script.compile("(1 + 2) * 3", variables).eval());
+    assertEquals(1, Script.compile("7 % 3", variables).eval());
+    assertEquals(-2, Script.compile("-7 / 3", variables).eval());
+    assertEquals(Boolean.TRUE, Script.compile("!(1 > 2) && (2 >= 2 || false)", variables).eval());
+    assertEquals(Boolean.TRUE, Script.compile("1 != 2 == true", variables).eval());
+    assertEquals(6, Script.compile("y = 2; y *= 3", variables).eval());
+    assertEquals(6, Script.compile("y++", variables).eval());
+    assertEquals(6, Script.compile("--y", variables).eval());
+    assertEquals(4, Script.compile("y -= 2", variables).eval());
+    assertEquals(Boolean.TRUE, Script.compile("b = y == 4", variables).eval());
+  }
+
+  public void testMalformed() {
+    Variables variables = new Variables();
+    String[] malformed = { "x = = 3", "x < ", "3 = x", "x ? 1 : 2", "1 + true", "int x = false", "!3", "(x > 1", "x = 'a'" };
+    for (String script : malformed) {
+      try {
+        Script.compile(script, variables);
+        fail("Expected '" + script + "' to be malformed");
+      } catch (ExpressionException e) {
+        // expected
+      }
+    }
+  }
+
+  public void testTypeErrors() throws ExpressionException {
+    Variables variables = new Variables();
+    Script.compile("int x = 1; boolean b = true", variables).eval();
+    String[] failing = { "x = true", "b < 3", "x && b", "b++", "x == b", "y > 1", "x / 0", "x" };
+    for (String script : failing) {
+      try {
+        Script.compile(script, variables).evalGuard();
+        fail("Expected '" + script + "' to fail");
+      } catch (ExpressionException e) {
+        // expected
+      }
+    }
+    assertEquals(1, variables.getValue("x"));
+    assertEquals(Boolean.TRUE, variables.getValue("b"));
+  }
+
+  public void testSaveAndRestore() throws ExpressionException {
+    Variables variables = new Variables();
+    Script.compile("int x = 1", variables).eval();
+    Variables.State state = variables.save();
+    assertSame(state, variables.save());
+
+    Script.compile("x = 5; created = true", variables).eval();
+    assertNotSame(state, variables.save());
+    variables.restore(state);
+    assertEquals(1, variables.getValue("x"));
+    assertNull(variables.getValue("created"));
+    assertSame(state, variables.save());
+  }
+}
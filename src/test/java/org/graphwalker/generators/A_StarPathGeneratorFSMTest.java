@@ -26,8 +26,10 @@ package org.graphwalker.generators;
 import junit.framework.TestCase;
 
 import org.graphwalker.Util;
+import org.graphwalker.conditions.EdgeCoverage;
 import org.graphwalker.conditions.ReachedEdge;
 import org.graphwalker.conditions.ReachedVertex;
+import org.graphwalker.exceptions.StopConditionException;
 import org.graphwalker.graph.Edge;
 import org.graphwalker.graph.Graph;
 import org.graphwalker.graph.Vertex;
@@ -101,4 +103,26 @@ public class A_StarPathGeneratorFSMTest extends TestCase {
     assertEquals("V2", stepPair[1]);
     assertFalse(pathGenerator.hasNext());
   }
+
+  public void test_FSM_EdgeCoverage() throws InterruptedException, StopConditionException {
+    PathGenerator pathGenerator = new A_StarPathGenerator(new EdgeCoverage(1.0));
+    FiniteStateMachine fsm = new FiniteStateMachine();
+    fsm.setModel(graph);
+    pathGenerator.setMachine(fsm);
+
+    String[] stepPair = pathGenerator.getNext();
+    assertEquals("E0", stepPair[0]);
+    // The search backtracks the machine to where it started
+    assertEquals(1, fsm.getNumOfCoveredEdges());
+    assertEquals(1, fsm.getVisits(v1));
+    assertEquals(0, fsm.getVisits(v2));
+
+    int steps = 1;
+    while (pathGenerator.hasNext()) {
+      pathGenerator.getNext();
+      steps++;
+    }
+    assertEquals(4, fsm.getNumOfCoveredEdges());
+    assertEquals(4, steps);
+  }
 }
@@ -0,0 +1,105 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.generators;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.graphwalker.Util;
+import org.graphwalker.graph.Edge;
+import org.graphwalker.graph.Graph;
+import org.graphwalker.graph.GraphSnapshot;
+import org.graphwalker.graph.Vertex;
+
+public class AliasTableTest extends TestCase {
+
+  Graph graph;
+  Vertex start;
+  Edge e0;
+  Edge e1;
+  Edge e2;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    graph = new Graph();
+
+    start = Util.addVertexToGraph(graph, "Start");
+    Vertex v1 = Util.addVertexToGraph(graph, "V1");
+
+    e0 = Util.addEdgeToGraph(graph, start, v1, "E0", null, null, null);
+    e0.setWeightKey(0.5f);
+    e1 = Util.addEdgeToGraph(graph, start, v1, "E1", null, null, null);
+    e1.setWeightKey(0.2f);
+    e2 = Util.addEdgeToGraph(graph, start, v1, "E2", null, null, null);
+  }
+
+  private int[] getOutEdges(GraphSnapshot snapshot) {
+    int vertex = snapshot.indexOf(start);
+    int[] edges = new int[snapshot.getOutDegree(vertex)];
+    for (int i = 0; i < edges.length; i++) {
+      edges[i] = snapshot.getOutEdge(vertex, i);
+    }
+    return edges;
+  }
+
+  public void testDistribution() {
+    GraphSnapshot snapshot = graph.getSnapshot();
+    int[] edges = getOutEdges(snapshot);
+    AliasTable table = new AliasTable(snapshot, edges, edges.length);
+
+    int[] draws = new int[snapshot.getEdgeCount()];
+    Random random = new Random(42);
+    for (int i = 0; i < 100000; i++) {
+      draws[table.next(random)]++;
+    }
+    assertEquals(0.5, draws[snapshot.indexOf(e0)] / 100000.0, 0.01);
+    assertEquals(0.2, draws[snapshot.indexOf(e1)] / 100000.0, 0.01);
+    assertEquals(0.3, draws[snapshot.indexOf(e2)] / 100000.0, 0.01);
+  }
+
+  public void testBuiltFor() {
+    GraphSnapshot snapshot = graph.getSnapshot();
+    int[] edges = getOutEdges(snapshot);
+    AliasTable table = new AliasTable(snapshot, edges, edges.length);
+    assertTrue(table.isBuiltFor(snapshot, edges, edges.length));
+    assertFalse(table.isBuiltFor(snapshot, edges, edges.length - 1));
+
+    e1.setWeightKey(0.1f);
+    assertFalse(table.isBuiltFor(snapshot, edges, edges.length));
+  }
+
+  public void testWeightsAboveOne() {
+    e2.setWeightKey(0.6f);
+    GraphSnapshot snapshot = graph.getSnapshot();
+    int[] edges = getOutEdges(snapshot);
+    try {
+      new AliasTable(snapshot, edges, edges.length);
+      fail("Expected a RuntimeException");
+    } catch (RuntimeException e) {
+      assertTrue(e.getMessage().contains("adds up to more than 1.00"));
+    }
+  }
+}
@@ -66,4 +66,21 @@ public class AllPathPermutationsGeneratorTest extends TestCase {
     // assertEquals(3, ((AllPathPermutationsGenerator) pathGenerator).getDepth());
     logger.debug("==============================");
   }
+
+  public void test_DepthIncreases() throws StopConditionException, InterruptedException {
+    GraphML gml = new GraphML();
+    gml.load("graphml/permutations/simple.graphml");
+    FiniteStateMachine FSM = new FiniteStateMachine();
+    FSM.setModel(gml.getModel());
+
+    AllPathPermutationsGenerator pathGenerator = new AllPathPermutationsGenerator(new TestCaseLength(2000));
+    pathGenerator.setMachine(FSM);
+    int depth = 0;
+    while (pathGenerator.hasNext()) {
+      pathGenerator.getNext();
+      assertTrue(pathGenerator.getDepth() >= depth);
+      depth = pathGenerator.getDepth();
+    }
+    assertTrue(depth >= 4);
+  }
 }
@@ -0,0 +1,112 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.generators;
+
+import junit.framework.TestCase;
+
+import org.graphwalker.Keywords;
+import org.graphwalker.Util;
+import org.graphwalker.conditions.EdgeCoverage;
+import org.graphwalker.conditions.NeverCondition;
+import org.graphwalker.exceptions.GeneratorException;
+import org.graphwalker.exceptions.StopConditionException;
+import org.graphwalker.graph.Edge;
+import org.graphwalker.graph.Graph;
+import org.graphwalker.graph.Vertex;
+import org.graphwalker.machines.FiniteStateMachine;
+
+public class ChinesePostmanPathGeneratorTest extends TestCase {
+
+  Graph graph;
+  Vertex start;
+  Vertex v1;
+  Vertex v2;
+  Vertex v3;
+  Edge e0;
+  Edge e1;
+  Edge e2;
+  Edge e3;
+  Edge e4;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    graph = new Graph();
+
+    start = Util.addVertexToGraph(graph, "Start");
+    v1 = Util.addVertexToGraph(graph, "V1");
+    v2 = Util.addVertexToGraph(graph, "V2");
+    v3 = Util.addVertexToGraph(graph, "V3");
+
+    e0 = Util.addEdgeToGraph(graph, start, v1, "E0", null, null, null);
+    e1 = Util.addEdgeToGraph(graph, v1, v2, "E1", null, null, null);
+    e2 = Util.addEdgeToGraph(graph, v2, v3, "E2", null, null, null);
+    e3 = Util.addEdgeToGraph(graph, v3, v1, "E3", null, null, null);
+    e4 = Util.addEdgeToGraph(graph, v1, v3, "E4", null, null, null);
+  }
+
+  public void testKeyword() throws GeneratorException {
+    assertEquals(Keywords.GENERATOR_CHINESE_POSTMAN, Keywords.getGenerator("CHINESE_POSTMAN"));
+  }
+
+  public void testShortestTour() throws InterruptedException {
+    FiniteStateMachine fsm = new FiniteStateMachine();
+    fsm.setModel(graph);
+    PathGenerator pathGenerator = new ChinesePostmanPathGenerator(new NeverCondition());
+    pathGenerator.setMachine(fsm);
+
+    // V1 has one edge too many going out, V3 one too many coming in, so E3 is walked twice
+    for (int i = 0; i < 6; i++) {
+      pathGenerator.getNext();
+    }
+    assertSame(v1, fsm.getCurrentVertex());
+    assertEquals(1, fsm.getVisits(e0));
+    assertEquals(1, fsm.getVisits(e1));
+    assertEquals(1, fsm.getVisits(e2));
+    assertEquals(2, fsm.getVisits(e3));
+    assertEquals(1, fsm.getVisits(e4));
+
+    // The next tour starts from where the last one ended
+    for (int i = 0; i < 5; i++) {
+      pathGenerator.getNext();
+    }
+    assertSame(v1, fsm.getCurrentVertex());
+    assertEquals(4, fsm.getVisits(e3));
+  }
+
+  public void testEdgeCoverage() throws InterruptedException, StopConditionException {
+    FiniteStateMachine fsm = new FiniteStateMachine();
+    fsm.setModel(graph);
+    PathGenerator pathGenerator = new ChinesePostmanPathGenerator(new EdgeCoverage(1.0));
+    pathGenerator.setMachine(fsm);
+
+    int steps = 0;
+    while (pathGenerator.hasNext()) {
+      pathGenerator.getNext();
+      steps++;
+    }
+    assertEquals(5, fsm.getNumOfCoveredEdges());
+    assertTrue(steps <= 6);
+  }
+}
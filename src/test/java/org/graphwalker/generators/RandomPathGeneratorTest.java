@@ -23,6 +23,8 @@
 
 package org.graphwalker.generators;
 
+import java.util.Random;
+
 import junit.framework.TestCase;
 
 import org.apache.log4j.Logger;
@@ -85,4 +87,26 @@ public class RandomPathGeneratorTest extends TestCase {
     }
     logger.debug("==============================");
   }
+
+  public void test_SeededGeneration() throws StopConditionException, InterruptedException {
+    assertEquals(generate(4711), generate(4711));
+  }
+
+  private String generate(long seed) throws StopConditionException, InterruptedException {
+    GraphML gml = new GraphML();
+    gml.load("graphml/weight/FSM.graphml");
+    FiniteStateMachine FSM = new FiniteStateMachine();
+    FSM.setModel(gml.getModel());
+    FSM.setWeighted(true);
+    PathGenerator pathGenerator = new RandomPathGenerator(new EdgeCoverage(1.0));
+    pathGenerator.setMachine(FSM);
+    pathGenerator.setRandom(new Random(seed));
+
+    StringBuilder path = new StringBuilder();
+    while (pathGenerator.hasNext()) {
+      String[] stepPair = pathGenerator.getNext();
+      path.append(stepPair[0]).append(' ').append(stepPair[1]).append('\n');
+    }
+    return path.toString();
+  }
 }
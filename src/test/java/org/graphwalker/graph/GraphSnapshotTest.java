@@ -0,0 +1,173 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.graph;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.graphwalker.Util;
+
+public class GraphSnapshotTest extends TestCase {
+
+  Graph graph;
+  Vertex start;
+  Vertex v1;
+  Vertex v2;
+  Edge e0;
+  Edge e1;
+  Edge e2;
+  Edge e3;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    graph = new Graph();
+
+    start = Util.addVertexToGraph(graph, "Start");
+    v1 = Util.addVertexToGraph(graph, "V1");
+    v2 = Util.addVertexToGraph(graph, "V2");
+
+    e0 = Util.addEdgeToGraph(graph, start, v1, "E0", null, null, null);
+    e1 = Util.addEdgeToGraph(graph, v1, v2, "E1", null, null, null);
+    e2 = Util.addEdgeToGraph(graph, v2, v1, "E2", null, null, null);
+    e3 = Util.addEdgeToGraph(graph, v2, v2, "E3", null, null, null);
+  }
+
+  public void testAdjacency() {
+    GraphSnapshot snapshot = graph.getSnapshot();
+    assertEquals(3, snapshot.getVertexCount());
+    assertEquals(4, snapshot.getEdgeCount());
+    assertEquals(2, snapshot.getMaxOutDegree());
+
+    int v = snapshot.indexOf(v2);
+    assertSame(v2, snapshot.getVertex(v));
+    assertEquals(2, snapshot.getOutDegree(v));
+    for (int i = 0; i < snapshot.getOutDegree(v); i++) {
+      int edge = snapshot.getOutEdge(v, i);
+      assertEquals(v, snapshot.getSource(edge));
+      assertTrue(snapshot.getEdge(edge) == e2 || snapshot.getEdge(edge) == e3);
+    }
+    assertEquals(snapshot.indexOf(v1), snapshot.getDest(snapshot.indexOf(e2)));
+  }
+
+  public void testShortestPath() {
+    GraphSnapshot snapshot = graph.getSnapshot();
+    List<Edge> path = snapshot.getDistanceOracle().getShortestPath(snapshot.indexOf(start), snapshot.indexOf(v2));
+    assertEquals(2, path.size());
+    assertSame(e0, path.get(0));
+    assertSame(e1, path.get(1));
+    assertTrue(snapshot.getDistanceOracle().getShortestPath(snapshot.indexOf(v2), snapshot.indexOf(start)).isEmpty());
+    assertTrue(snapshot.getDistanceOracle().getShortestPath(snapshot.indexOf(v2), snapshot.indexOf(v2)).isEmpty());
+  }
+
+  public void testDistancesTo() {
+    GraphSnapshot snapshot = graph.getSnapshot();
+    int v = snapshot.indexOf(v2);
+    assertEquals(2, snapshot.getInDegree(v));
+    for (int i = 0; i < snapshot.getInDegree(v); i++) {
+      assertEquals(v, snapshot.getDest(snapshot.getInEdge(v, i)));
+    }
+
+    int[] distances = snapshot.getDistanceOracle().getDistancesTo(v);
+    assertEquals(2, distances[snapshot.indexOf(start)]);
+    assertEquals(1, distances[snapshot.indexOf(v1)]);
+    assertEquals(0, distances[v]);
+
+    distances = snapshot.getDistanceOracle().getDistancesTo(snapshot.indexOf(start));
+    assertEquals(0, distances[snapshot.indexOf(start)]);
+    assertEquals(-1, distances[snapshot.indexOf(v1)]);
+    assertEquals(-1, distances[v]);
+  }
+
+  public void testDistanceOracle() {
+    GraphSnapshot snapshot = graph.getSnapshot();
+    DistanceOracle oracle = snapshot.getDistanceOracle();
+    assertSame(oracle, snapshot.getDistanceOracle());
+
+    int from = snapshot.indexOf(start);
+    int to = snapshot.indexOf(v2);
+    assertEquals(2, oracle.getDistance(from, to));
+    assertEquals(-1, oracle.getDistance(to, from));
+    List<Edge> path = oracle.getShortestPath(from, to);
+    assertEquals(2, path.size());
+    assertSame(e0, path.get(0));
+    assertSame(e1, path.get(1));
+    assertTrue(oracle.getShortestPath(to, from).isEmpty());
+    assertTrue(oracle.getShortestPath(to, to).isEmpty());
+    assertSame(oracle.getDistancesTo(to), oracle.getDistancesTo(to));
+
+    DistanceOracle small = new DistanceOracle(snapshot, 1);
+    int[] distances = small.getDistancesTo(to);
+    assertSame(distances, small.getDistancesTo(to));
+    small.getDistancesTo(from);
+    assertNotSame(distances, small.getDistancesTo(to));
+  }
+
+  public void testRebuiltAfterModification() {
+    GraphSnapshot snapshot = graph.getSnapshot();
+    assertSame(snapshot, graph.getSnapshot());
+
+    Vertex v3 = Util.addVertexToGraph(graph, "V3");
+    GraphSnapshot rebuilt = graph.getSnapshot();
+    assertNotSame(snapshot, rebuilt);
+    assertEquals(4, rebuilt.getVertexCount());
+    assertEquals(0, rebuilt.getOutDegree(rebuilt.indexOf(v3)));
+
+    graph.removeEdge(e3);
+    assertEquals(3, graph.getSnapshot().getEdgeCount());
+    assertEquals(-1, graph.getSnapshot().indexOf(e3));
+  }
+
+  public void testLookups() {
+    assertSame(v1, graph.findVertex("V1"));
+    assertSame(e2, graph.findEdge("E2"));
+    assertNull(graph.findVertex("E2"));
+    assertSame(v2, graph.findElement(v2.getIndexKey()));
+    assertSame(e3, graph.findElement(e3.getIndexKey()));
+    assertNull(graph.findElement(-1));
+
+    v1.setLabelKey("V1b");
+    assertSame(v1, graph.findVertex("V1b"));
+    assertNull(graph.findVertex("V1"));
+  }
+
+  public void testKeyVersionPerGraph() {
+    Graph other = new Graph();
+    Vertex vertex = Util.addVertexToGraph(other, "Other");
+    int version = graph.getKeyVersion();
+    vertex.setLabelKey("Renamed");
+    assertEquals(version, graph.getKeyVersion());
+    assertSame(vertex, other.findVertex("Renamed"));
+
+    v2.setIdKey("n2");
+    assertTrue(version != graph.getKeyVersion());
+    assertSame(v2, graph.findElementById("n2"));
+
+    graph.removeVertex(v1);
+    version = graph.getKeyVersion();
+    v1.setLabelKey("Removed");
+    assertEquals(version, graph.getKeyVersion());
+  }
+}
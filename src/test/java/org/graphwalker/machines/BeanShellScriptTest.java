@@ -0,0 +1,110 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.machines;
+
+import junit.framework.TestCase;
+
+import org.graphwalker.Util;
+import org.graphwalker.graph.Edge;
+import org.graphwalker.graph.Graph;
+import org.graphwalker.graph.Vertex;
+
+import bsh.EvalError;
+import bsh.Interpreter;
+
+public class BeanShellScriptTest extends TestCase {
+
+  public void testEval() throws EvalError {
+    Interpreter interpreter = new Interpreter();
+    BeanShellScript init = new BeanShellScript("int x = 1; boolean loggedIn = false");
+    BeanShellScript action = new BeanShellScript("x++;loggedIn=true;");
+    BeanShellScript guard = new BeanShellScript("x<3");
+
+    init.eval(interpreter);
+    assertEquals(Boolean.TRUE, guard.eval(interpreter));
+    action.eval(interpreter);
+    assertEquals(2, interpreter.get("x"));
+    assertEquals(Boolean.TRUE, interpreter.get("loggedIn"));
+    action.eval(interpreter);
+    assertEquals(Boolean.FALSE, guard.eval(interpreter));
+  }
+
+  public void testReturnsLastValue() throws EvalError {
+    Interpreter interpreter = new Interpreter();
+    assertEquals(7, new BeanShellScript("int y = 3; y + 4").eval(interpreter));
+  }
+
+  public void testNameSpaceReplaced() throws EvalError {
+    Interpreter interpreter = new Interpreter();
+    BeanShellScript action = new BeanShellScript("x = 5");
+    action.eval(interpreter);
+    interpreter.setNameSpace(new bsh.NameSpace(interpreter.getClassManager(), "other"));
+    action.eval(interpreter);
+    assertEquals(5, interpreter.get("x"));
+  }
+
+  public void testMalformed() {
+    try {
+      new BeanShellScript("x = = 3");
+      fail("Expected a parse error");
+    } catch (EvalError e) {
+      // expected
+    }
+    try {
+      new BeanShellScript("print('hello')");
+      fail("Expected a lexical error");
+    } catch (EvalError e) {
+      // expected
+    }
+  }
+
+  public void testMalformedGuardFailsAtLoad() {
+    Graph graph = new Graph();
+    Vertex start = Util.addVertexToGraph(graph, "Start");
+    Vertex v1 = Util.addVertexToGraph(graph, "V1");
+    Edge e1 = Util.addEdgeToGraph(graph, start, v1, "E1", null, null, null);
+    e1.setGuardKey("x < < 3");
+
+    ExtendedFiniteStateMachine efsm = new ExtendedFiniteStateMachine(false);
+    try {
+      efsm.setModel(graph);
+      fail("Expected the malformed guard to be reported");
+    } catch (RuntimeException e) {
+      assertTrue(e.getMessage().startsWith("Malformed Edge guard"));
+    }
+  }
+
+  public void testPlainAssignments() throws EvalError {
+    assertTrue(new BeanShellScript("int x=1;s=\"a\"").hasOnlyPlainAssignments());
+    assertTrue(new BeanShellScript("x++;s=s+x;y=x*2;b=!b").hasOnlyPlainAssignments());
+    assertTrue(new BeanShellScript("if (x > 2) y = x; else y = -x").hasOnlyPlainAssignments());
+    assertTrue(new BeanShellScript("System.out.println(x)").hasOnlyPlainAssignments());
+    assertFalse(new BeanShellScript("y=new Vector()").hasOnlyPlainAssignments());
+    assertFalse(new BeanShellScript("if (x > 2) { y = x; }").hasOnlyPlainAssignments());
+    assertFalse(new BeanShellScript("for (int i=0; i<3; i++) x++").hasOnlyPlainAssignments());
+    assertFalse(new BeanShellScript("a[0]=1").hasOnlyPlainAssignments());
+    assertFalse(new BeanShellScript("o.f=1").hasOnlyPlainAssignments());
+    assertFalse(new BeanShellScript("void f() { x = 1; }").hasOnlyPlainAssignments());
+  }
+}
@@ -0,0 +1,85 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.machines;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+import bsh.BshClassManager;
+import bsh.EvalError;
+import bsh.Interpreter;
+
+public class JournalingNameSpaceTest extends TestCase {
+
+  private Interpreter interpreter;
+  private JournalingNameSpace ns;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    ns = new JournalingNameSpace(BshClassManager.createClassManager(null), "global");
+    interpreter = new Interpreter(new StringReader(""), System.out, System.err, false, ns);
+  }
+
+  public void testRollback() throws EvalError {
+    ArrayList<JournalingNameSpace.Change> journal = new ArrayList<JournalingNameSpace.Change>();
+    interpreter.eval("int x = 1; s = \"a\";");
+    ns.setJournal(journal);
+    interpreter.eval("x++; s = s + x; y = 3;");
+    int mark = journal.size();
+    interpreter.eval("x = 10; unset(\"s\");");
+    assertEquals(10, interpreter.get("x"));
+    assertNull(interpreter.get("s"));
+
+    ns.rollback(mark);
+    assertEquals(2, interpreter.get("x"));
+    assertEquals("a2", interpreter.get("s"));
+    assertEquals(3, interpreter.get("y"));
+
+    ns.rollback(0);
+    assertEquals(1, interpreter.get("x"));
+    assertEquals("a", interpreter.get("s"));
+    assertNull(interpreter.get("y"));
+    assertEquals(0, journal.size());
+
+    try {
+      interpreter.eval("x = \"not an int\";");
+      fail("Expected the typed variable to keep its type");
+    } catch (EvalError e) {
+      // expected
+    }
+  }
+
+  public void testJournalable() throws EvalError {
+    interpreter.eval("x = 1; s = \"a\";");
+    assertTrue(ns.isJournalable());
+    interpreter.eval("v = new Vector();");
+    assertFalse(ns.isJournalable());
+    interpreter.eval("v = 2;");
+    assertTrue(ns.isJournalable());
+    interpreter.eval("int f() { return 1; }");
+    assertFalse(ns.isJournalable());
+  }
+}